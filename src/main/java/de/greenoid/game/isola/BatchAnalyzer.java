@@ -0,0 +1,224 @@
+package de.greenoid.game.isola;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Headless mass evaluation of positions, e.g. taken from game logs.
+ *
+ * Reads one position per line in the {@link Position} text form (empty lines and lines starting
+ * with '#' are skipped), searches them in parallel and writes one record per position in input
+ * order, as CSV with a header line or as JSON lines. With a seed the engine searches in its
+ * deterministic mode and every record carries the seed, so a run can be repeated exactly.
+ * With several lines (multi-PV) the JSON records list the best root moves with their scores.
+ */
+public class BatchAnalyzer {
+    private final int depth;
+    private final long timeLimitMillis;
+    private final int threads;
+    private final boolean json;
+    private final Long seed;
+    private int multiPv = 1;
+    private int hashMegabytes;
+
+    /**
+     * Constructor to create a BatchAnalyzer.
+     *
+     * @param depth The maximum search depth per position
+     * @param timeLimitMillis The time limit per position in milliseconds
+     * @param threads The number of positions searched at the same time
+     * @param json true to write JSON lines, false to write CSV
+     */
+    public BatchAnalyzer(int depth, long timeLimitMillis, int threads, boolean json) {
+        this(depth, timeLimitMillis, threads, json, null);
+    }
+
+    /**
+     * Constructor to create a BatchAnalyzer with an optional seed for the deterministic mode.
+     *
+     * @param depth The maximum search depth per position
+     * @param timeLimitMillis The time limit per position in milliseconds
+     * @param threads The number of positions searched at the same time
+     * @param json true to write JSON lines, false to write CSV
+     * @param seed The seed of the deterministic mode, or null for a random choice among equal moves
+     */
+    public BatchAnalyzer(int depth, long timeLimitMillis, int threads, boolean json, Long seed) {
+        if (depth <= 0 || timeLimitMillis <= 0 || threads <= 0) {
+            throw new IllegalArgumentException("Depth, time limit and threads must be positive");
+        }
+        this.depth = depth;
+        this.timeLimitMillis = timeLimitMillis;
+        this.threads = threads;
+        this.json = json;
+        this.seed = seed;
+    }
+
+    /**
+     * Set the number of best root moves searched per position with exact scores.
+     *
+     * @param lines The number of lines, 1 for the best move only
+     */
+    public void setMultiPv(int lines) {
+        if (lines < 1) {
+            throw new IllegalArgumentException("At least one line must be searched");
+        }
+        this.multiPv = lines;
+    }
+
+    /**
+     * Set the size of the engine's transposition table, shared by all positions of the run.
+     *
+     * @param megabytes The size in MB, between 1 and 1024
+     */
+    public void setHashSize(int megabytes) {
+        if (megabytes < 1 || megabytes > 1024) {
+            throw new IllegalArgumentException("Table size must be between 1 and 1024 MB");
+        }
+        this.hashMegabytes = megabytes;
+    }
+
+    /**
+     * Analyze all positions of a file.
+     *
+     * @param input The file with one position per line
+     * @param out The stream to write the records to
+     * @return The number of analyzed positions
+     * @throws IOException If the file cannot be read
+     */
+    public int analyze(Path input, PrintStream out) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    lines.add(line);
+                }
+            }
+        }
+
+        // Each search uses one root worker, the positions themselves are the unit of parallelism
+        ExecutorService positionExecutor = Executors.newFixedThreadPool(threads);
+        ExecutorService searchExecutor = Executors.newFixedThreadPool(threads);
+        ComputerPlayer computerPlayer = new ComputerPlayer(depth, searchExecutor);
+        computerPlayer.setVerbose(false);
+        if (seed != null) {
+            computerPlayer.setSeed(seed);
+        }
+        computerPlayer.setMultiPv(multiPv);
+        if (hashMegabytes > 0) {
+            computerPlayer.setTranspositionTable(hashMegabytes, ReplacementPolicy.DEPTH_PREFERRED);
+        }
+        SearchBudget budget = new SearchBudget(depth, Long.MAX_VALUE, timeLimitMillis, 1);
+
+        long startTime = System.nanoTime();
+        try {
+            List<Future<String>> records = new ArrayList<>();
+            for (String line : lines) {
+                records.add(positionExecutor.submit(() -> analyzeLine(computerPlayer, budget, line)));
+            }
+
+            if (!json) {
+                out.println("position,moveRow,moveCol,removeRow,removeCol,score,depth,nodes,timeMillis,error,seed");
+            }
+            // Records are written in input order as soon as they are ready
+            for (Future<String> record : records) {
+                out.println(record.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Analysis interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Analysis failed", e.getCause());
+        } finally {
+            positionExecutor.shutdownNow();
+            searchExecutor.shutdownNow();
+        }
+
+        long duration = Math.max(1, (System.nanoTime() - startTime) / 1_000_000);
+        System.err.println("Analyzed " + lines.size() + " positions in " + duration + " ms (" +
+                           (lines.size() * 1000L / duration) + " positions/s)");
+        if (seed == null) {
+            System.err.println("Transposition table: " + computerPlayer.getTranspositionTableStatistics());
+        }
+        return lines.size();
+    }
+
+    private String analyzeLine(ComputerPlayer computerPlayer, SearchBudget budget, String line) {
+        Position position;
+        try {
+            position = Position.parse(line);
+        } catch (IllegalArgumentException e) {
+            return json ? "{\"position\":" + jsonString(line) + ",\"error\":" + jsonString(e.getMessage()) + jsonSeed() + "}"
+                        : csvString(line) + ",,,,,,,,," + csvString(e.getMessage()) + "," + csvSeed();
+        }
+
+        SearchResult result = computerPlayer.search(position.toBoard(), position.getPlayerToMove(), budget);
+        IsolaMove move = result.getMove();
+        if (json) {
+            StringBuilder record = new StringBuilder("{\"position\":").append(jsonString(line));
+            if (move != null) {
+                record.append(",\"moveRow\":").append(move.moveToRow)
+                      .append(",\"moveCol\":").append(move.moveToCol)
+                      .append(",\"removeRow\":").append(move.removeTileRow)
+                      .append(",\"removeCol\":").append(move.removeTileCol);
+            }
+            record.append(",\"score\":").append(jsonNumber(result.getValue()));
+            if (multiPv > 1) {
+                record.append(",\"lines\":[");
+                for (ScoredLine scoredLine : result.getLines()) {
+                    IsolaMove lineMove = scoredLine.getMove();
+                    record.append(scoredLine == result.getLines().get(0) ? "" : ",")
+                          .append("{\"moveRow\":").append(lineMove.moveToRow)
+                          .append(",\"moveCol\":").append(lineMove.moveToCol)
+                          .append(",\"removeRow\":").append(lineMove.removeTileRow)
+                          .append(",\"removeCol\":").append(lineMove.removeTileCol)
+                          .append(",\"score\":").append(jsonNumber(scoredLine.getValue()))
+                          .append('}');
+                }
+                record.append(']');
+            }
+            record.append(",\"depth\":").append(result.getDepth())
+                  .append(",\"nodes\":").append(result.getNodes())
+                  .append(",\"timeMillis\":").append(result.getElapsedMillis())
+                  .append(jsonSeed())
+                  .append('}');
+            return record.toString();
+        }
+        return csvString(line) + "," +
+               (move == null ? ",,," : move.moveToRow + "," + move.moveToCol + "," +
+                                       move.removeTileRow + "," + move.removeTileCol) + "," +
+               result.getValue() + "," + result.getDepth() + "," + result.getNodes() + "," +
+               result.getElapsedMillis() + ",," + csvSeed();
+    }
+
+    private String jsonSeed() {
+        return seed == null ? "" : ",\"seed\":" + seed;
+    }
+
+    private String csvSeed() {
+        return seed == null ? "" : seed.toString();
+    }
+
+    private static String jsonNumber(double value) {
+        return Double.isInfinite(value) ? jsonString(Double.toString(value)) : Double.toString(value);
+    }
+
+    private static String jsonString(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static String csvString(String value) {
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -1,17 +1,26 @@
 package de.greenoid.game.isola;
 
 /**
- * Represents the state of an Isola game board for UI rendering
+ * Represents the state of an Isola game board for UI rendering.
+ *
+ * Instances are immutable and compact: the removable tiles are kept in a bit mask
+ * (bit {@code row * cols + col}) and the starting squares as square indices. A
+ * snapshot can therefore be shared between threads and consumers without defensive
+ * copies. The version number identifies the game state the snapshot was taken from;
+ * consumers can skip snapshots whose version they have already processed.
  */
-public class BoardState {
-    private int rows;
-    private int cols;
-    private int[][] board;
-    private int player1Row, player1Col;
-    private int player2Row, player2Col;
+public final class BoardState {
+    private final int rows;
+    private final int cols;
+    private final long tileMask;
+    private final int player1StartSquare;
+    private final int player2StartSquare;
+    private final int player1Row, player1Col;
+    private final int player2Row, player2Col;
+    private final long version;
     
     /**
-     * Constructor to initialize the BoardState
+     * Constructor to initialize the BoardState from a 2D array.
      * 
      * @param rows Number of rows in the board
      * @param cols Number of columns in the board
@@ -22,17 +31,57 @@ public class BoardState {
      * @param player2Col Player 2's column position
      */
     public BoardState(int rows, int cols, int[][] board, int player1Row, int player1Col, int player2Row, int player2Col) {
+        if (rows * cols > Long.SIZE) {
+            throw new IllegalArgumentException("Board too large for a BoardState: " + rows + "x" + cols);
+        }
         this.rows = rows;
         this.cols = cols;
-        // Create a deep copy of the board to ensure encapsulation
-        this.board = new int[rows][cols];
-        for (int i = 0; i < rows; i++) {
-            System.arraycopy(board[i], 0, this.board[i], 0, cols);
+
+        long tiles = 0L;
+        int player1Start = -1;
+        int player2Start = -1;
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                switch (board[r][c]) {
+                    case IsolaBoard.TILE:
+                        tiles |= 1L << (r * cols + c);
+                        break;
+                    case IsolaBoard.PLAYER1_START:
+                        player1Start = r * cols + c;
+                        break;
+                    case IsolaBoard.PLAYER2_START:
+                        player2Start = r * cols + c;
+                        break;
+                }
+            }
         }
+        this.tileMask = tiles;
+        this.player1StartSquare = player1Start;
+        this.player2StartSquare = player2Start;
         this.player1Row = player1Row;
         this.player1Col = player1Col;
         this.player2Row = player2Row;
         this.player2Col = player2Col;
+        this.version = 0;
+    }
+
+    /**
+     * Constructor to take a snapshot of an IsolaBoard.
+     *
+     * @param board The board to take the snapshot of
+     * @param version The version of the game state the snapshot belongs to
+     */
+    public BoardState(IsolaBoard board, long version) {
+        this.rows = IsolaBoard.BOARD_ROWS;
+        this.cols = IsolaBoard.BOARD_COLS;
+        this.tileMask = board.getTileMask();
+        this.player1StartSquare = board.getPlayer1StartSquare();
+        this.player2StartSquare = board.getPlayer2StartSquare();
+        this.player1Row = board.player1Row;
+        this.player1Col = board.player1Col;
+        this.player2Row = board.player2Row;
+        this.player2Col = board.player2Col;
+        this.version = version;
     }
     
     /**
@@ -54,15 +103,17 @@ public class BoardState {
     }
     
     /**
-     * Get the board state as a 2D array
+     * Get the board state as a 2D array.
+     * This allocates a new array on every call; prefer {@link #getCellState(int, int)}.
      * 
      * @return 2D array representing the board state
      */
     public int[][] getBoard() {
-        // Return a deep copy to ensure encapsulation
         int[][] boardCopy = new int[rows][cols];
         for (int i = 0; i < rows; i++) {
-            System.arraycopy(this.board[i], 0, boardCopy[i], 0, cols);
+            for (int j = 0; j < cols; j++) {
+                boardCopy[i][j] = getCellState(i, j);
+            }
         }
         return boardCopy;
     }
@@ -78,7 +129,33 @@ public class BoardState {
         if (row < 0 || row >= rows || col < 0 || col >= cols) {
             throw new IllegalArgumentException("Invalid row or column index");
         }
-        return board[row][col];
+        int square = row * cols + col;
+        if (square == player1StartSquare) {
+            return IsolaBoard.PLAYER1_START;
+        }
+        if (square == player2StartSquare) {
+            return IsolaBoard.PLAYER2_START;
+        }
+        return ((tileMask >>> square) & 1L) != 0 ? IsolaBoard.TILE : IsolaBoard.EMPTY;
+    }
+    
+    /**
+     * Get the removable tiles as a bit mask, bit {@code row * cols + col} per cell.
+     * 
+     * @return The tile mask
+     */
+    public long getTileMask() {
+        return tileMask;
+    }
+    
+    /**
+     * Get the version of the game state this snapshot was taken from.
+     * Snapshots with equal versions of the same game are identical.
+     * 
+     * @return The version number
+     */
+    public long getVersion() {
+        return version;
     }
     
     /**
@@ -1,33 +1,356 @@
 package de.greenoid.game.isola;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.Queue;
 import java.util.LinkedList;
 
-public class ComputerPlayer {
+/**
+ * Alpha-beta minimax engine with iterative deepening and parallel root search.
+ */
+public class ComputerPlayer implements SearchEngine {
 
     private int maxSearchDepth;
     private Random random;
     private final ExecutorService executorService;
+    private final boolean ownsExecutor;
+    private EndgameTablebase tablebase;
+    private NeuralEvaluator network;
+    private boolean verbose = true;
 
     // Configurable threshold to increase search depth
     private static final int DEPTH_INCREASE_THRESHOLD = 8;
 
+    // Aspiration windows: initial half width, growth after a failed search and the width
+    // beyond which the window is opened completely
+    private static final double DEFAULT_ASPIRATION_WINDOW = 40.0;
+    private static final double ASPIRATION_GROWTH = 4.0;
+    private static final double ASPIRATION_LIMIT = 200.0;
+    // Root moves are searched from just below the best value so far, so equal moves keep exact values
+    private static final double TIE_MARGIN = 1e-9;
+
+    private double aspirationWindow = DEFAULT_ASPIRATION_WINDOW;
+
+    // Bitboard masks of the board, its outer files and the start squares
+    private static final long BOARD_MASK = (1L << (IsolaBoard.BOARD_ROWS * IsolaBoard.BOARD_COLS)) - 1;
+    private static final long FILE_A = 0x0101_0101_0101_0101L;
+    private static final long FILE_H = FILE_A << (IsolaBoard.BOARD_COLS - 1);
+    private static final long START_MASK = (1L << (5 * IsolaBoard.BOARD_COLS + 3)) | (1L << 4);
+
+    // Weights of the evaluation terms, tuned by EvaluationTuner
+    private EvaluationWeights weights;
+
+    // Search results shared by all root workers and kept between searches, outside the heap. The table
+    // is allocated by the first search using it, so an engine that searches only in deterministic mode,
+    // or not at all, holds no buffer
+    private static final int DEFAULT_TRANSPOSITION_TABLE_MEGABYTES = 4;
+    private int transpositionTableMegabytes = DEFAULT_TRANSPOSITION_TABLE_MEGABYTES;
+    private ReplacementPolicy replacementPolicy = ReplacementPolicy.DEPTH_PREFERRED;
+    private volatile TranspositionTable transpositionTable;
+    // Tables lent for each search instead of an own table, see setTranspositionTablePool
+    private volatile TranspositionTablePool transpositionTablePool;
+
+    // Our next move predicted by the last search, for the position after the expected reply
+    private volatile ExpectedMove expectedMove;
+
+    // Number of best root moves searched with exact values and returned as lines
+    private int multiPv = 1;
+
+    // Forced-move extensions: a horizon node whose mover has at most FORCED_TARGETS squares to move to
+    // is searched one ply deeper, at most MAX_EXTENSION_PLIES times per line. Nodes below extensions may
+    // make up EXTENSION_NODE_SHARE of the nodes of a root move, plus EXTENSION_MIN_NODES.
+    private static final int FORCED_TARGETS = 1;
+    private static final int MAX_EXTENSION_PLIES = 2;
+    private static final double EXTENSION_NODE_SHARE = 0.5;
+    private static final long EXTENSION_MIN_NODES = 256;
+    private boolean tacticalSearch = true;
+
+    // Deterministic mode: seeded tie-breaks and root windows that do not depend on scheduling
+    private boolean deterministic;
+    private long seed;
+
     public ComputerPlayer(int maxSearchDepth) {
+        this(maxSearchDepth, Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()), true);
+    }
+
+    /**
+     * Creates a computer player that runs its root searches on a shared executor.
+     * The executor is not shut down by {@link #shutdown()}.
+     *
+     * @param maxSearchDepth The maximum search depth
+     * @param executorService The executor to run the root searches on
+     */
+    public ComputerPlayer(int maxSearchDepth, ExecutorService executorService) {
+        this(maxSearchDepth, executorService, false);
+    }
+
+    private ComputerPlayer(int maxSearchDepth, ExecutorService executorService, boolean ownsExecutor) {
         this.maxSearchDepth = maxSearchDepth;
         this.random = new Random();
-        this.executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        this.executorService = executorService;
+        this.ownsExecutor = ownsExecutor;
+        this.tablebase = EndgameTablebase.getDefault();
+        this.network = NeuralEvaluator.getDefault();
+        this.weights = EvaluationWeights.getDefault();
+    }
+
+    /**
+     * Enable or disable the search progress output on the console.
+     *
+     * @param verbose true to print search progress, false to search silently
+     */
+    @Override
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    /**
+     * Set the half width of the aspiration window placed around the previous iteration's score.
+     *
+     * @param aspirationWindow The half width, or Double.POSITIVE_INFINITY to always search the full window
+     */
+    public void setAspirationWindow(double aspirationWindow) {
+        if (!(aspirationWindow > 0)) {
+            throw new IllegalArgumentException("The aspiration window must be positive");
+        }
+        this.aspirationWindow = aspirationWindow;
+    }
+
+    /**
+     * Set the weight of the territory term of the evaluation, the squares a player reaches before the opponent.
+     *
+     * @param territoryWeight The weight per square, 0 to evaluate by mobility only
+     */
+    public void setTerritoryWeight(double territoryWeight) {
+        setEvaluationWeights(new EvaluationWeights(weights.getMobility(), territoryWeight, weights.getDistance()));
+    }
+
+    /**
+     * Set the weights of the hand-written evaluation.
+     *
+     * @param weights The weights of the mobility, territory and distance terms
+     */
+    public void setEvaluationWeights(EvaluationWeights weights) {
+        this.weights = weights;
+        clearTranspositionTable();
+    }
+
+    /**
+     * Get the weights of the hand-written evaluation.
+     *
+     * @return The weights of the mobility, territory and distance terms
+     */
+    public EvaluationWeights getEvaluationWeights() {
+        return weights;
+    }
+
+    /**
+     * Switch to the deterministic mode for benchmarks and reproducible games.
+     *
+     * Equal moves are chosen with a random generator seeded from the seed and the searched position,
+     * and the root moves no longer share bounds found by other workers. A search with a depth budget
+     * then visits the same tree, with the same node count and move, regardless of the thread count
+     * or the order in which the workers finish. Time and node limits still end a search at an
+     * arbitrary point.
+     *
+     * @param seed The seed of the move choice
+     */
+    @Override
+    public void setSeed(long seed) {
+        this.seed = seed;
+        this.deterministic = true;
+    }
+
+    /**
+     * Check if the player searches in the deterministic mode.
+     *
+     * @return true if a seed was set
+     */
+    public boolean isDeterministic() {
+        return deterministic;
+    }
+
+    /**
+     * Get the seed of the deterministic mode.
+     *
+     * @return The seed, only meaningful if {@link #isDeterministic()} is true
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Set the endgame tablebase probed during the search.
+     *
+     * @param tablebase The tablebase to use, or null to disable probing
+     */
+    public void setTablebase(EndgameTablebase tablebase) {
+        this.tablebase = tablebase;
+        clearTranspositionTable();
+    }
+
+    /**
+     * Set the neural network that evaluates the leaves of the search instead of the hand-written evaluation.
+     *
+     * @param network The network to use, or null to use the hand-written evaluation
+     */
+    public void setNeuralEvaluator(NeuralEvaluator network) {
+        this.network = network;
+        clearTranspositionTable();
+    }
+
+    /**
+     * Set the number of best root moves to search with exact values. The lines of these moves are
+     * returned by {@link SearchResult#getLines()}; more lines make the search slower.
+     *
+     * @param lines The number of lines, 1 to search only the best move
+     */
+    public void setMultiPv(int lines) {
+        if (lines < 1) {
+            throw new IllegalArgumentException("At least one line must be searched");
+        }
+        this.multiPv = lines;
+    }
+
+    /**
+     * Enable or disable the tactical search at the horizon: forced-move extensions for a player with
+     * a single square to move to, and the check whether the player to move at a leaf can isolate the
+     * opponent at once.
+     *
+     * @param tacticalSearch true to extend forced moves and detect imminent isolations
+     */
+    public void setTacticalSearch(boolean tacticalSearch) {
+        this.tacticalSearch = tacticalSearch;
+        clearTranspositionTable();
+    }
+
+    /**
+     * Replace the transposition table. The table is allocated outside the heap by the next search
+     * that uses it; the default has 4 MB and prefers deeper results.
+     *
+     * @param megabytes The size of the table, between 1 and 1024 MB
+     * @param policy The replacement policy
+     * @throws IllegalArgumentException If the size is out of range
+     */
+    public synchronized void setTranspositionTable(int megabytes, ReplacementPolicy policy) {
+        if (megabytes < 1 || megabytes > TranspositionTable.MAX_MEGABYTES) {
+            throw new IllegalArgumentException("Table size must be between 1 and " +
+                                               TranspositionTable.MAX_MEGABYTES + " MB: " + megabytes);
+        }
+        this.transpositionTableMegabytes = megabytes;
+        this.replacementPolicy = policy;
+        this.transpositionTable = null;
+    }
+
+    /**
+     * Borrow a transposition table from a pool for each search instead of keeping an own table, so
+     * many engines share a bounded amount of memory. The own table is released. Changes of the
+     * evaluation do not clear the tables of the pool.
+     *
+     * @param pool The pool to borrow the tables from, or null to use an own table again
+     */
+    public synchronized void setTranspositionTablePool(TranspositionTablePool pool) {
+        this.transpositionTablePool = pool;
+        this.transpositionTable = null;
     }
 
+    /**
+     * Get the usage of the transposition table: its size and policy, the share of occupied slots
+     * and the hit and collision rates of the probes since it was last cleared.
+     *
+     * @return The statistics as text
+     */
+    public String getTranspositionTableStatistics() {
+        TranspositionTablePool pool = transpositionTablePool;
+        if (pool != null) {
+            return pool.toString();
+        }
+        TranspositionTable table = transpositionTable;
+        return (table != null) ? table.toString()
+                : transpositionTableMegabytes + " MB, " + replacementPolicy + ", nicht angelegt";
+    }
+
+    /**
+     * Get the transposition table, allocating it on first use.
+     */
+    private synchronized TranspositionTable getTranspositionTable() {
+        if (transpositionTable == null) {
+            transpositionTable = new TranspositionTable(transpositionTableMegabytes, replacementPolicy);
+        }
+        return transpositionTable;
+    }
+
+    private void clearTranspositionTable() {
+        TranspositionTable table = transpositionTable;
+        if (table != null) {
+            table.clear();
+        }
+    }
+
+    /**
+     * Get the number of best root moves searched with exact values.
+     *
+     * @return The number of lines
+     */
+    public int getMultiPv() {
+        return multiPv;
+    }
+
+    @Override
     public IsolaMove findBestMove(IsolaBoard board, int currentPlayer) {
+        return search(board, currentPlayer, SearchBudget.UNLIMITED).getMove();
+    }
+
+    /**
+     * Searches the best move within the given budget.
+     * If the budget runs out, the result of the last completed iteration is returned.
+     *
+     * @param board The current game board
+     * @param currentPlayer The player to move
+     * @param budget The depth, node, time and parallelism limits of this search
+     * @return The search result; its move is null if the player cannot move
+     */
+    @Override
+    public SearchResult search(IsolaBoard board, int currentPlayer, SearchBudget budget) {
+        return search(board, currentPlayer, budget, null);
+    }
+
+    /**
+     * Searches the best move within the given budget and reports the progress to a listener.
+     *
+     * @param board The current game board
+     * @param currentPlayer The player to move
+     * @param budget The depth, node, time and parallelism limits of this search
+     * @param listener The listener to report the progress to, or null
+     * @return The search result; its move is null if the player cannot move
+     */
+    @Override
+    public SearchResult search(IsolaBoard board, int currentPlayer, SearchBudget budget, SearchListener listener) {
+        TranspositionTablePool pool = transpositionTablePool;
+        if (deterministic || pool == null) {
+            return search(board, currentPlayer, budget, listener, deterministic ? null : getTranspositionTable());
+        }
+        TranspositionTable table = pool.acquire();
+        try {
+            return search(board, currentPlayer, budget, listener, table);
+        } finally {
+            pool.release(table);
+        }
+    }
+
+    private SearchResult search(IsolaBoard board, int currentPlayer, SearchBudget budget, SearchListener listener,
+                                TranspositionTable table) {
         long startTime = System.nanoTime();
         IsolaMove bestMove = null;
+        SearchContext context = new SearchContext(budget, startTime, listener, table);
 
         // 1. Determine the effective search depth based on the opponent's mobility
         int opponentReachableTiles = countOpponentReachableTiles(board, currentPlayer);
@@ -40,8 +363,35 @@ public class ComputerPlayer {
         if (effectiveMaxDepth > maxSearchDepth) {
             effectiveMaxDepth = maxSearchDepth;
         }
+        if (effectiveMaxDepth > budget.getMaxDepth()) {
+            effectiveMaxDepth = budget.getMaxDepth();
+        }
 
-        System.out.println("Opponent reachable tiles: " + opponentReachableTiles + ". Effective Max Depth: " + effectiveMaxDepth);
+        Position position = Position.fromBoard(board, currentPlayer);
+        log("Position: " + position);
+        if (table != null) {
+            table.newSearch();
+        }
+        Random choiceRandom = deterministic ? new Random(seed ^ board.getPositionKey(currentPlayer)) : random;
+        log("Opponent reachable tiles: " + opponentReachableTiles + ". Effective Max Depth: " + effectiveMaxDepth);
+
+        // Positions covered by the tablebase are solved exactly, no search needed
+        if (tablebase != null && tablebase.covers(board.countRemovableTiles())) {
+            IsolaMove tablebaseMove = findTablebaseMove(board, currentPlayer, choiceRandom);
+            if (tablebaseMove != null) {
+                log("Computer wählt Zug aus der Endspieldatenbank: " + tablebaseMove);
+                IsolaBoard clonedBoard = board.clone();
+                clonedBoard.movePlayer(currentPlayer, tablebaseMove.moveToRow, tablebaseMove.moveToCol);
+                clonedBoard.removeTile(tablebaseMove.removeTileRow, tablebaseMove.removeTileCol);
+                boolean player1Wins = (tablebase.probe(clonedBoard, getOpponent(currentPlayer)) <= 0) == (currentPlayer == IsolaBoard.PLAYER1);
+                double value = player1Wins ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+                List<IsolaMove> line = Collections.singletonList(tablebaseMove);
+                long duration = (System.nanoTime() - startTime) / 1_000_000;
+                context.publish(new SearchProgress(0, value, line,
+                        Collections.singletonList(new ScoredMove(tablebaseMove, value)), 0, duration));
+                return new SearchResult(tablebaseMove, value, 0, 0, duration, false, line);
+            }
+        }
 
         // 2. Generate moves using the heuristic
         List<IsolaMove> movesToEvaluate = getHeuristicBestMoves(board, currentPlayer);
@@ -53,7 +403,8 @@ public class ComputerPlayer {
 
         // Final sanity check for game end
         if (movesToEvaluate.isEmpty()) {
-            return null;
+            double lossValue = (currentPlayer == IsolaBoard.PLAYER1) ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+            return new SearchResult(null, lossValue, 0, 0, (System.nanoTime() - startTime) / 1_000_000, false);
         }
 
         // Sort the moves to evaluate the most promising ones first
@@ -64,13 +415,32 @@ public class ComputerPlayer {
             return distToOpponent;
         }));
 
+        // If the opponent played the reply expected by the last search, its predicted move is searched first;
+        // the table may still hold the subtree below it
+        ExpectedMove expected = expectedMove;
+        if (expected != null && !deterministic && expected.positionKey == position.pack()) {
+            for (int i = 0; i < movesToEvaluate.size(); i++) {
+                if (sameMove(movesToEvaluate.get(i), expected.move)) {
+                    movesToEvaluate.add(0, movesToEvaluate.remove(i));
+                    log("Erwarteter Zug: " + expected.move);
+                    break;
+                }
+            }
+        }
+
         List<IsolaMove> finalBestMoves = new ArrayList<>();
+        List<List<IsolaMove>> finalBestLines = new ArrayList<>();
         double finalBestValue = (currentPlayer == IsolaBoard.PLAYER1) ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        double finalBoundValue = finalBestValue;
+        List<ScoredLine> finalLines = Collections.emptyList();
+        int completedDepth = 0;
+        boolean maximizing = currentPlayer == IsolaBoard.PLAYER1;
 
         for (int currentDepth = 1; currentDepth <= effectiveMaxDepth; currentDepth++) {
-            System.out.println("Starting search at depth: " + currentDepth);
+            log("Starting search at depth: " + currentDepth);
 
-            final int finalCurrentDepth = currentDepth;
+            // The first iteration always completes, so there is a move to fall back on
+            context.abortable = currentDepth > 1;
 
             // Limit the branch factor to manage performance.
             int effectiveBranchFactor = 10;
@@ -84,67 +454,249 @@ public class ComputerPlayer {
             List<IsolaMove> movesForMinimax = movesToEvaluate.size() > effectiveBranchFactor ?
                     movesToEvaluate.subList(0, effectiveBranchFactor) : movesToEvaluate;
 
-            List<Future<Double>> futures = new ArrayList<>();
             List<IsolaMove> currentBestMoves = new ArrayList<>();
+            List<List<IsolaMove>> currentBestLines = new ArrayList<>();
             double currentBestValue = (currentPlayer == IsolaBoard.PLAYER1) ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
 
-            for (IsolaMove move : movesForMinimax) {
-                Callable<Double> task = () -> {
-                    IsolaBoard clonedBoard = board.clone();
-                    clonedBoard.movePlayer(currentPlayer, move.moveToRow, move.moveToCol);
-                    clonedBoard.removeTile(move.removeTileRow, move.removeTileCol);
-                    return minimax(clonedBoard, finalCurrentDepth - 1, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, getOpponent(currentPlayer));
-                };
-                futures.add(executorService.submit(task));
-            }
-
-            try {
-                for (int i = 0; i < movesForMinimax.size(); i++) {
-                    IsolaMove move = movesForMinimax.get(i);
-                    double value = futures.get(i).get();
-
-                    if (currentPlayer == IsolaBoard.PLAYER1) {
-                        if (value > currentBestValue) {
-                            currentBestValue = value;
-                            currentBestMoves.clear();
-                            currentBestMoves.add(move);
-                        } else if (value == currentBestValue) {
-                            currentBestMoves.add(move);
-                        }
-                    } else {
-                        if (value < currentBestValue) {
-                            currentBestValue = value;
-                            currentBestMoves.clear();
-                            currentBestMoves.add(move);
-                        } else if (value == currentBestValue) {
-                            currentBestMoves.add(move);
-                        }
-                    }
-                }
+            // Aspiration window around the previous iteration's scores of all lines; the first iteration
+            // and iterations after a won or lost score use the full window
+            double windowLow = Double.NEGATIVE_INFINITY;
+            double windowHigh = Double.POSITIVE_INFINITY;
+            double delta = aspirationWindow;
+            if (completedDepth > 0 && !Double.isInfinite(finalBestValue) && !Double.isInfinite(finalBoundValue) &&
+                    !Double.isInfinite(delta)) {
+                windowLow = (maximizing ? finalBoundValue : finalBestValue) - delta;
+                windowHigh = (maximizing ? finalBestValue : finalBoundValue) + delta;
+            }
 
-                if (!currentBestMoves.isEmpty()) {
-                    finalBestMoves = currentBestMoves;
-                    finalBestValue = currentBestValue;
+            RootSearch rootSearch;
+            while (true) {
+                rootSearch = searchRootMoves(board, currentPlayer, movesForMinimax, currentDepth,
+                        windowLow, windowHigh, budget.getParallelism(), context);
+                if (rootSearch == null || context.aborted) {
+                    break;
+                }
+                // Fail low or high: the true score of a line lies outside the window, widen it and search again
+                double lowValue = maximizing ? rootSearch.boundValue : rootSearch.bestValue;
+                double highValue = maximizing ? rootSearch.bestValue : rootSearch.boundValue;
+                if (lowValue <= windowLow && windowLow != Double.NEGATIVE_INFINITY) {
+                    delta *= ASPIRATION_GROWTH;
+                    windowLow = (delta > ASPIRATION_LIMIT) ? Double.NEGATIVE_INFINITY : lowValue - delta;
+                } else if (highValue >= windowHigh && windowHigh != Double.POSITIVE_INFINITY) {
+                    delta *= ASPIRATION_GROWTH;
+                    windowHigh = (delta > ASPIRATION_LIMIT) ? Double.POSITIVE_INFINITY : highValue + delta;
                 } else {
                     break;
                 }
-            } catch (InterruptedException | ExecutionException e) {
-                System.err.println("An error occurred during move calculation: " + e.getMessage());
+                context.researches++;
+                log("Aspiration window failed at depth " + currentDepth + ", searching again in [" +
+                    windowLow + ", " + windowHigh + "]");
+            }
+
+            if (rootSearch == null) {
+                break;
+            }
+            if (context.aborted) {
+                log("Search budget exhausted at depth: " + currentDepth);
+                break;
+            }
+
+            List<ScoredMove> rootScores = new ArrayList<>();
+            for (int i = 0; i < movesForMinimax.size(); i++) {
+                if (rootSearch.skipped[i]) {
+                    continue;
+                }
+                IsolaMove move = movesForMinimax.get(i);
+                double value = rootSearch.values[i];
+                rootScores.add(new ScoredMove(move, value, rootSearch.exact[i]));
+
+                // Moves equal to the best one were searched with a window just below it, so ties are exact
+                if (value == rootSearch.bestValue) {
+                    currentBestValue = value;
+                    currentBestMoves.add(move);
+                    currentBestLines.add(rootSearch.lines.get(i));
+                }
+            }
+
+            if (!currentBestMoves.isEmpty()) {
+                finalBestMoves = currentBestMoves;
+                finalBestLines = currentBestLines;
+                finalBestValue = currentBestValue;
+                finalBoundValue = rootSearch.boundValue;
+                finalLines = new ArrayList<>();
+                for (int i : rootSearch.getBestIndices()) {
+                    finalLines.add(new ScoredLine(rootSearch.values[i], rootSearch.lines.get(i)));
+                }
+                completedDepth = currentDepth;
+                context.publish(new SearchProgress(completedDepth, finalBestValue, finalBestLines.get(0), rootScores,
+                        context.nodes.get(), (System.nanoTime() - startTime) / 1_000_000));
+            } else {
                 break;
             }
         }
 
+        List<IsolaMove> principalVariation = Collections.emptyList();
         if (!finalBestMoves.isEmpty()) {
-            bestMove = finalBestMoves.get(random.nextInt(finalBestMoves.size()));
+            int choice = choiceRandom.nextInt(finalBestMoves.size());
+            bestMove = finalBestMoves.get(choice);
+            principalVariation = finalBestLines.get(choice);
         }
 
         long endTime = System.nanoTime();
         long duration = (endTime - startTime) / 1_000_000;
-        System.out.println("Minimax-Suche abgeschlossen in " + duration + " ms. Bester Wert: " + finalBestValue);
+        log("Minimax-Suche abgeschlossen in " + duration + " ms. Bester Wert: " + finalBestValue +
+            ", Knoten: " + context.nodes.get() + ", Wiederholungssuchen: " + context.researches +
+            ", Verlängerungen: " + context.extensions.get());
+        if (verbose && table != null) {
+            log("Hashtabelle: " + table);
+        }
 
-        System.out.println("Computer wählt Zug: " + bestMove);
+        log("Computer wählt Zug: " + bestMove);
 
-        return bestMove;
+        expectedMove = ExpectedMove.fromLine(board, currentPlayer, principalVariation);
+
+        // The chosen move leads the lines, followed by the other best moves
+        List<ScoredLine> lines = new ArrayList<>();
+        if (bestMove != null) {
+            lines.add(new ScoredLine(finalBestValue, principalVariation));
+        }
+        for (ScoredLine line : finalLines) {
+            if ((bestMove == null || !sameMove(line.getMove(), bestMove)) && lines.size() < finalLines.size()) {
+                lines.add(line);
+            }
+        }
+        if (multiPv > 1) {
+            for (ScoredLine line : lines) {
+                log("Variante " + line);
+            }
+        }
+
+        return new SearchResult(bestMove, finalBestValue, completedDepth, context.nodes.get(), duration, context.aborted,
+                principalVariation, lines);
+    }
+
+    /**
+     * Searches a position to a fixed depth over all moves, without the depth limit and the root move
+     * selection of {@link #search}. The search runs on the calling thread; the subtrees of a
+     * {@link DistributedSearch} are searched this way.
+     *
+     * @param board The position to search
+     * @param player The player to move
+     * @param depth The depth of the search
+     * @param alpha The lower end of the window
+     * @param beta The upper end of the window
+     * @param listener Checked to stop the search early, or null
+     * @return The best move, the value from Player 1's point of view and the principal variation;
+     *         a value outside the window is only a bound. The result is aborted if the listener stopped it.
+     */
+    SearchResult searchSubtree(IsolaBoard board, int player, int depth, double alpha, double beta,
+                               SearchListener listener) {
+        long startTime = System.nanoTime();
+        SearchContext context = new SearchContext(SearchBudget.UNLIMITED, startTime, listener,
+                                                  deterministic ? null : getTranspositionTable());
+        context.abortable = true;
+        PrincipalVariation pv = new PrincipalVariation();
+        float[] accumulator = (network == null) ? null : network.createAccumulator(board, player);
+        double value = minimax(board, depth, alpha, beta, player, context, pv, 0, accumulator, new Extensions());
+        List<IsolaMove> line = pv.getRootLine();
+        return new SearchResult(line.isEmpty() ? null : line.get(0), value, depth, context.nodes.get(),
+                (System.nanoTime() - startTime) / 1_000_000, context.aborted, line);
+    }
+
+    /**
+     * Searches the root moves of one iteration within a window.
+     *
+     * The workers share the best value found so far: later root moves are searched with a window
+     * that starts just short of it, so moves that cannot reach it are cut off early while moves
+     * that tie with it still get their exact value. With several lines the bound is the worst of the
+     * best values instead, so the moves of all lines get exact values. In deterministic mode only the
+     * bound of the first moves is shared, so no window depends on which worker finishes first.
+     *
+     * @return The values of the root moves, or null if the search failed
+     */
+    private RootSearch searchRootMoves(IsolaBoard board, int currentPlayer, List<IsolaMove> moves, int depth,
+                                       double windowLow, double windowHigh, int parallelism, SearchContext context) {
+        RootSearch rootSearch = new RootSearch(board, currentPlayer, moves, depth, windowLow, windowHigh, context);
+
+        // In deterministic mode the first moves, one per line, are searched before the workers
+        // start, and only their bound is shared
+        int first = 0;
+        if (deterministic) {
+            PrincipalVariation pv = new PrincipalVariation();
+            for (; first < Math.min(multiPv, moves.size()); first++) {
+                rootSearch.searchMove(first, rootSearch.getSharedBound(), pv);
+            }
+        }
+        double firstBound = rootSearch.getSharedBound();
+
+        // Root moves are shared by at most 'parallelism' tasks, so a single search
+        // cannot occupy more workers of a shared executor than its budget allows
+        AtomicInteger nextMove = new AtomicInteger(first);
+        int workers = Math.min(parallelism, moves.size() - first);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int w = 0; w < workers; w++) {
+            Runnable task = () -> {
+                PrincipalVariation pv = new PrincipalVariation();
+                int i;
+                while ((i = nextMove.getAndIncrement()) < moves.size() && !context.aborted) {
+                    rootSearch.searchMove(i, deterministic ? firstBound : rootSearch.getSharedBound(), pv);
+                }
+            };
+            futures.add(executorService.submit(task));
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            System.err.println("An error occurred during move calculation: " + e.getMessage());
+            context.aborted = true;
+            return null;
+        }
+        rootSearch.finish();
+        return rootSearch;
+    }
+
+    /**
+     * Picks the move with the best tablebase result: the fastest win if there is one,
+     * otherwise the move that delays the loss the longest.
+     * @param board The current game board.
+     * @param player The current player.
+     * @param random The random generator choosing among equal moves.
+     * @return The chosen move, or null if the player has no move.
+     */
+    private IsolaMove findTablebaseMove(IsolaBoard board, int player, Random random) {
+        List<IsolaMove> bestMoves = new ArrayList<>();
+        int bestResult = Integer.MIN_VALUE;
+
+        for (IsolaMove move : getAllPossibleMoves(board, player)) {
+            IsolaBoard clonedBoard = board.clone();
+            clonedBoard.movePlayer(player, move.moveToRow, move.moveToCol);
+            clonedBoard.removeTile(move.removeTileRow, move.removeTileCol);
+
+            int opponentResult = tablebase.probe(clonedBoard, getOpponent(player));
+            if (opponentResult == EndgameTablebase.UNKNOWN) {
+                return null;
+            }
+            // Opponent loses in n plies -> we win in n + 1; opponent wins in n -> we lose in n + 1.
+            // Shorter wins and longer losses score higher.
+            int result = (opponentResult <= 0) ? 1000 + opponentResult : -1000 + opponentResult;
+
+            if (result > bestResult) {
+                bestResult = result;
+                bestMoves.clear();
+                bestMoves.add(move);
+            } else if (result == bestResult) {
+                bestMoves.add(move);
+            }
+        }
+
+        if (bestMoves.isEmpty()) {
+            return null;
+        }
+        return bestMoves.get(random.nextInt(bestMoves.size()));
     }
 
     /**
@@ -211,7 +763,7 @@ public class ComputerPlayer {
      * @param player The current player.
      * @return A list of all physically possible moves.
      */
-    private List<IsolaMove> getAllPossibleMoves(IsolaBoard board, int player) {
+    List<IsolaMove> getAllPossibleMoves(IsolaBoard board, int player) {
         List<IsolaMove> moves = new ArrayList<>();
         int currentRow, currentCol;
 
@@ -248,54 +800,160 @@ public class ComputerPlayer {
         return moves;
     }
 
-    private double minimax(IsolaBoard board, int depth, double alpha, double beta, int player) {
-        if (depth == 0 || board.isPlayerIsolated(player) || board.isPlayerIsolated(getOpponent(player))) {
-            return evaluateBoard(board, player);
+    private double minimax(IsolaBoard board, int depth, double alpha, double beta, int player, SearchContext context,
+                           PrincipalVariation pv, int ply, float[] accumulator, Extensions extensions) {
+        pv.clear(ply);
+        if (context.shouldStop()) {
+            // The value is discarded together with the aborted iteration
+            return 0.0;
+        }
+        extensions.nodes++;
+        if (extensions.lineExtensions > 0) {
+            extensions.extendedNodes++;
         }
 
-        if (player == IsolaBoard.PLAYER1) {
-            double maxEval = Double.NEGATIVE_INFINITY;
-            List<IsolaMove> possibleMoves = getAllPossibleMoves(board, player);
+        if (tablebase != null) {
+            int result = tablebase.probe(board, player);
+            if (result != EndgameTablebase.UNKNOWN) {
+                boolean player1Wins = (result > 0) == (player == IsolaBoard.PLAYER1);
+                return player1Wins ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+            }
+        }
 
-            if (possibleMoves.isEmpty()) {
-                return Double.NEGATIVE_INFINITY;
+        if (depth == 0 || countPossibleMoves(board, player) == 0 || countPossibleMoves(board, getOpponent(player)) == 0) {
+            return evaluateLeaf(board, player, accumulator);
+        }
+
+        // Results of earlier searches of this position or its rotation, keyed by the canonical
+        // position; in deterministic mode the workers share nothing. The network evaluates each
+        // square with its own weights and is not invariant under the rotation, so with a network
+        // only the position itself shares an entry.
+        TranspositionTable table = context.table;
+        long key = 0L;
+        Symmetry symmetry = Symmetry.IDENTITY;
+        TranspositionTable.Entry hashEntry = null;
+        if (table != null) {
+            long tileMask = board.getTileMask();
+            int player1Square = board.player1Row * IsolaBoard.BOARD_COLS + board.player1Col;
+            int player2Square = board.player2Row * IsolaBoard.BOARD_COLS + board.player2Col;
+            if (network == null) {
+                symmetry = Position.getCanonicalSymmetry(tileMask, player1Square, player2Square, player);
+            }
+            key = Position.pack(symmetry.transformMask(tileMask), symmetry.transformSquare(player1Square),
+                                symmetry.transformSquare(player2Square), player);
+            hashEntry = table.probe(key);
+            if (hashEntry != null && hashEntry.depth >= depth &&
+                    (hashEntry.bound == TranspositionTable.EXACT ||
+                     (hashEntry.bound == TranspositionTable.LOWER_BOUND && hashEntry.value >= beta) ||
+                     (hashEntry.bound == TranspositionTable.UPPER_BOUND && hashEntry.value <= alpha))) {
+                return hashEntry.value;
             }
+        }
+        double originalAlpha = alpha;
+        double originalBeta = beta;
+
+        List<IsolaMove> possibleMoves = getAllPossibleMoves(board, player);
+        if (possibleMoves.isEmpty()) {
+            return (player == IsolaBoard.PLAYER1) ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        }
+        // The best move of an earlier search is tried first
+        if (hashEntry != null) {
+            for (int i = 1; i < possibleMoves.size(); i++) {
+                if (hashEntry.isBestMove(possibleMoves.get(i), symmetry)) {
+                    possibleMoves.add(0, possibleMoves.remove(i));
+                    break;
+                }
+            }
+        }
+
+        IsolaMove bestMove = null;
+        double bestEval;
+        if (player == IsolaBoard.PLAYER1) {
+            double maxEval = Double.NEGATIVE_INFINITY;
 
             for (IsolaMove move : possibleMoves) {
                 IsolaBoard clonedBoard = board.clone();
                 clonedBoard.movePlayer(player, move.moveToRow, move.moveToCol);
                 clonedBoard.removeTile(move.removeTileRow, move.removeTileCol);
 
-                double eval = minimax(clonedBoard, depth - 1, alpha, beta, getOpponent(player));
+                double eval = searchChild(clonedBoard, depth - 1, alpha, beta, getOpponent(player), context, pv, ply + 1,
+                                          childAccumulator(accumulator, player, move), extensions);
+                if (eval > maxEval || move == possibleMoves.get(0)) {
+                    pv.update(ply, move);
+                    bestMove = move;
+                }
                 maxEval = Math.max(maxEval, eval);
                 alpha = Math.max(alpha, eval);
                 if (beta <= alpha) {
                     break;
                 }
             }
-            return maxEval;
+            bestEval = maxEval;
         } else {
             double minEval = Double.POSITIVE_INFINITY;
-            List<IsolaMove> possibleMoves = getAllPossibleMoves(board, player);
-
-            if (possibleMoves.isEmpty()) {
-                return Double.POSITIVE_INFINITY;
-            }
 
             for (IsolaMove move : possibleMoves) {
                 IsolaBoard clonedBoard = board.clone();
                 clonedBoard.movePlayer(player, move.moveToRow, move.moveToCol);
                 clonedBoard.removeTile(move.removeTileRow, move.removeTileCol);
 
-                double eval = minimax(clonedBoard, depth - 1, alpha, beta, getOpponent(player));
+                double eval = searchChild(clonedBoard, depth - 1, alpha, beta, getOpponent(player), context, pv, ply + 1,
+                                          childAccumulator(accumulator, player, move), extensions);
+                if (eval < minEval || move == possibleMoves.get(0)) {
+                    pv.update(ply, move);
+                    bestMove = move;
+                }
                 minEval = Math.min(minEval, eval);
                 beta = Math.min(beta, eval);
                 if (beta <= alpha) {
                     break;
                 }
             }
-            return minEval;
+            bestEval = minEval;
+        }
+
+        // Values of an aborted search are meaningless and must not be stored
+        if (table != null && !context.aborted) {
+            int bound = (bestEval <= originalAlpha) ? TranspositionTable.UPPER_BOUND
+                      : (bestEval >= originalBeta) ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+            // The best move is stored in the canonical orientation
+            table.store(key, depth, bestEval, bound, symmetry.transform(bestMove));
+        }
+        return bestEval;
+    }
+
+    /**
+     * Searches a child node, one ply deeper than planned if it is a forced position at the horizon.
+     */
+    private double searchChild(IsolaBoard board, int depth, double alpha, double beta, int player, SearchContext context,
+                               PrincipalVariation pv, int ply, float[] accumulator, Extensions extensions) {
+        if (depth > 0 || !tacticalSearch || extensions.lineExtensions >= MAX_EXTENSION_PLIES ||
+                extensions.extendedNodes > EXTENSION_NODE_SHARE * extensions.nodes + EXTENSION_MIN_NODES) {
+            return minimax(board, depth, alpha, beta, player, context, pv, ply, accumulator, extensions);
+        }
+        int playerSquare = (player == IsolaBoard.PLAYER1)
+                ? board.player1Row * IsolaBoard.BOARD_COLS + board.player1Col
+                : board.player2Row * IsolaBoard.BOARD_COLS + board.player2Col;
+        int opponentSquare = (player == IsolaBoard.PLAYER1)
+                ? board.player2Row * IsolaBoard.BOARD_COLS + board.player2Col
+                : board.player1Row * IsolaBoard.BOARD_COLS + board.player1Col;
+        int targets = Long.bitCount(targets(board.getTileMask(), playerSquare, opponentSquare));
+        if (targets == 0 || targets > FORCED_TARGETS) {
+            return minimax(board, depth, alpha, beta, player, context, pv, ply, accumulator, extensions);
         }
+
+        extensions.lineExtensions++;
+        context.extensions.incrementAndGet();
+        try {
+            return minimax(board, 1, alpha, beta, player, context, pv, ply, accumulator, extensions);
+        } finally {
+            extensions.lineExtensions--;
+        }
+    }
+
+    private static boolean sameMove(IsolaMove a, IsolaMove b) {
+        return a.moveToRow == b.moveToRow && a.moveToCol == b.moveToCol &&
+               a.removeTileRow == b.removeTileRow && a.removeTileCol == b.removeTileCol;
     }
 
     /**
@@ -348,94 +1006,458 @@ public class ComputerPlayer {
         return visited.size() - 1;
     }
 
-    private double evaluateBoard(IsolaBoard board, int player) {
-        int player1Moves = countPossibleMoves(board, IsolaBoard.PLAYER1);
-        int player2Moves = countPossibleMoves(board, IsolaBoard.PLAYER2);
+    /**
+     * Copies the accumulator of the neural network and updates it with a move.
+     *
+     * @return The accumulator of the position after the move, or null if no network is used
+     */
+    private float[] childAccumulator(float[] accumulator, int player, IsolaMove move) {
+        if (accumulator == null) {
+            return null;
+        }
+        float[] child = accumulator.clone();
+        network.update(child, player, move.moveFromRow * IsolaBoard.BOARD_COLS + move.moveFromCol,
+                       move.moveToRow * IsolaBoard.BOARD_COLS + move.moveToCol,
+                       move.removeTileRow * IsolaBoard.BOARD_COLS + move.removeTileCol);
+        return child;
+    }
+
+    /**
+     * Evaluates a leaf with the neural network if there is an accumulator, else with {@link #evaluateBoard}.
+     * An isolated player is recognized by the move count in both cases.
+     */
+    private double evaluateLeaf(IsolaBoard board, int player, float[] accumulator) {
+        if (tacticalSearch) {
+            long tileMask = board.getTileMask();
+            int player1Square = board.player1Row * IsolaBoard.BOARD_COLS + board.player1Col;
+            int player2Square = board.player2Row * IsolaBoard.BOARD_COLS + board.player2Col;
+            boolean player1ToMove = player == IsolaBoard.PLAYER1;
+            int playerSquare = player1ToMove ? player1Square : player2Square;
+            int opponentSquare = player1ToMove ? player2Square : player1Square;
+            // A player to move who can isolate the opponent at once has won
+            if (countMoves(tileMask, playerSquare, opponentSquare) > 0 &&
+                    countMoves(tileMask, opponentSquare, playerSquare) > 0 &&
+                    canIsolate(tileMask, playerSquare, opponentSquare)) {
+                return player1ToMove ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+            }
+        }
+        if (accumulator == null) {
+            return evaluateBoard(board, player);
+        }
+        if (countPossibleMoves(board, IsolaBoard.PLAYER1) == 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        if (countPossibleMoves(board, IsolaBoard.PLAYER2) == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return network.evaluate(accumulator);
+    }
 
-        if (board.isPlayerIsolated(IsolaBoard.PLAYER1)) {
+    private double evaluateBoard(IsolaBoard board, int player) {
+        long tileMask = board.getTileMask();
+        int player1Square = board.player1Row * IsolaBoard.BOARD_COLS + board.player1Col;
+        int player2Square = board.player2Row * IsolaBoard.BOARD_COLS + board.player2Col;
+        int player1Moves = countMoves(tileMask, player1Square, player2Square);
+        int player2Moves = countMoves(tileMask, player2Square, player1Square);
+
+        // A player without (move, removal) combination is isolated
+        if (player1Moves == 0) {
             return Double.NEGATIVE_INFINITY;
         }
-        if (board.isPlayerIsolated(IsolaBoard.PLAYER2)) {
+        if (player2Moves == 0) {
             return Double.POSITIVE_INFINITY;
         }
 
-        double score = player1Moves - player2Moves;
+        double score = weights.getMobility() * (player1Moves - player2Moves);
 
-        // New heuristic: distance to the nearest starting point
-        int[] p1Pos = board.getPlayer1Position();
-        int[] p2Pos = board.getPlayer2Position();
+        // Territory: squares a player reaches before the opponent
+        score += weights.getTerritory() * countTerritory(tileMask, player1Square, player2Square);
 
-        int[] p1Start = new int[]{0, 3};
-        int[] p2Start = new int[]{5, 4};
+        // Distance to the nearest starting point
+        score += weights.getDistance() * distanceToStart(player1Square, player2Square, player);
 
-        // Calculate distance for Player 1 to both starting points
-        double p1DistToP1Start = Math.abs(p1Pos[0] - p1Start[0]) + Math.abs(p1Pos[1] - p1Start[1]);
-        double p1DistToP2Start = Math.abs(p1Pos[0] - p2Start[0]) + Math.abs(p1Pos[1] - p2Start[1]);
-        double p1DistToNearestStart = Math.min(p1DistToP1Start, p1DistToP2Start);
+        return score;
+    }
 
-        // Calculate distance for Player 2 to both starting points
-        double p2DistToP1Start = Math.abs(p2Pos[0] - p1Start[0]) + Math.abs(p2Pos[1] - p1Start[1]);
-        double p2DistToP2Start = Math.abs(p2Pos[0] - p2Start[0]) + Math.abs(p2Pos[1] - p2Start[1]);
-        double p2DistToNearestStart = Math.min(p2DistToP1Start, p2DistToP2Start);
+    /**
+     * Compares the distances of both players to their nearest starting point. A smaller distance is
+     * better, so it is subtracted from the score for the current player and added for the opponent.
+     *
+     * @return The unweighted distance term
+     */
+    static double distanceToStart(int player1Square, int player2Square, int player) {
+        int p1Distance = distanceToNearestStart(player1Square);
+        int p2Distance = distanceToNearestStart(player2Square);
+        return (player == IsolaBoard.PLAYER1) ? p2Distance - p1Distance : p1Distance - p2Distance;
+    }
 
-        // A smaller distance is better, so we subtract it from the score for the current player
-        // and add it for the opponent. We use a small factor to not make it the only deciding factor.
-        if (player == IsolaBoard.PLAYER1) {
-            score -= p1DistToNearestStart * 0.1;
-            score += p2DistToNearestStart * 0.1;
-        } else {
-            score -= p2DistToNearestStart * 0.1;
-            score += p1DistToNearestStart * 0.1;
+    private static int distanceToNearestStart(int square) {
+        int row = square / IsolaBoard.BOARD_COLS;
+        int col = square % IsolaBoard.BOARD_COLS;
+        // The start points of this term are (0, 3) and (5, 4)
+        return Math.min(Math.abs(row) + Math.abs(col - 3), Math.abs(row - 5) + Math.abs(col - 4));
+    }
+
+    private int countPossibleMoves(IsolaBoard board, int player) {
+        int player1Square = board.player1Row * IsolaBoard.BOARD_COLS + board.player1Col;
+        int player2Square = board.player2Row * IsolaBoard.BOARD_COLS + board.player2Col;
+        return (player == IsolaBoard.PLAYER1)
+                ? countMoves(board.getTileMask(), player1Square, player2Square)
+                : countMoves(board.getTileMask(), player2Square, player1Square);
+    }
+
+    /**
+     * Counts the (move, removal) combinations of a player on bitboards.
+     */
+    static int countMoves(long tileMask, int square, int opponentSquare) {
+        long opponentBit = 1L << opponentSquare;
+        long removable = tileMask & ~opponentBit;
+        long targets = targets(tileMask, square, opponentSquare);
+        // Every target allows every removable tile, except the target itself
+        return Long.bitCount(targets) * Long.bitCount(removable) - Long.bitCount(targets & removable);
+    }
+
+    /**
+     * Get the squares a player can move to.
+     */
+    private static long targets(long tileMask, int square, int opponentSquare) {
+        return kingSteps(1L << square) & (tileMask | START_MASK) & ~(1L << opponentSquare);
+    }
+
+    /**
+     * Checks whether a player has a move after which the opponent cannot move: the piece closes the
+     * opponent's last escape square, or it closes one and the removal the other.
+     */
+    static boolean canIsolate(long tileMask, int square, int opponentSquare) {
+        long opponentBit = 1L << opponentSquare;
+        for (long targets = targets(tileMask, square, opponentSquare); targets != 0; targets &= targets - 1) {
+            long targetBit = targets & -targets;
+            // The square the piece leaves becomes free for the opponent
+            long escapes = kingSteps(opponentBit) & (tileMask | START_MASK) & ~targetBit;
+            long removable = tileMask & ~opponentBit & ~targetBit;
+            if (escapes == 0 ? removable != 0 : (escapes & (escapes - 1)) == 0 && (escapes & removable) != 0) {
+                return true;
+            }
         }
+        return false;
+    }
 
-        if (player == IsolaBoard.PLAYER1 && player2Moves == 0) return Double.POSITIVE_INFINITY;
-        if (player == IsolaBoard.PLAYER2 && player1Moves == 0) return Double.NEGATIVE_INFINITY;
+    /**
+     * Compares the squares each player reaches before the other, walking over open squares.
+     * The distance maps of both players are expanded one king step per round on bitboards;
+     * squares both players reach in the same round belong to neither.
+     *
+     * @return Player 1's squares minus Player 2's squares
+     */
+    static int countTerritory(long tileMask, int player1Square, int player2Square) {
+        long player1Bit = 1L << player1Square;
+        long player2Bit = 1L << player2Square;
+        long open = (tileMask | START_MASK) & ~player1Bit & ~player2Bit;
+        long reached1 = player1Bit;
+        long reached2 = player2Bit;
+        long frontier1 = player1Bit;
+        long frontier2 = player2Bit;
+        int territory = 0;
+
+        while ((frontier1 | frontier2) != 0) {
+            frontier1 = kingSteps(frontier1) & open & ~reached1;
+            frontier2 = kingSteps(frontier2) & open & ~reached2;
+            territory += Long.bitCount(frontier1 & ~reached2 & ~frontier2)
+                       - Long.bitCount(frontier2 & ~reached1 & ~frontier1);
+            reached1 |= frontier1;
+            reached2 |= frontier2;
+        }
+        return territory;
+    }
 
-        return score;
+    /**
+     * Get all squares one king step away from any of the given squares.
+     */
+    private static long kingSteps(long squares) {
+        long horizontal = squares | ((squares << 1) & ~FILE_A) | ((squares >>> 1) & ~FILE_H);
+        return (horizontal | (horizontal << IsolaBoard.BOARD_COLS) | (horizontal >>> IsolaBoard.BOARD_COLS))
+                & BOARD_MASK & ~squares;
     }
 
-    private int countPossibleMoves(IsolaBoard board, int player) {
-        int count = 0;
-        int currentRow, currentCol;
+    /**
+     * Node counter and stop flag shared by all root tasks of one search.
+     */
+    private static final class SearchContext {
+        // Limits are only checked every CHECK_INTERVAL nodes to keep the overhead low
+        private static final long CHECK_INTERVAL = 1024;
+        // Node count and time are reported to the listener at most every PROGRESS_INTERVAL_NANOS
+        private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+        final AtomicLong nodes = new AtomicLong();
+        final AtomicLong extensions = new AtomicLong();
+        final long maxNodes;
+        final long startTime;
+        final long timeLimitNanos;
+        final SearchListener listener;
+        // The transposition table of this search, or null in deterministic mode
+        final TranspositionTable table;
+        volatile boolean aborted;
+        volatile boolean abortable;
+        int researches;
+        volatile long lastProgressTime;
+        volatile SearchProgress progress = new SearchProgress(0, 0.0, Collections.emptyList(),
+                Collections.emptyList(), 0, 0);
+
+        SearchContext(SearchBudget budget, long startTime, SearchListener listener, TranspositionTable table) {
+            this.maxNodes = budget.getMaxNodes();
+            this.startTime = startTime;
+            this.timeLimitNanos = TimeUnit.MILLISECONDS.toNanos(budget.getTimeLimitMillis());
+            this.listener = listener;
+            this.table = table;
+            this.lastProgressTime = startTime;
+        }
 
-        if (player == IsolaBoard.PLAYER1) {
-            currentRow = board.getPlayer1Position()[0];
-            currentCol = board.getPlayer1Position()[1];
-        } else {
-            currentRow = board.getPlayer2Position()[0];
-            currentCol = board.getPlayer2Position()[1];
+        boolean shouldStop() {
+            long count = nodes.incrementAndGet();
+            if (count % CHECK_INTERVAL != 0) {
+                return aborted;
+            }
+            long now = System.nanoTime();
+            if (listener != null && now - lastProgressTime >= PROGRESS_INTERVAL_NANOS) {
+                lastProgressTime = now;
+                listener.searchProgress(progress.withNodes(count, (now - startTime) / 1_000_000));
+            }
+            if (abortable && !aborted &&
+                    (count >= maxNodes || now - startTime >= timeLimitNanos ||
+                     (listener != null && listener.isStopRequested()))) {
+                aborted = true;
+            }
+            return aborted;
         }
 
-        for (int dr = -1; dr <= 1; dr++) {
-            for (int dc = -1; dc <= 1; dc++) {
-                if (dr == 0 && dc == 0) continue;
+        void publish(SearchProgress newProgress) {
+            progress = newProgress;
+            if (listener != null) {
+                listener.searchProgress(newProgress);
+            }
+        }
+    }
 
-                int newRow = currentRow + dr;
-                int newCol = currentCol + dc;
+    /**
+     * Values of the root moves of one iteration and the bound shared by the root workers.
+     *
+     * The workers collect the best values found so far, as many as lines are searched. Once there are
+     * enough, the worst of them is the bound every further move has to reach to be searched exactly.
+     */
+    private final class RootSearch {
+        private final IsolaBoard board;
+        private final int currentPlayer;
+        private final List<IsolaMove> moves;
+        private final int depth;
+        private final double windowLow;
+        private final double windowHigh;
+        private final SearchContext context;
+        final double[] values;
+        // Whether a value lies inside its window; a value at the edge is only a bound
+        final boolean[] exact;
+        final boolean[] skipped;
+        final List<List<IsolaMove>> lines;
+        final boolean maximizing;
+        // The best values so far, best first, guarded by this
+        private final double[] top;
+        private int topCount;
+        private volatile double sharedBound;
+        // Set by finish(): the best value and the worst of the best values, equal for a single line
+        double bestValue;
+        double boundValue;
+
+        RootSearch(IsolaBoard board, int currentPlayer, List<IsolaMove> moves, int depth,
+                   double windowLow, double windowHigh, SearchContext context) {
+            this.board = board;
+            this.currentPlayer = currentPlayer;
+            this.moves = moves;
+            this.depth = depth;
+            this.windowLow = windowLow;
+            this.windowHigh = windowHigh;
+            this.context = context;
+            this.values = new double[moves.size()];
+            this.exact = new boolean[moves.size()];
+            this.skipped = new boolean[moves.size()];
+            this.lines = new ArrayList<>(Collections.nCopies(moves.size(), (List<IsolaMove>) null));
+            this.maximizing = currentPlayer == IsolaBoard.PLAYER1;
+            this.top = new double[Math.max(1, Math.min(multiPv, moves.size()))];
+            this.sharedBound = worst();
+        }
 
-                if (newRow >= 0 && newRow < 6 && newCol >= 0 && newCol < 8) {
-                    IsolaBoard tempBoardForMoveCheck = board.clone();
-                    if (tempBoardForMoveCheck.movePlayer(player, newRow, newCol)) {
-                        for (int r = 0; r < 6; r++) {
-                            for (int c = 0; c < 8; c++) {
-                                IsolaBoard tempBoardForRemoveCheck = tempBoardForMoveCheck.clone();
-                                if (tempBoardForRemoveCheck.removeTile(r, c)) {
-                                    count++;
-                                }
-                            }
-                        }
-                    }
+        /**
+         * Searches one root move with a window that starts just short of the given bound.
+         */
+        void searchMove(int i, double bound, PrincipalVariation pv) {
+            IsolaMove move = moves.get(i);
+            double alpha = maximizing ? Math.max(windowLow, bound - TIE_MARGIN) : windowLow;
+            double beta = maximizing ? windowHigh : Math.min(windowHigh, bound + TIE_MARGIN);
+            if (alpha >= beta) {
+                // The window is already closed, this move cannot change the result
+                skipped[i] = true;
+                return;
+            }
+
+            IsolaBoard clonedBoard = board.clone();
+            clonedBoard.movePlayer(currentPlayer, move.moveToRow, move.moveToCol);
+            clonedBoard.removeTile(move.removeTileRow, move.removeTileCol);
+            float[] accumulator = (network == null)
+                    ? null : network.createAccumulator(clonedBoard, getOpponent(currentPlayer));
+            // Each root move has its own extension budget, so its tree does not depend on the other workers
+            double value = searchChild(clonedBoard, depth - 1, alpha, beta, getOpponent(currentPlayer), context, pv, 1,
+                                       accumulator, new Extensions());
+            values[i] = value;
+            exact[i] = (value > alpha || alpha == Double.NEGATIVE_INFINITY) &&
+                       (value < beta || beta == Double.POSITIVE_INFINITY);
+            lines.set(i, pv.getLine(move));
+            offer(value);
+        }
+
+        double getSharedBound() {
+            return sharedBound;
+        }
+
+        synchronized void offer(double value) {
+            if (topCount == top.length && !isBetter(value, top[topCount - 1])) {
+                return;
+            }
+            int i = (topCount < top.length) ? topCount++ : topCount - 1;
+            for (; i > 0 && isBetter(value, top[i - 1]); i--) {
+                top[i] = top[i - 1];
+            }
+            top[i] = value;
+            if (topCount == top.length) {
+                sharedBound = top[topCount - 1];
+            }
+        }
+
+        synchronized void finish() {
+            bestValue = (topCount > 0) ? top[0] : worst();
+            boundValue = (topCount > 0) ? top[topCount - 1] : worst();
+        }
+
+        /**
+         * Get the indices of the best moves with exact values, best first.
+         */
+        List<Integer> getBestIndices() {
+            List<Integer> indices = new ArrayList<>();
+            for (int i = 0; i < moves.size(); i++) {
+                if (!skipped[i]) {
+                    indices.add(i);
                 }
             }
+            indices.sort((a, b) -> maximizing ? Double.compare(values[b], values[a])
+                                              : Double.compare(values[a], values[b]));
+            return indices.subList(0, Math.min(top.length, indices.size()));
+        }
+
+        private boolean isBetter(double value, double other) {
+            return maximizing ? value > other : value < other;
+        }
+
+        private double worst() {
+            return maximizing ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        }
+    }
+
+    /**
+     * The move predicted for our next turn: the third move of the principal variation, together
+     * with the position it is played in.
+     */
+    private static final class ExpectedMove {
+        final long positionKey;
+        final IsolaMove move;
+
+        ExpectedMove(long positionKey, IsolaMove move) {
+            this.positionKey = positionKey;
+            this.move = move;
+        }
+
+        /**
+         * Plays our move and the expected reply of a principal variation.
+         *
+         * @return The expected move, or null if the line is too short
+         */
+        static ExpectedMove fromLine(IsolaBoard board, int player, List<IsolaMove> line) {
+            if (line.size() < 3) {
+                return null;
+            }
+            IsolaBoard expectedBoard = board.clone();
+            int mover = player;
+            for (IsolaMove move : line.subList(0, 2)) {
+                expectedBoard.movePlayer(mover, move.moveToRow, move.moveToCol);
+                expectedBoard.removeTile(move.removeTileRow, move.removeTileCol);
+                mover = (mover == IsolaBoard.PLAYER1) ? IsolaBoard.PLAYER2 : IsolaBoard.PLAYER1;
+            }
+            return new ExpectedMove(Position.fromBoard(expectedBoard, player).pack(), line.get(2));
+        }
+    }
+
+    /**
+     * Forced-move extensions of the search of one root move: the extensions on the current line and
+     * the node counts that cap their cost.
+     */
+    private static final class Extensions {
+        int lineExtensions;
+        long nodes;
+        long extendedNodes;
+    }
+
+    /**
+     * Triangular table collecting the best line below each ply of one root task.
+     */
+    private static final class PrincipalVariation {
+        private static final int MAX_PLY = 64;
+
+        private final IsolaMove[][] moves = new IsolaMove[MAX_PLY][MAX_PLY];
+        private final int[] length = new int[MAX_PLY];
+
+        void clear(int ply) {
+            length[ply] = ply;
+        }
+
+        void update(int ply, IsolaMove move) {
+            moves[ply][ply] = move;
+            for (int i = ply + 1; i < length[ply + 1]; i++) {
+                moves[ply][i] = moves[ply + 1][i];
+            }
+            length[ply] = Math.max(ply + 1, length[ply + 1]);
+        }
+
+        List<IsolaMove> getLine(IsolaMove rootMove) {
+            List<IsolaMove> line = new ArrayList<>();
+            line.add(rootMove);
+            for (int i = 1; i < length[1]; i++) {
+                line.add(moves[1][i]);
+            }
+            return line;
+        }
+
+        /**
+         * Get the line collected from the root, when the search started at ply 0.
+         */
+        List<IsolaMove> getRootLine() {
+            List<IsolaMove> line = new ArrayList<>();
+            for (int i = 0; i < length[0]; i++) {
+                line.add(moves[0][i]);
+            }
+            return line;
         }
-        return count;
     }
 
     private int getOpponent(int player) {
         return (player == IsolaBoard.PLAYER1) ? IsolaBoard.PLAYER2 : IsolaBoard.PLAYER1;
     }
 
+    private void log(String message) {
+        if (verbose) {
+            System.out.println(message);
+        }
+    }
+
+    @Override
     public void shutdown() {
-        executorService.shutdown();
+        if (ownsExecutor) {
+            executorService.shutdown();
+        }
     }
 }
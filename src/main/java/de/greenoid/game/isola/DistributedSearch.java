@@ -0,0 +1,527 @@
+package de.greenoid.game.isola;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Fixed-depth search of one position, spread over {@link SearchWorker} processes on the same machine.
+ *
+ * The coordinator plays every move of the root and sends the resulting positions as subtrees to the
+ * workers, over local TCP connections with the {@link WorkerProtocol}. The subtrees are ordered by a
+ * shallow local search, and each is sent with a window that starts just short of the best value found
+ * so far, so the workers cut off moves that cannot be best while ties still get exact values.
+ *
+ * Every worker connection takes a new subtree as soon as it has a free thread. When no subtree is left,
+ * an idle worker also takes a copy of one still running on another worker, and the first result counts;
+ * so a slow worker does not hold up the search. A worker that fails or stays silent for ten seconds is
+ * dropped and its subtrees go back to the queue. If no worker is left, the coordinator searches the
+ * remaining subtrees itself.
+ */
+public class DistributedSearch {
+
+    /** First line printed by a worker process, followed by its port. */
+    static final String LISTENING = "Worker listening on port ";
+
+    private static final double TIE_MARGIN = 1e-9;
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    // Subtrees deeper than this are ordered by a search of this depth
+    private static final int ORDERING_DEPTH = 1;
+
+    private final List<InetSocketAddress> workers;
+    private final List<Process> processes = new ArrayList<>();
+    private final ComputerPlayer localPlayer;
+    private boolean verbose = true;
+
+    /**
+     * Constructor to search with running workers.
+     *
+     * @param workers The addresses of the workers
+     */
+    public DistributedSearch(List<InetSocketAddress> workers) {
+        this.workers = new ArrayList<>(workers);
+        this.localPlayer = new ComputerPlayer(Integer.MAX_VALUE);
+        this.localPlayer.setVerbose(false);
+    }
+
+    /**
+     * Starts worker processes on this machine with the class path and JVM options of this one.
+     * They are stopped by {@link #shutdown()}.
+     *
+     * @param count The number of worker processes
+     * @param threads The number of search threads per worker
+     * @return The search using the new workers
+     * @throws IOException If a worker cannot be started
+     */
+    public static DistributedSearch spawnWorkers(int count, int threads) throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> command = new ArrayList<>();
+        command.add(java);
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(SearchWorker.class.getName());
+        command.add("0");
+        command.add(String.valueOf(threads));
+
+        List<Process> processes = new ArrayList<>();
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        try {
+            for (int i = 0; i < count; i++) {
+                Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+                processes.add(process);
+                addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), readPort(process)));
+            }
+        } catch (IOException e) {
+            processes.forEach(Process::destroy);
+            throw e;
+        }
+        DistributedSearch search = new DistributedSearch(addresses);
+        search.processes.addAll(processes);
+        return search;
+    }
+
+    private static int readPort(Process process) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith(LISTENING)) {
+                int port = Integer.parseInt(line.substring(LISTENING.length()).trim());
+                // Keep reading, so a full pipe never blocks the worker
+                Thread drain = new Thread(() -> {
+                    try {
+                        while (reader.readLine() != null) {
+                            // Discard
+                        }
+                    } catch (IOException e) {
+                        // The worker has exited
+                    }
+                }, "worker-output-" + port);
+                drain.setDaemon(true);
+                drain.start();
+                return port;
+            }
+        }
+        throw new IOException("Worker process exited before listening");
+    }
+
+    /**
+     * Enable or disable the progress output on the console.
+     *
+     * @param verbose true to print the progress, false to search silently
+     */
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    /**
+     * Searches a position to a fixed depth over all moves.
+     *
+     * @param board The position to search
+     * @param player The player to move
+     * @param depth The depth of the search, at least 1
+     * @return The best move, its value and the expected reply; the node count is the sum over all workers
+     */
+    public SearchResult search(IsolaBoard board, int player, int depth) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("Depth must be positive");
+        }
+        long startTime = System.nanoTime();
+        int opponent = (player == IsolaBoard.PLAYER1) ? IsolaBoard.PLAYER2 : IsolaBoard.PLAYER1;
+        boolean maximizing = player == IsolaBoard.PLAYER1;
+
+        List<Task> tasks = new ArrayList<>();
+        for (IsolaMove move : localPlayer.getAllPossibleMoves(board, player)) {
+            IsolaBoard child = board.clone();
+            child.movePlayer(player, move.moveToRow, move.moveToCol);
+            child.removeTile(move.removeTileRow, move.removeTileCol);
+            double estimate = (depth - 1 > ORDERING_DEPTH)
+                    ? localPlayer.searchSubtree(child, opponent, ORDERING_DEPTH, Double.NEGATIVE_INFINITY,
+                                                Double.POSITIVE_INFINITY, null).getValue()
+                    : 0.0;
+            tasks.add(new Task(move, child, Position.fromBoard(child, opponent).pack(), estimate));
+        }
+        if (tasks.isEmpty()) {
+            double lossValue = maximizing ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+            return new SearchResult(null, lossValue, 0, 0, (System.nanoTime() - startTime) / 1_000_000, false);
+        }
+        // The most promising subtrees first, ties in move order
+        Comparator<Task> byEstimate = Comparator.comparingDouble(task -> task.estimate);
+        tasks.sort(maximizing ? byEstimate.reversed() : byEstimate);
+        log("Verteilte Suche: " + tasks.size() + " Teilbäume der Tiefe " + (depth - 1) + " auf " +
+            workers.size() + " Workern");
+
+        TaskPool pool = new TaskPool(tasks, maximizing, workers.size());
+        List<Thread> threads = new ArrayList<>();
+        for (InetSocketAddress address : workers) {
+            Thread thread = new Thread(() -> runWorker(address, pool, depth - 1), "worker-" + address.getPort());
+            thread.start();
+            threads.add(thread);
+        }
+
+        if (!pool.awaitWorkers()) {
+            log("Kein Worker mehr verfügbar, " + pool.remaining + " Teilbäume werden lokal durchsucht");
+            Assignment assignment;
+            while ((assignment = pool.poll(this)) != null) {
+                Task task = assignment.task;
+                SearchResult result = localPlayer.searchSubtree(task.board.clone(), opponent, depth - 1,
+                        assignment.alpha, assignment.beta, null);
+                pool.complete(assignment, result.getValue(), result.getNodes(),
+                              WorkerProtocol.encodeMove(result.getMove()));
+            }
+        }
+        // Stops the copies still running and the connections waiting for a stalled worker
+        pool.closeConnections();
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        // The first of the best subtrees in search order
+        Task best = null;
+        for (Task task : tasks) {
+            if (task.exact && task.value == pool.best) {
+                best = task;
+                break;
+            }
+        }
+        List<IsolaMove> line = new ArrayList<>();
+        line.add(best.move);
+        IsolaMove reply = WorkerProtocol.decodeMove(best.reply, best.board, opponent);
+        if (reply != null) {
+            line.add(reply);
+        }
+        long duration = (System.nanoTime() - startTime) / 1_000_000;
+        log("Verteilte Suche abgeschlossen in " + duration + " ms. Bester Wert: " + pool.best + ", Knoten: " +
+            pool.nodes + ", doppelt vergebene Teilbäume: " + pool.copies);
+        return new SearchResult(best.move, pool.best, depth, pool.nodes, duration, false, line);
+    }
+
+    /**
+     * Sends subtrees to one worker until none is left or the worker is lost.
+     */
+    private void runWorker(InetSocketAddress address, TaskPool pool, int depth) {
+        Map<Integer, Assignment> inFlight = new HashMap<>();
+        Object owner = new Object();
+        try (Socket socket = new Socket()) {
+            if (!pool.register(socket)) {
+                return;
+            }
+            socket.connect(address, CONNECT_TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(WorkerProtocol.TIMEOUT_MILLIS);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            int slots = WorkerProtocol.readHandshake(in);
+            log("Worker " + address.getPort() + " verbunden, " + slots + " Threads");
+
+            int nextId = 0;
+            while (true) {
+                // Fill the free threads; wait for new work only when nothing is running on this worker
+                while (inFlight.size() < slots) {
+                    Assignment assignment = inFlight.isEmpty() ? pool.take(owner) : pool.poll(owner);
+                    if (assignment == null) {
+                        break;
+                    }
+                    inFlight.put(nextId, assignment);
+                    WorkerProtocol.writeTask(out, nextId, assignment.task.position, depth,
+                                             assignment.alpha, assignment.beta);
+                    nextId++;
+                }
+                if (inFlight.isEmpty()) {
+                    return;
+                }
+
+                byte type = in.readByte();
+                if (type == WorkerProtocol.RESULT) {
+                    int id = in.readInt();
+                    double value = in.readDouble();
+                    long nodes = in.readLong();
+                    short reply = in.readShort();
+                    Assignment assignment = inFlight.remove(id);
+                    if (assignment != null) {
+                        pool.complete(assignment, value, nodes, reply);
+                    }
+                } else if (type != WorkerProtocol.HEARTBEAT) {
+                    throw new IOException("Unexpected message type " + type);
+                }
+            }
+        } catch (IOException e) {
+            if (!pool.isDone()) {
+                String reason = (e.getMessage() != null) ? e.getMessage() : "Verbindung geschlossen";
+                log("Worker " + address.getPort() + " verloren (" + reason + "), " + inFlight.size() +
+                    " Teilbäume werden neu vergeben");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.release(owner, inFlight.values());
+        }
+    }
+
+    private void log(String message) {
+        if (verbose) {
+            System.out.println(message);
+        }
+    }
+
+    /**
+     * Stops the worker processes started by {@link #spawnWorkers(int, int)} and releases the local engine.
+     */
+    public void shutdown() {
+        for (Process process : processes) {
+            process.destroy();
+        }
+        localPlayer.shutdown();
+    }
+
+    /**
+     * One root move and the subtree below it.
+     */
+    private static final class Task {
+        final IsolaMove move;
+        final IsolaBoard board;
+        final long position;
+        final double estimate;
+        // Guarded by the pool
+        final Set<Object> owners = new HashSet<>();
+        boolean done;
+        boolean exact;
+        double value;
+        short reply = WorkerProtocol.NO_MOVE;
+
+        Task(IsolaMove move, IsolaBoard board, long position, double estimate) {
+            this.move = move;
+            this.board = board;
+            this.position = position;
+            this.estimate = estimate;
+        }
+    }
+
+    /**
+     * A subtree handed out with the window it is searched with.
+     */
+    private static final class Assignment {
+        final Task task;
+        final double alpha;
+        final double beta;
+
+        Assignment(Task task, double alpha, double beta) {
+            this.task = task;
+            this.alpha = alpha;
+            this.beta = beta;
+        }
+    }
+
+    /**
+     * The subtrees still to search and the best value so far, shared by the worker connections.
+     */
+    private static final class TaskPool {
+        private final Deque<Task> pending;
+        private final List<Socket> connections = new ArrayList<>();
+        private final List<Task> tasks;
+        private final boolean maximizing;
+        private int liveWorkers;
+        int remaining;
+        double best;
+        long nodes;
+        int copies;
+
+        TaskPool(List<Task> tasks, boolean maximizing, int workers) {
+            this.tasks = tasks;
+            this.pending = new ArrayDeque<>(tasks);
+            this.maximizing = maximizing;
+            this.liveWorkers = workers;
+            this.remaining = tasks.size();
+            this.best = maximizing ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        }
+
+        /**
+         * Hands out the next subtree: a queued one, or else a copy of one running on a single other worker.
+         *
+         * @param owner The taker
+         * @return The subtree with its window, or null if all subtrees are done or taken
+         */
+        synchronized Assignment poll(Object owner) {
+            if (remaining == 0) {
+                return null;
+            }
+            Task task = pending.poll();
+            if (task == null) {
+                for (Task running : tasks) {
+                    if (!running.done && running.owners.size() == 1 && !running.owners.contains(owner)) {
+                        task = running;
+                        copies++;
+                        break;
+                    }
+                }
+            }
+            if (task == null) {
+                return null;
+            }
+            task.owners.add(owner);
+            double alpha = maximizing ? best - TIE_MARGIN : Double.NEGATIVE_INFINITY;
+            double beta = maximizing ? Double.POSITIVE_INFINITY : best + TIE_MARGIN;
+            return new Assignment(task, alpha, beta);
+        }
+
+        /**
+         * Hands out the next subtree like {@link #poll(Object)}, waiting while every remaining subtree is taken.
+         *
+         * @param owner The taker
+         * @return The subtree with its window, or null if all subtrees are done
+         */
+        synchronized Assignment take(Object owner) throws InterruptedException {
+            Assignment assignment;
+            while ((assignment = poll(owner)) == null && remaining > 0) {
+                wait();
+            }
+            return assignment;
+        }
+
+        /**
+         * Records the result of a subtree; only the first result of a copied subtree counts.
+         */
+        synchronized void complete(Assignment assignment, double value, long subtreeNodes, short reply) {
+            nodes += subtreeNodes;
+            Task task = assignment.task;
+            if (task.done) {
+                return;
+            }
+            task.done = true;
+            task.owners.clear();
+            task.value = value;
+            task.reply = reply;
+            // A value at the near end of the window only bounds a move that cannot be the best
+            task.exact = maximizing
+                    ? value > assignment.alpha || assignment.alpha == Double.NEGATIVE_INFINITY
+                    : value < assignment.beta || assignment.beta == Double.POSITIVE_INFINITY;
+            if (task.exact && (maximizing ? value > best : value < best)) {
+                best = value;
+            }
+            remaining--;
+            notifyAll();
+        }
+
+        /**
+         * Returns the unfinished subtrees of a worker that is done or lost.
+         */
+        synchronized void release(Object owner, Collection<Assignment> unfinished) {
+            for (Assignment assignment : unfinished) {
+                Task task = assignment.task;
+                task.owners.remove(owner);
+                if (!task.done && task.owners.isEmpty() && !pending.contains(task)) {
+                    pending.addFirst(task);
+                }
+            }
+            liveWorkers--;
+            notifyAll();
+        }
+
+        /**
+         * Adds the connection to a worker, to be closed by {@link #closeConnections()}.
+         *
+         * @return false if the search is already over
+         */
+        synchronized boolean register(Socket socket) {
+            if (remaining == 0) {
+                return false;
+            }
+            connections.add(socket);
+            return true;
+        }
+
+        synchronized boolean isDone() {
+            return remaining == 0;
+        }
+
+        /**
+         * Closes the connections to all workers once the search is over.
+         */
+        synchronized void closeConnections() {
+            for (Socket socket : connections) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // Already closed
+                }
+            }
+        }
+
+        /**
+         * Waits until all subtrees are done or no worker is left.
+         *
+         * @return true if all subtrees are done
+         */
+        synchronized boolean awaitWorkers() {
+            try {
+                while (remaining > 0 && liveWorkers > 0) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return remaining == 0;
+        }
+    }
+
+    /**
+     * Searches a position with worker processes and prints the result.
+     * Usage: DistributedSearch "&lt;position&gt;" &lt;depth&gt; (-spawn &lt;count&gt; [threads] | -workers &lt;port,port,...&gt;)
+     *
+     * @param args The position, the depth and the workers
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4 || !("-spawn".equals(args[2]) || "-workers".equals(args[2]))) {
+            System.err.println("Usage: DistributedSearch \"<position>\" <depth> (-spawn <count> [threads] | -workers <port,port,...>)");
+            System.exit(1);
+        }
+        Position position = Position.parse(args[0]);
+        int depth = Integer.parseInt(args[1]);
+        DistributedSearch search;
+        if ("-spawn".equals(args[2])) {
+            int count = Integer.parseInt(args[3]);
+            int threads = (args.length > 4) ? Integer.parseInt(args[4])
+                    : Math.max(1, Runtime.getRuntime().availableProcessors() / count);
+            search = spawnWorkers(count, threads);
+        } else {
+            List<InetSocketAddress> addresses = new ArrayList<>();
+            for (String port : args[3].split(",")) {
+                addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(port.trim())));
+            }
+            search = new DistributedSearch(addresses);
+        }
+        try {
+            SearchResult result = search.search(position.toBoard(), position.getPlayerToMove(), depth);
+            System.out.println("Best move: " + result.getMove() + ", score: " + result.getValue() +
+                               ", line: " + result.getPrincipalVariation() + ", nodes: " + result.getNodes() +
+                               ", time: " + result.getElapsedMillis() + " ms");
+        } finally {
+            search.shutdown();
+        }
+    }
+}
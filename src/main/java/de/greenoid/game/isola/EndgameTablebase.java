@@ -0,0 +1,466 @@
+package de.greenoid.game.isola;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.IntStream;
+
+/**
+ * Retrograde endgame tablebase for positions with only a few removable tiles left.
+ *
+ * Every turn removes exactly one tile, so a position with k tiles can only lead to
+ * positions with k - 1 tiles. The tables are therefore built layer by layer, starting
+ * with the empty board, and every position is solved exactly by looking up its
+ * successors in the previous layer.
+ *
+ * Positions are stored from the point of view of the side to move: the tile mask,
+ * the square of the player to move and the square of the opponent. Both starting
+ * squares behave identically under the rules, so the colour of the player to move
+ * is not part of the key. Each entry is packed into four bits (win flag plus the
+ * distance to the end of the game in plies).
+ *
+ * Positions are keyed canonically under the 180 degree rotation (see {@link Symmetry}):
+ * a position whose mover stands in the lower half of the board is looked up as its
+ * rotated image, so only positions with the mover in the upper half are stored. This
+ * halves both the memory and the generation time. Within a layer the entries are
+ * grouped by the mover's square; for each mover square all tile masks that leave the
+ * square open are ranked, followed by the opponent's ordinal among the other open squares.
+ */
+public class EndgameTablebase {
+
+    /** Returned by {@link #probe(IsolaBoard, int)} for positions not covered by the tables. */
+    public static final int UNKNOWN = Integer.MIN_VALUE;
+
+    /** Number of tiles covered by the tables generated on demand. */
+    public static final int DEFAULT_MAX_TILES = 4;
+
+    /** Largest layer the packed format (three distance bits) can represent. */
+    public static final int MAX_SUPPORTED_TILES = 5;
+
+    private static final int BOARD_ROWS = 6;
+    private static final int BOARD_COLS = 8;
+    private static final int SQUARES = BOARD_ROWS * BOARD_COLS;
+
+    private static final int PLAYER1_START_SQUARE = 5 * BOARD_COLS + 3;
+    private static final int PLAYER2_START_SQUARE = 0 * BOARD_COLS + 4;
+    private static final long START_MASK = (1L << PLAYER1_START_SQUARE) | (1L << PLAYER2_START_SQUARE);
+
+    // Squares that can hold a removable tile, i.e. all squares except the two starting squares
+    private static final int TILE_SQUARES = SQUARES - 2;
+
+    private static final int BITS_PER_ENTRY = 4;
+    private static final int ENTRIES_PER_LONG = Long.SIZE / BITS_PER_ENTRY;
+    private static final int WIN_FLAG = 0x8;
+    private static final int DISTANCE_MASK = 0x7;
+
+    private static final int MAGIC = 0x49535442; // "ISTB"
+    private static final int FORMAT_VERSION = 2;
+
+    // Canonical positions have the mover on one of the squares 0 .. CANONICAL_MOVER_SQUARES - 1
+    private static final int CANONICAL_MOVER_SQUARES = SQUARES / 2;
+
+    private static final int[] TILE_INDEX_TO_SQUARE = new int[TILE_SQUARES];
+    private static final int[] SQUARE_TO_TILE_INDEX = new int[SQUARES];
+    private static final long[] NEIGHBOURS = new long[SQUARES];
+    private static final long[][] BINOMIAL = new long[TILE_SQUARES + 1][MAX_SUPPORTED_TILES + 2];
+    // SEGMENT_OFFSETS[tiles][moverSquare]: first entry of the mover's segment, the last element is the layer size
+    private static final long[][] SEGMENT_OFFSETS = new long[MAX_SUPPORTED_TILES + 1][CANONICAL_MOVER_SQUARES + 1];
+
+    static {
+        int tileIndex = 0;
+        for (int square = 0; square < SQUARES; square++) {
+            if (square == PLAYER1_START_SQUARE || square == PLAYER2_START_SQUARE) {
+                SQUARE_TO_TILE_INDEX[square] = -1;
+            } else {
+                SQUARE_TO_TILE_INDEX[square] = tileIndex;
+                TILE_INDEX_TO_SQUARE[tileIndex++] = square;
+            }
+        }
+
+        for (int square = 0; square < SQUARES; square++) {
+            int row = square / BOARD_COLS;
+            int col = square % BOARD_COLS;
+            long neighbours = 0L;
+            for (int dr = -1; dr <= 1; dr++) {
+                for (int dc = -1; dc <= 1; dc++) {
+                    if (dr == 0 && dc == 0) continue;
+                    int newRow = row + dr;
+                    int newCol = col + dc;
+                    if (newRow >= 0 && newRow < BOARD_ROWS && newCol >= 0 && newCol < BOARD_COLS) {
+                        neighbours |= 1L << (newRow * BOARD_COLS + newCol);
+                    }
+                }
+            }
+            NEIGHBOURS[square] = neighbours;
+        }
+
+        for (int n = 0; n <= TILE_SQUARES; n++) {
+            BINOMIAL[n][0] = 1;
+            for (int k = 1; k < BINOMIAL[n].length; k++) {
+                BINOMIAL[n][k] = (n == 0) ? 0 : BINOMIAL[n - 1][k - 1] + BINOMIAL[n - 1][k];
+            }
+        }
+
+        for (int tiles = 0; tiles <= MAX_SUPPORTED_TILES; tiles++) {
+            for (int moverSquare = 0; moverSquare < CANONICAL_MOVER_SQUARES; moverSquare++) {
+                SEGMENT_OFFSETS[tiles][moverSquare + 1] = SEGMENT_OFFSETS[tiles][moverSquare]
+                        + segmentMasks(tiles, moverSquare) * (tiles + 1);
+            }
+        }
+    }
+
+    private static volatile EndgameTablebase defaultTablebase;
+
+    private final int maxTiles;
+    // layers[k] holds the packed entries of all positions with exactly k tiles
+    private final long[][] layers;
+
+    private EndgameTablebase(int maxTiles, long[][] layers) {
+        this.maxTiles = maxTiles;
+        this.layers = layers;
+    }
+
+    /**
+     * Returns the tablebase shared by all computer players of this JVM. If the system
+     * property {@code isola.tablebase} points to an existing file, the tables are loaded
+     * from there; otherwise they are generated in memory for {@link #DEFAULT_MAX_TILES}.
+     *
+     * @return The shared tablebase
+     */
+    public static EndgameTablebase getDefault() {
+        EndgameTablebase result = defaultTablebase;
+        if (result == null) {
+            synchronized (EndgameTablebase.class) {
+                result = defaultTablebase;
+                if (result == null) {
+                    result = loadOrGenerate(System.getProperty("isola.tablebase"));
+                    defaultTablebase = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static EndgameTablebase loadOrGenerate(String fileName) {
+        if (fileName != null && Files.isRegularFile(Paths.get(fileName))) {
+            try {
+                return load(Paths.get(fileName));
+            } catch (IOException e) {
+                System.err.println("Could not load tablebase " + fileName + ": " + e.getMessage());
+            }
+        }
+        return generate(DEFAULT_MAX_TILES);
+    }
+
+    /**
+     * Generates the tables for all positions with up to {@code maxTiles} removable tiles.
+     *
+     * @param maxTiles The largest number of tiles to cover
+     * @return The generated tablebase
+     */
+    public static EndgameTablebase generate(int maxTiles) {
+        if (maxTiles < 0 || maxTiles > MAX_SUPPORTED_TILES) {
+            throw new IllegalArgumentException("maxTiles must be between 0 and " + MAX_SUPPORTED_TILES);
+        }
+
+        long startTime = System.nanoTime();
+        long[][] layers = new long[maxTiles + 1][];
+        EndgameTablebase tablebase = new EndgameTablebase(maxTiles, layers);
+
+        for (int tiles = 0; tiles <= maxTiles; tiles++) {
+            layers[tiles] = tablebase.generateLayer(tiles);
+        }
+
+        long duration = (System.nanoTime() - startTime) / 1_000_000;
+        System.err.println("Tablebase for up to " + maxTiles + " tiles generated in " + duration + " ms.");
+        return tablebase;
+    }
+
+    /**
+     * Solves all positions of one layer using the already solved layer below it.
+     */
+    private long[] generateLayer(int tiles) {
+        // Disjoint byte writes are safe across threads; the entries are packed afterwards
+        byte[] entries = new byte[(int) SEGMENT_OFFSETS[tiles][CANONICAL_MOVER_SQUARES]];
+
+        for (int square = 0; square < CANONICAL_MOVER_SQUARES; square++) {
+            final int moverSquare = square;
+            int skippedTileIndex = SQUARE_TO_TILE_INDEX[moverSquare];
+            long segmentOffset = SEGMENT_OFFSETS[tiles][moverSquare];
+
+            IntStream.range(0, (int) segmentMasks(tiles, moverSquare)).parallel().forEach(rank -> {
+                // A mover on a tile square needs that tile, the other tiles are ranked without it
+                long tileMask = (skippedTileIndex < 0) ? unrankTileMask(rank, tiles, -1)
+                        : unrankTileMask(rank, tiles - 1, skippedTileIndex) | (1L << moverSquare);
+                long openMask = tileMask | START_MASK;
+                long base = segmentOffset + (long) rank * (tiles + 1);
+
+                for (long opponents = openMask & ~(1L << moverSquare); opponents != 0; opponents &= opponents - 1) {
+                    int opponentSquare = Long.numberOfTrailingZeros(opponents);
+                    int index = (int) (base + opponentOrdinal(openMask, moverSquare, opponentSquare));
+                    entries[index] = (byte) solve(tileMask, moverSquare, opponentSquare);
+                }
+            });
+        }
+
+        long[] packed = new long[(entries.length + ENTRIES_PER_LONG - 1) / ENTRIES_PER_LONG];
+        for (int i = 0; i < entries.length; i++) {
+            packed[i / ENTRIES_PER_LONG] |= (long) (entries[i] & 0xF) << ((i % ENTRIES_PER_LONG) * BITS_PER_ENTRY);
+        }
+        return packed;
+    }
+
+    /**
+     * Computes the packed entry of a single position from the entries of its successors.
+     */
+    private int solve(long tileMask, int moverSquare, int opponentSquare) {
+        long openMask = tileMask | START_MASK;
+        boolean hasMove = false;
+        int shortestWin = Integer.MAX_VALUE;
+        int longestLoss = 0;
+
+        for (long targets = NEIGHBOURS[moverSquare] & openMask & ~(1L << opponentSquare); targets != 0; targets &= targets - 1) {
+            int targetSquare = Long.numberOfTrailingZeros(targets);
+            long removable = tileMask & ~(1L << targetSquare) & ~(1L << opponentSquare);
+
+            for (; removable != 0; removable &= removable - 1) {
+                long removed = removable & -removable;
+                int child = entry(tileMask & ~removed, opponentSquare, targetSquare);
+                int childDistance = child & DISTANCE_MASK;
+                hasMove = true;
+
+                if ((child & WIN_FLAG) == 0) {
+                    shortestWin = Math.min(shortestWin, childDistance + 1);
+                } else {
+                    longestLoss = Math.max(longestLoss, childDistance + 1);
+                }
+            }
+        }
+
+        if (!hasMove) {
+            return 0;
+        }
+        if (shortestWin != Integer.MAX_VALUE) {
+            return WIN_FLAG | shortestWin;
+        }
+        return longestLoss;
+    }
+
+    /**
+     * Probes the tables for the given position.
+     *
+     * @param board The board to look up
+     * @param player The player to move
+     * @return {@link #UNKNOWN} if the position is not covered; otherwise the number of plies
+     *         until the player to move isolates the opponent (positive) or the negated number
+     *         of plies until the player to move is isolated (zero or negative)
+     */
+    public int probe(IsolaBoard board, int player) {
+        long tileMask = 0L;
+        int tiles = 0;
+        for (int r = 0; r < BOARD_ROWS; r++) {
+            for (int c = 0; c < BOARD_COLS; c++) {
+                if (board.board[r][c] == IsolaBoard.TILE) {
+                    if (++tiles > maxTiles) {
+                        return UNKNOWN;
+                    }
+                    tileMask |= 1L << (r * BOARD_COLS + c);
+                }
+            }
+        }
+
+        int player1Square = board.player1Row * BOARD_COLS + board.player1Col;
+        int player2Square = board.player2Row * BOARD_COLS + board.player2Col;
+        long openMask = tileMask | START_MASK;
+        if ((openMask & (1L << player1Square)) == 0 || (openMask & (1L << player2Square)) == 0
+                || player1Square == player2Square) {
+            return UNKNOWN;
+        }
+
+        int entry = (player == IsolaBoard.PLAYER1)
+                ? entry(tileMask, player1Square, player2Square)
+                : entry(tileMask, player2Square, player1Square);
+        int distance = entry & DISTANCE_MASK;
+        return (entry & WIN_FLAG) != 0 ? distance : -distance;
+    }
+
+    /**
+     * Probes the tables for a position given as bit masks, for searches that keep their own bitboards.
+     *
+     * @param tileMask The removable tiles
+     * @param moverSquare The square of the player to move
+     * @param opponentSquare The square of the opponent
+     * @return The same result as {@link #probe(IsolaBoard, int)}
+     */
+    int probe(long tileMask, int moverSquare, int opponentSquare) {
+        if (Long.bitCount(tileMask) > maxTiles) {
+            return UNKNOWN;
+        }
+        int entry = entry(tileMask, moverSquare, opponentSquare);
+        int distance = entry & DISTANCE_MASK;
+        return (entry & WIN_FLAG) != 0 ? distance : -distance;
+    }
+
+    /**
+     * Check whether the tables cover positions with the given number of tiles.
+     *
+     * @param tiles The number of removable tiles on the board
+     * @return true if positions with this many tiles can be probed
+     */
+    public boolean covers(int tiles) {
+        return tiles <= maxTiles;
+    }
+
+    /**
+     * Get the largest number of tiles covered by the tables.
+     *
+     * @return The maximum number of tiles
+     */
+    public int getMaxTiles() {
+        return maxTiles;
+    }
+
+    private int entry(long tileMask, int moverSquare, int opponentSquare) {
+        if (moverSquare >= CANONICAL_MOVER_SQUARES) {
+            tileMask = Symmetry.ROTATE_180.transformMask(tileMask);
+            moverSquare = Symmetry.ROTATE_180.transformSquare(moverSquare);
+            opponentSquare = Symmetry.ROTATE_180.transformSquare(opponentSquare);
+        }
+        int tiles = Long.bitCount(tileMask);
+        long openMask = tileMask | START_MASK;
+        long index = SEGMENT_OFFSETS[tiles][moverSquare]
+                + rankTileMask(tileMask, SQUARE_TO_TILE_INDEX[moverSquare]) * (tiles + 1)
+                + opponentOrdinal(openMask, moverSquare, opponentSquare);
+        long word = layers[tiles][(int) (index / ENTRIES_PER_LONG)];
+        return (int) (word >>> ((index % ENTRIES_PER_LONG) * BITS_PER_ENTRY)) & 0xF;
+    }
+
+    /**
+     * Number of tile masks with the given number of tiles that leave the mover's square open.
+     */
+    private static long segmentMasks(int tiles, int moverSquare) {
+        if (SQUARE_TO_TILE_INDEX[moverSquare] < 0) {
+            return BINOMIAL[TILE_SQUARES][tiles];
+        }
+        return (tiles == 0) ? 0 : BINOMIAL[TILE_SQUARES - 1][tiles - 1];
+    }
+
+    private static int opponentOrdinal(long openMask, int moverSquare, int opponentSquare) {
+        return Long.bitCount(openMask & ~(1L << moverSquare) & ((1L << opponentSquare) - 1));
+    }
+
+    /**
+     * Colex rank of a tile mask within all masks with the same number of tiles.
+     * If a tile index is skipped, that tile is left out and the indices above it move down by one.
+     */
+    private static long rankTileMask(long tileMask, int skippedTileIndex) {
+        long rank = 0;
+        int i = 1;
+        for (long bits = tileMask; bits != 0; bits &= bits - 1) {
+            int tileIndex = SQUARE_TO_TILE_INDEX[Long.numberOfTrailingZeros(bits)];
+            if (skippedTileIndex >= 0) {
+                if (tileIndex == skippedTileIndex) {
+                    continue;
+                }
+                if (tileIndex > skippedTileIndex) {
+                    tileIndex--;
+                }
+            }
+            rank += BINOMIAL[tileIndex][i++];
+        }
+        return rank;
+    }
+
+    private static long unrankTileMask(long rank, int tiles, int skippedTileIndex) {
+        long tileMask = 0L;
+        int tileIndex = (skippedTileIndex < 0 ? TILE_SQUARES : TILE_SQUARES - 1) - 1;
+        for (int i = tiles; i > 0; i--) {
+            while (BINOMIAL[tileIndex][i] > rank) {
+                tileIndex--;
+            }
+            rank -= BINOMIAL[tileIndex][i];
+            int actualIndex = (skippedTileIndex >= 0 && tileIndex >= skippedTileIndex) ? tileIndex + 1 : tileIndex;
+            tileMask |= 1L << TILE_INDEX_TO_SQUARE[actualIndex];
+            tileIndex--;
+        }
+        return tileMask;
+    }
+
+    /**
+     * Write the tables to a file.
+     *
+     * @param file The file to write
+     * @throws IOException If the file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        try (OutputStream fileOut = Files.newOutputStream(file);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(maxTiles);
+            for (long[] layer : layers) {
+                out.writeInt(layer.length);
+                for (long word : layer) {
+                    out.writeLong(word);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read tables previously written with {@link #save(Path)}.
+     *
+     * @param file The file to read
+     * @return The loaded tablebase
+     * @throws IOException If the file cannot be read or has an unexpected format
+     */
+    public static EndgameTablebase load(Path file) throws IOException {
+        try (InputStream fileIn = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(fileIn))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Not an Isola tablebase file: " + file);
+            }
+            int maxTiles = in.readInt();
+            if (maxTiles < 0 || maxTiles > MAX_SUPPORTED_TILES) {
+                throw new IOException("Unsupported tablebase size: " + maxTiles);
+            }
+
+            long[][] layers = new long[maxTiles + 1][];
+            for (int tiles = 0; tiles <= maxTiles; tiles++) {
+                long expectedEntries = SEGMENT_OFFSETS[tiles][CANONICAL_MOVER_SQUARES];
+                int length = in.readInt();
+                if (length != (expectedEntries + ENTRIES_PER_LONG - 1) / ENTRIES_PER_LONG) {
+                    throw new IOException("Corrupt tablebase layer " + tiles + " in " + file);
+                }
+                layers[tiles] = new long[length];
+                for (int i = 0; i < length; i++) {
+                    layers[tiles][i] = in.readLong();
+                }
+            }
+            return new EndgameTablebase(maxTiles, layers);
+        }
+    }
+
+    /**
+     * Generates a tablebase file.
+     * Usage: EndgameTablebase &lt;maxTiles&gt; &lt;file&gt;
+     *
+     * @param args The number of tiles to cover and the output file
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: EndgameTablebase <maxTiles> <file>");
+            System.exit(1);
+        }
+        EndgameTablebase tablebase = generate(Integer.parseInt(args[0]));
+        tablebase.save(Paths.get(args[1]));
+        System.out.println("Tablebase written to " + args[1]);
+    }
+}
@@ -0,0 +1,216 @@
+package de.greenoid.game.isola;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.stream.IntStream;
+
+/**
+ * Fits the weights of the hand-written evaluation to the outcomes of self-play games (Texel's method).
+ *
+ * Every position is mapped to a win probability for Player 1 with a logistic function of its
+ * evaluation, {@code 1 / (1 + exp(-k * score))}, and the weights are chosen to minimize the mean squared
+ * error against the game results. The scale k is fitted first with the current weights and then kept,
+ * so the tuned evaluation stays on the scale of the search windows. The evaluation is linear in the
+ * weights, so the terms of every position are computed once; each iteration then evaluates all positions
+ * in parallel chunks and takes one Adam step on the full batch.
+ */
+public class EvaluationTuner {
+    private static final int TERMS = 3;
+    private static final double LEARNING_RATE = 0.01;
+    private static final double BETA1 = 0.9;
+    private static final double BETA2 = 0.999;
+    private static final double EPSILON = 1e-12;
+
+    private final double[][] terms;
+    private final double[] results;
+    private final int chunks = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Constructor to tune on the given positions. Positions with an isolated player are skipped,
+     * their evaluation does not depend on the weights.
+     *
+     * @param data The positions and the outcomes of their games
+     */
+    public EvaluationTuner(TrainingData data) {
+        int[] quiet = IntStream.range(0, data.size()).filter(i -> {
+            Position position = data.getPosition(i);
+            return ComputerPlayer.countMoves(position.getTileMask(), position.getPlayer1Square(),
+                                             position.getPlayer2Square()) > 0 &&
+                   ComputerPlayer.countMoves(position.getTileMask(), position.getPlayer2Square(),
+                                             position.getPlayer1Square()) > 0;
+        }).toArray();
+
+        terms = new double[quiet.length][];
+        results = new double[quiet.length];
+        IntStream.range(0, quiet.length).parallel().forEach(i -> {
+            Position position = data.getPosition(quiet[i]);
+            long tileMask = position.getTileMask();
+            int player1Square = position.getPlayer1Square();
+            int player2Square = position.getPlayer2Square();
+            terms[i] = new double[]{
+                    ComputerPlayer.countMoves(tileMask, player1Square, player2Square) -
+                    ComputerPlayer.countMoves(tileMask, player2Square, player1Square),
+                    ComputerPlayer.countTerritory(tileMask, player1Square, player2Square),
+                    ComputerPlayer.distanceToStart(player1Square, player2Square, position.getPlayerToMove())};
+            results[i] = data.getResult(quiet[i]);
+        });
+    }
+
+    /**
+     * Get the number of positions used for the tuning.
+     *
+     * @return The number of positions without an isolated player
+     */
+    public int size() {
+        return results.length;
+    }
+
+    /**
+     * Tune the weights.
+     *
+     * @param start The weights to start from, they also define the scale of the evaluation
+     * @param iterations The number of gradient steps
+     * @param log The stream to report the progress to
+     * @return The tuned weights
+     */
+    public EvaluationWeights tune(EvaluationWeights start, int iterations, PrintStream log) {
+        double[] weights = {start.getMobility(), start.getTerritory(), start.getDistance()};
+        double scale = fitScale(weights);
+        log.printf("Scale %.5f, error %.5f%n", scale, error(weights, scale));
+
+        // Adam works on the weights in units of the logit per standard deviation of the term
+        double[] deviations = deviations();
+        double[] parameters = new double[TERMS];
+        for (int t = 0; t < TERMS; t++) {
+            parameters[t] = weights[t] * scale * deviations[t];
+        }
+        double[] firstMoments = new double[TERMS];
+        double[] secondMoments = new double[TERMS];
+
+        for (int iteration = 1; iteration <= iterations; iteration++) {
+            double[] gradient = gradient(weights, scale);
+            for (int t = 0; t < TERMS; t++) {
+                // Chain rule to the parameter of the term
+                double g = gradient[t] / (scale * deviations[t]);
+                firstMoments[t] = BETA1 * firstMoments[t] + (1 - BETA1) * g;
+                secondMoments[t] = BETA2 * secondMoments[t] + (1 - BETA2) * g * g;
+                double m = firstMoments[t] / (1 - Math.pow(BETA1, iteration));
+                double v = secondMoments[t] / (1 - Math.pow(BETA2, iteration));
+                parameters[t] -= LEARNING_RATE * m / (Math.sqrt(v) + EPSILON);
+                weights[t] = parameters[t] / (scale * deviations[t]);
+            }
+            if (iteration % 100 == 0 || iteration == iterations) {
+                log.printf("Iteration %d: error %.5f, mobility %.4f, territory %.4f, distance %.4f%n",
+                           iteration, error(weights, scale), weights[0], weights[1], weights[2]);
+            }
+        }
+        return new EvaluationWeights(weights[0], weights[1], weights[2]);
+    }
+
+    /**
+     * Finds the scale of the logistic function with the smallest error by a golden section search.
+     */
+    private double fitScale(double[] weights) {
+        double low = 1e-4;
+        double high = 1.0;
+        double ratio = (Math.sqrt(5) - 1) / 2;
+        for (int i = 0; i < 60; i++) {
+            double a = high - ratio * (high - low);
+            double b = low + ratio * (high - low);
+            if (error(weights, a) < error(weights, b)) {
+                high = b;
+            } else {
+                low = a;
+            }
+        }
+        return (low + high) / 2;
+    }
+
+    private double[] deviations() {
+        double[] deviations = new double[TERMS];
+        for (int t = 0; t < TERMS; t++) {
+            double sum = 0.0;
+            double squares = 0.0;
+            for (double[] term : terms) {
+                sum += term[t];
+                squares += term[t] * term[t];
+            }
+            double mean = sum / terms.length;
+            deviations[t] = Math.max(1e-6, Math.sqrt(squares / terms.length - mean * mean));
+        }
+        return deviations;
+    }
+
+    /**
+     * Computes the mean squared error of the predicted win probabilities.
+     */
+    private double error(double[] weights, double scale) {
+        return IntStream.range(0, chunks).parallel().mapToDouble(chunk -> {
+            double sum = 0.0;
+            for (int i = chunkStart(chunk); i < chunkStart(chunk + 1); i++) {
+                double difference = sigmoid(scale * score(weights, terms[i])) - results[i];
+                sum += difference * difference;
+            }
+            return sum;
+        }).sum() / results.length;
+    }
+
+    /**
+     * Computes the gradient of the mean squared error with respect to the weights.
+     */
+    private double[] gradient(double[] weights, double scale) {
+        double[][] partial = new double[chunks][TERMS];
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            for (int i = chunkStart(chunk); i < chunkStart(chunk + 1); i++) {
+                double probability = sigmoid(scale * score(weights, terms[i]));
+                double factor = 2 * (probability - results[i]) * probability * (1 - probability) * scale;
+                for (int t = 0; t < TERMS; t++) {
+                    partial[chunk][t] += factor * terms[i][t];
+                }
+            }
+        });
+        double[] gradient = new double[TERMS];
+        for (double[] chunkGradient : partial) {
+            for (int t = 0; t < TERMS; t++) {
+                gradient[t] += chunkGradient[t] / results.length;
+            }
+        }
+        return gradient;
+    }
+
+    private int chunkStart(int chunk) {
+        return (int) ((long) results.length * chunk / chunks);
+    }
+
+    private static double score(double[] weights, double[] terms) {
+        double score = 0.0;
+        for (int t = 0; t < TERMS; t++) {
+            score += weights[t] * terms[t];
+        }
+        return score;
+    }
+
+    private static double sigmoid(double x) {
+        return 1.0 / (1.0 + Math.exp(-x));
+    }
+
+    /**
+     * Tunes the evaluation weights on self-play games written by {@code NeuralTrainer generate}.
+     * Usage: EvaluationTuner &lt;data file&gt; &lt;weights file&gt; [iterations]
+     *
+     * @param args The data file, the output file and the number of iterations
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: EvaluationTuner <data file> <weights file> [iterations]");
+            System.exit(1);
+        }
+        int iterations = (args.length > 2) ? Integer.parseInt(args[2]) : 1000;
+        EvaluationTuner tuner = new EvaluationTuner(TrainingData.load(Paths.get(args[0])));
+        System.out.println(tuner.size() + " positions loaded");
+        EvaluationWeights weights = tuner.tune(EvaluationWeights.DEFAULT, iterations, System.out);
+        weights.save(Paths.get(args[1]), "Tuned on " + tuner.size() + " positions from " + args[0]);
+        System.out.println("Weights written to " + args[1] + ": " + weights);
+    }
+}
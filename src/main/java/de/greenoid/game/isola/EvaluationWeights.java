@@ -0,0 +1,139 @@
+package de.greenoid.game.isola;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Weights of the terms of the hand-written evaluation of {@link ComputerPlayer}.
+ *
+ * The evaluation is the weighted sum of the mobility difference, the territory difference and the
+ * distance term. The weights are stored as a properties file with the keys {@code mobility},
+ * {@code territory} and {@code distance}; {@link EvaluationTuner} fits them to self-play games.
+ */
+public final class EvaluationWeights {
+
+    /** The hand-picked weights. */
+    public static final EvaluationWeights DEFAULT = new EvaluationWeights(1.0, 10.0, 0.1);
+
+    private final double mobility;
+    private final double territory;
+    private final double distance;
+
+    /**
+     * Constructor to create a set of weights.
+     *
+     * @param mobility The weight of one (move, removal) combination
+     * @param territory The weight of one square reached before the opponent
+     * @param distance The weight of the distance to the nearest start square
+     */
+    public EvaluationWeights(double mobility, double territory, double distance) {
+        if (!Double.isFinite(mobility) || !Double.isFinite(territory) || !Double.isFinite(distance)) {
+            throw new IllegalArgumentException("Weights must be finite");
+        }
+        this.mobility = mobility;
+        this.territory = territory;
+        this.distance = distance;
+    }
+
+    /**
+     * Get the weights configured with the system property {@code isola.weights}.
+     *
+     * @return The loaded weights, or {@link #DEFAULT} if no file is configured or it cannot be loaded
+     */
+    public static EvaluationWeights getDefault() {
+        return DefaultHolder.WEIGHTS;
+    }
+
+    private static final class DefaultHolder {
+        static final EvaluationWeights WEIGHTS = loadDefault(System.getProperty("isola.weights"));
+
+        private static EvaluationWeights loadDefault(String fileName) {
+            if (fileName == null) {
+                return DEFAULT;
+            }
+            try {
+                return load(Paths.get(fileName));
+            } catch (IOException e) {
+                System.err.println("Could not load evaluation weights " + fileName + ": " + e.getMessage());
+                return DEFAULT;
+            }
+        }
+    }
+
+    /**
+     * Read weights from a properties file. Missing keys keep their default weight.
+     *
+     * @param file The file to read
+     * @return The loaded weights
+     * @throws IOException If the file cannot be read or contains an invalid weight
+     */
+    public static EvaluationWeights load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        try {
+            return new EvaluationWeights(
+                    Double.parseDouble(properties.getProperty("mobility", String.valueOf(DEFAULT.mobility))),
+                    Double.parseDouble(properties.getProperty("territory", String.valueOf(DEFAULT.territory))),
+                    Double.parseDouble(properties.getProperty("distance", String.valueOf(DEFAULT.distance))));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid weight in " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Write the weights to a properties file.
+     *
+     * @param file The file to write
+     * @param comment The comment written at the top of the file, or null
+     * @throws IOException If the file cannot be written
+     */
+    public void save(Path file, String comment) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("mobility", String.valueOf(mobility));
+        properties.setProperty("territory", String.valueOf(territory));
+        properties.setProperty("distance", String.valueOf(distance));
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            properties.store(writer, comment);
+        }
+    }
+
+    /**
+     * Get the weight of the mobility difference.
+     *
+     * @return The weight of one (move, removal) combination
+     */
+    public double getMobility() {
+        return mobility;
+    }
+
+    /**
+     * Get the weight of the territory difference.
+     *
+     * @return The weight of one square reached before the opponent
+     */
+    public double getTerritory() {
+        return territory;
+    }
+
+    /**
+     * Get the weight of the distance term.
+     *
+     * @return The weight of the distance to the nearest start square
+     */
+    public double getDistance() {
+        return distance;
+    }
+
+    @Override
+    public String toString() {
+        return "mobility=" + mobility + ", territory=" + territory + ", distance=" + distance;
+    }
+}
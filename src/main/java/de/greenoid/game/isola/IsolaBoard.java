@@ -10,8 +10,8 @@ public class IsolaBoard {
     public static final int PLAYER1 = 4;
     public static final int PLAYER2 = 5;
 
-    private final int BOARD_ROWS = 6;
-    private final int BOARD_COLS = 8;
+    public static final int BOARD_ROWS = 6;
+    public static final int BOARD_COLS = 8;
 
     int[][] board;
     int player1Row, player1Col;
@@ -286,6 +286,62 @@ public class IsolaBoard {
         return boardCopy;
     }
     
+    /**
+     * Get the removable tiles as a bit mask, bit {@code row * BOARD_COLS + col} per cell.
+     *
+     * @return The tile mask
+     */
+    public long getTileMask() {
+        long mask = 0L;
+        for (int r = 0; r < BOARD_ROWS; r++) {
+            for (int c = 0; c < BOARD_COLS; c++) {
+                if (board[r][c] == TILE) {
+                    mask |= 1L << (r * BOARD_COLS + c);
+                }
+            }
+        }
+        return mask;
+    }
+    
+    /**
+     * Get a 64-bit key that identifies the position, the packed form of {@link Position}.
+     *
+     * @param playerToMove The player to move (PLAYER1 or PLAYER2)
+     * @return The position key
+     */
+    public long getPositionKey(int playerToMove) {
+        return Position.fromBoard(this, playerToMove).pack();
+    }
+    
+    /**
+     * Get the square index ({@code row * BOARD_COLS + col}) of Player 1's starting position.
+     *
+     * @return The square index, or -1 if there is none
+     */
+    public int getPlayer1StartSquare() {
+        return findSquare(PLAYER1_START);
+    }
+    
+    /**
+     * Get the square index ({@code row * BOARD_COLS + col}) of Player 2's starting position.
+     *
+     * @return The square index, or -1 if there is none
+     */
+    public int getPlayer2StartSquare() {
+        return findSquare(PLAYER2_START);
+    }
+    
+    private int findSquare(int cellState) {
+        for (int r = 0; r < BOARD_ROWS; r++) {
+            for (int c = 0; c < BOARD_COLS; c++) {
+                if (board[r][c] == cellState) {
+                    return r * BOARD_COLS + c;
+                }
+            }
+        }
+        return -1;
+    }
+    
     /**
      * Get Player 1's row position
      *
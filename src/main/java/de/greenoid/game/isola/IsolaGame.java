@@ -1,34 +1,69 @@
 package de.greenoid.game.isola;
 
+import java.util.Arrays;
 import java.util.InputMismatchException;
 import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class IsolaGame {
 
     private IsolaBoard board;
     private int currentPlayer;
     private Scanner scanner;
-    private ComputerPlayer computerPlayer;
+    // Created on first use and kept for the whole game, so its tables and tree carry over between moves
+    private SearchEngine computerPlayer;
     private final int COMPUTER_PLAYER_ID = IsolaBoard.PLAYER2;
+    // Seed of the computer player's deterministic mode, null for a random choice among equal moves
+    private Long seed;
+    // Name of the computer player's engine, see SearchEngine.create
+    private String engine = SearchEngine.MINIMAX;
     
     // Track the current game phase
     private GamePhase currentGamePhase;
     
     // Track game status
     private GameStatus gameStatus;
+    
+    // Changes on every modification, used to reuse unchanged state snapshots.
+    // Versions are unique across all games, so a new game never repeats an old version.
+    private static final AtomicLong VERSION_COUNTER = new AtomicLong();
+    private long version;
+    private IsolaGameState cachedGameState;
+
+    // Move history, one record per played turn. The turns before historyPly can be undone, the ones
+    // from historyPly to historyLength redone. Every SNAPSHOT_INTERVAL plies the packed position is
+    // kept, so a jump to any ply replays fewer than SNAPSHOT_INTERVAL turns.
+    private static final int SNAPSHOT_INTERVAL = 8;
+    // A turn packs the target square in bits 0-5, the removed square in bits 6-11, the square the
+    // piece left in bits 12-17 and the player in bit 18 (set for Player 2)
+    private static final int SQUARE_MASK = 0x3F;
+    private static final int PLAYER2_BIT = 1 << 18;
+    private int[] history = new int[64];
+    private long[] snapshots = new long[8];
+    private int historyLength;
+    private int historyPly;
+    // Square the player to move left in the current turn, -1 until the piece has moved
+    private int turnFromSquare = -1;
 
     public IsolaGame() {
         board = new IsolaBoard();
         currentPlayer = IsolaBoard.PLAYER1;
-        scanner = new Scanner(System.in);
-        computerPlayer = new ComputerPlayer(5);
         currentGamePhase = GamePhase.MOVE_PLAYER;  // Game starts with moving player
         gameStatus = GameStatus.ONGOING;  // Game starts ongoing
+        snapshots[0] = Position.fromBoard(board, currentPlayer).pack();
+        changed();
     }
 
     public void startGame() {
+        // Console resources are only needed for the interactive game loop
+        scanner = new Scanner(System.in);
+        SearchEngine computerPlayer = getComputerPlayer();
+
         System.out.println("Willkommen zu Isola!");
         System.out.println("Du spielst als Spieler 1 (P1). Der Computer spielt als Spieler 2 (P2).");
+        if (seed != null) {
+            System.out.println("Seed: " + seed);
+        }
         board.printBoard();
 
         while (true) {
@@ -48,10 +83,11 @@ public class IsolaGame {
 
                 // Computer moves player and removes tile
                 currentGamePhase = GamePhase.MOVE_PLAYER;
-                board.movePlayer(currentPlayer, currentMove.moveToRow, currentMove.moveToCol);
+                movePlayer(currentPlayer, currentMove.moveToRow, currentMove.moveToCol);
                 currentGamePhase = GamePhase.REMOVE_TILE;
-                board.removeTile(currentMove.removeTileRow, currentMove.removeTileCol);
+                removeTile(currentMove.removeTileRow, currentMove.removeTileCol);
                 currentGamePhase = GamePhase.MOVE_PLAYER;  // Reset for next player
+                changed();
 
                 System.out.println("Computer zieht: " + currentMove);
                 board.printBoard();
@@ -67,7 +103,7 @@ public class IsolaGame {
                     System.out.print("Gib die neue Spalte ein: ");
                     int newCol = getUserInput();
 
-                    moveSuccessful = board.movePlayer(currentPlayer, newRow, newCol);
+                    moveSuccessful = movePlayer(currentPlayer, newRow, newCol);
                     if (!moveSuccessful) {
                         System.out.println("Ungültiger Zug, bitte erneut versuchen.");
                     }
@@ -84,7 +120,7 @@ public class IsolaGame {
                     System.out.print("Gib die Spalte des zu entfernenden Steins ein: ");
                     int removeCol = getUserInput();
 
-                    removeSuccessful = board.removeTile(removeRow, removeCol);
+                    removeSuccessful = removeTile(removeRow, removeCol);
                     if (!removeSuccessful) {
                         System.out.println("Ungültige Auswahl, bitte erneut versuchen.");
                     }
@@ -101,18 +137,55 @@ public class IsolaGame {
                 System.out.println("Spieler " + (currentPlayer == IsolaBoard.PLAYER1 ? "1 (Mensch)" : "2 (Computer)") + " GEWINNT!");
                 // Set game status based on who won
                 gameStatus = (currentPlayer == IsolaBoard.PLAYER1) ? GameStatus.PLAYER1_WON : GameStatus.PLAYER2_WON;
+                changed();
                 break;
             }
 
             switchPlayer();
         }
+        if (seed != null) {
+            // Together with the moves above, the seed reproduces the computer's play
+            System.out.println("Seed: " + seed);
+        }
         scanner.close();
         // After the game loop ends, shut down the computer player
-        computerPlayer.shutdown();
+        shutdown();
+    }
+
+    /**
+     * Get the computer player of this game. It is created on the first call with the configured
+     * engine and seed and reused for every move of the game, so the search keeps its tables and
+     * the expected continuation between moves.
+     *
+     * @return The computer player
+     */
+    public SearchEngine getComputerPlayer() {
+        if (computerPlayer == null) {
+            computerPlayer = SearchEngine.create(engine, 5);
+            if (seed != null) {
+                computerPlayer.setSeed(seed);
+            }
+        }
+        return computerPlayer;
+    }
+
+    /**
+     * Release the threads of the computer player. A later move creates a new one.
+     */
+    public void shutdown() {
+        if (computerPlayer != null) {
+            computerPlayer.shutdown();
+            computerPlayer = null;
+        }
+    }
+
+    private void changed() {
+        version = VERSION_COUNTER.incrementAndGet();
     }
 
     private void switchPlayer() {
         currentPlayer = (currentPlayer == IsolaBoard.PLAYER1) ? IsolaBoard.PLAYER2 : IsolaBoard.PLAYER1;
+        changed();
     }
 
     private int getUserInput() {
@@ -128,22 +201,67 @@ public class IsolaGame {
     }
 
     /**
-     * Returns the current state of the game for UI consumption
+     * Set the seed of the computer player's deterministic mode, so the game can be replayed exactly.
+     * The seed is printed with the game and must be set before {@link #startGame()}.
+     * A computer player created before is replaced.
+     *
+     * @param seed The seed, or null for a random choice among equal moves
+     */
+    public void setSeed(Long seed) {
+        this.seed = seed;
+        shutdown();
+    }
+
+    /**
+     * Get the seed of the computer player's deterministic mode.
+     *
+     * @return The seed, or null if the computer player chooses randomly
+     */
+    public Long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Set the engine of the computer player. A computer player created before is replaced.
+     *
+     * @param engine The name of the engine, {@link SearchEngine#MINIMAX} or {@link SearchEngine#MCTS}
+     */
+    public void setEngine(String engine) {
+        this.engine = engine;
+        shutdown();
+    }
+
+    /**
+     * Get the engine of the computer player.
+     *
+     * @return The name of the engine
+     */
+    public String getEngine() {
+        return engine;
+    }
+
+    /**
+     * Returns the current state of the game for UI consumption.
+     * The returned snapshot is immutable; the same instance is returned until the game changes.
      * @return IsolaGameState object representing the current game state
      */
     public IsolaGameState getGameState() {
-        // Create a BoardState object from the current board
-        BoardState currentBoardState = new BoardState(
-            6,  // rows
-            8,  // cols
-            board.getBoard(),
-            board.getPlayer1Row(),
-            board.getPlayer1Col(),
-            board.getPlayer2Row(),
-            board.getPlayer2Col()
-        );
-        
-        return new IsolaGameState(currentPlayer, currentGamePhase, currentBoardState, gameStatus);
+        IsolaGameState state = cachedGameState;
+        if (state == null || state.getVersion() != version) {
+            BoardState currentBoardState = new BoardState(board, version);
+            state = new IsolaGameState(currentPlayer, currentGamePhase, currentBoardState, gameStatus, version);
+            cachedGameState = state;
+        }
+        return state;
+    }
+    
+    /**
+     * Get the version of the game state, which changes on every modification.
+     *
+     * @return The current version
+     */
+    public long getVersion() {
+        return version;
     }
     
     /**
@@ -155,10 +273,15 @@ public class IsolaGame {
      * @return true if the move was successful, false otherwise
      */
     public boolean movePlayer(int player, int newRow, int newCol) {
+        int fromSquare = getSquare(player);
         boolean result = board.movePlayer(player, newRow, newCol);
+        if (result && player == currentPlayer && turnFromSquare == -1) {
+            turnFromSquare = fromSquare;
+        }
         
         // Check if the move resulted in a win
         if (result) {
+            changed();
             int otherPlayer = (player == IsolaBoard.PLAYER1) ?
                              IsolaBoard.PLAYER2 :
                              IsolaBoard.PLAYER1;
@@ -174,7 +297,8 @@ public class IsolaGame {
     }
     
     /**
-     * Remove a tile from the board.
+     * Remove a tile from the board. This completes the turn of the current player, which is added
+     * to the move history; turns undone before can no longer be redone.
      *
      * @param row The row of the tile to remove
      * @param col The column of the tile to remove
@@ -185,6 +309,8 @@ public class IsolaGame {
         
         // Check if the tile removal resulted in a win
         if (result) {
+            recordTurn(row * IsolaBoard.BOARD_COLS + col);
+            changed();
             int otherPlayer = (currentPlayer == IsolaBoard.PLAYER1) ?
                              IsolaBoard.PLAYER2 :
                              IsolaBoard.PLAYER1;
@@ -199,6 +325,211 @@ public class IsolaGame {
         return result;
     }
     
+    /**
+     * Take back the last turn, both the move of the piece and the removed tile. A turn whose piece
+     * has moved but whose tile is not removed yet is taken back first.
+     *
+     * @return true if a turn was taken back, false at the start of the game
+     */
+    public boolean undo() {
+        if (turnFromSquare != -1) {
+            cancelTurn();
+            restored();
+            return true;
+        }
+        if (historyPly == 0) {
+            return false;
+        }
+        unplay(history[--historyPly]);
+        restored();
+        return true;
+    }
+
+    /**
+     * Play the next turn taken back by {@link #undo()} again.
+     *
+     * @return true if a turn was played again, false if there is none
+     */
+    public boolean redo() {
+        if (historyPly == historyLength) {
+            return false;
+        }
+        cancelTurn();
+        replay(history[historyPly++]);
+        restored();
+        return true;
+    }
+
+    /**
+     * Restore the position after the given number of turns of the move history. The nearest
+     * snapshot is restored and the turns up to the ply are replayed, so the cost does not grow
+     * with the length of the game.
+     *
+     * @param ply The number of turns, between 0 and {@link #getHistoryLength()}
+     * @return true if the position was restored, false if the ply is outside the history
+     */
+    public boolean jumpToPly(int ply) {
+        if (ply < 0 || ply > historyLength) {
+            return false;
+        }
+        cancelTurn();
+        int snapshotPly = ply - ply % SNAPSHOT_INTERVAL;
+        if (ply - snapshotPly < Math.abs(ply - historyPly)) {
+            Position.unpack(snapshots[ply / SNAPSHOT_INTERVAL]).copyTo(board);
+            historyPly = snapshotPly;
+        }
+        while (historyPly < ply) {
+            replay(history[historyPly++]);
+        }
+        while (historyPly > ply) {
+            unplay(history[--historyPly]);
+        }
+        restored();
+        return true;
+    }
+
+    /**
+     * Get the number of turns played up to the current position.
+     *
+     * @return The current ply of the move history
+     */
+    public int getPly() {
+        return historyPly;
+    }
+
+    /**
+     * Get the number of turns in the move history, including the turns taken back.
+     *
+     * @return The length of the move history
+     */
+    public int getHistoryLength() {
+        return historyLength;
+    }
+
+    /**
+     * Check whether a turn can be taken back.
+     *
+     * @return true if {@link #undo()} would change the position
+     */
+    public boolean canUndo() {
+        return historyPly > 0 || turnFromSquare != -1;
+    }
+
+    /**
+     * Check whether a turn taken back can be played again.
+     *
+     * @return true if {@link #redo()} would change the position
+     */
+    public boolean canRedo() {
+        return historyPly < historyLength;
+    }
+
+    /**
+     * Get a turn of the move history.
+     *
+     * @param ply The index of the turn, between 0 and {@link #getHistoryLength()} - 1
+     * @return The move of the turn
+     */
+    public IsolaMove getHistoryMove(int ply) {
+        if (ply < 0 || ply >= historyLength) {
+            throw new IndexOutOfBoundsException("No turn " + ply + " in a history of " + historyLength);
+        }
+        int turn = history[ply];
+        int from = (turn >>> 12) & SQUARE_MASK;
+        int to = turn & SQUARE_MASK;
+        int removed = (turn >>> 6) & SQUARE_MASK;
+        return new IsolaMove(from / IsolaBoard.BOARD_COLS, from % IsolaBoard.BOARD_COLS,
+                             to / IsolaBoard.BOARD_COLS, to % IsolaBoard.BOARD_COLS,
+                             removed / IsolaBoard.BOARD_COLS, removed % IsolaBoard.BOARD_COLS);
+    }
+
+    private static int encodeTurn(int player, int fromSquare, int toSquare, int removedSquare) {
+        return (player == IsolaBoard.PLAYER2 ? PLAYER2_BIT : 0) | (fromSquare << 12) | (removedSquare << 6) | toSquare;
+    }
+
+    private static int turnPlayer(int turn) {
+        return (turn & PLAYER2_BIT) != 0 ? IsolaBoard.PLAYER2 : IsolaBoard.PLAYER1;
+    }
+
+    private void recordTurn(int removedSquare) {
+        int toSquare = getSquare(currentPlayer);
+        int fromSquare = (turnFromSquare != -1) ? turnFromSquare : toSquare;
+        turnFromSquare = -1;
+        if (historyLength == history.length) {
+            history = Arrays.copyOf(history, 2 * history.length);
+        }
+        // A new turn replaces the turns taken back
+        history[historyPly++] = encodeTurn(currentPlayer, fromSquare, toSquare, removedSquare);
+        historyLength = historyPly;
+        if (historyPly % SNAPSHOT_INTERVAL == 0) {
+            int index = historyPly / SNAPSHOT_INTERVAL;
+            if (index == snapshots.length) {
+                snapshots = Arrays.copyOf(snapshots, 2 * snapshots.length);
+            }
+            int opponent = (currentPlayer == IsolaBoard.PLAYER1) ? IsolaBoard.PLAYER2 : IsolaBoard.PLAYER1;
+            snapshots[index] = Position.fromBoard(board, opponent).pack();
+        }
+    }
+
+    private void replay(int turn) {
+        int removed = (turn >>> 6) & SQUARE_MASK;
+        board.board[removed / IsolaBoard.BOARD_COLS][removed % IsolaBoard.BOARD_COLS] = IsolaBoard.EMPTY;
+        setSquare(turnPlayer(turn), turn & SQUARE_MASK);
+    }
+
+    private void unplay(int turn) {
+        int removed = (turn >>> 6) & SQUARE_MASK;
+        board.board[removed / IsolaBoard.BOARD_COLS][removed % IsolaBoard.BOARD_COLS] = IsolaBoard.TILE;
+        setSquare(turnPlayer(turn), (turn >>> 12) & SQUARE_MASK);
+    }
+
+    /**
+     * Move the piece of the current turn back, if it has moved but no tile is removed yet.
+     */
+    private void cancelTurn() {
+        if (turnFromSquare != -1) {
+            setSquare(currentPlayer, turnFromSquare);
+            turnFromSquare = -1;
+        }
+    }
+
+    /**
+     * Derive the player to move, the phase and the status from the restored position. As in the game
+     * itself, a turn that isolates the opponent ends the game without passing the turn on.
+     */
+    private void restored() {
+        currentPlayer = IsolaBoard.PLAYER1;
+        gameStatus = GameStatus.ONGOING;
+        if (historyPly > 0) {
+            int mover = turnPlayer(history[historyPly - 1]);
+            int opponent = (mover == IsolaBoard.PLAYER1) ? IsolaBoard.PLAYER2 : IsolaBoard.PLAYER1;
+            if (board.isPlayerIsolated(opponent)) {
+                currentPlayer = mover;
+                gameStatus = (mover == IsolaBoard.PLAYER1) ? GameStatus.PLAYER1_WON : GameStatus.PLAYER2_WON;
+            } else {
+                currentPlayer = opponent;
+            }
+        }
+        currentGamePhase = GamePhase.MOVE_PLAYER;
+        changed();
+    }
+
+    private int getSquare(int player) {
+        return (player == IsolaBoard.PLAYER1)
+                ? board.player1Row * IsolaBoard.BOARD_COLS + board.player1Col
+                : board.player2Row * IsolaBoard.BOARD_COLS + board.player2Col;
+    }
+
+    private void setSquare(int player, int square) {
+        if (player == IsolaBoard.PLAYER1) {
+            board.player1Row = square / IsolaBoard.BOARD_COLS;
+            board.player1Col = square % IsolaBoard.BOARD_COLS;
+        } else {
+            board.player2Row = square / IsolaBoard.BOARD_COLS;
+            board.player2Col = square % IsolaBoard.BOARD_COLS;
+        }
+    }
+    
     /**
      * Check if a player is isolated (cannot make any valid move).
      *
@@ -231,11 +562,45 @@ public class IsolaGame {
      * @param phase The game phase to set (MOVE_PLAYER or REMOVE_TILE)
      */
     public void setCurrentGamePhase(GamePhase phase) {
-        this.currentGamePhase = phase;
+        if (this.currentGamePhase != phase) {
+            this.currentGamePhase = phase;
+            changed();
+        }
+    }
+    
+    /**
+     * Get the current player.
+     *
+     * @return The player whose turn it is (IsolaBoard.PLAYER1 or IsolaBoard.PLAYER2)
+     */
+    public int getCurrentPlayer() {
+        return currentPlayer;
+    }
+    
+    /**
+     * Get the current game status.
+     *
+     * @return The current game status
+     */
+    public GameStatus getGameStatus() {
+        return gameStatus;
+    }
+    
+    /**
+     * Set the current game status, e.g. when a player cannot move at the start of their turn.
+     *
+     * @param status The game status to set
+     */
+    public void setGameStatus(GameStatus status) {
+        if (this.gameStatus != status) {
+            this.gameStatus = status;
+            changed();
+        }
     }
     
     /**
      * Get the current game board.
+     * Changes made directly to the returned board are not reflected in {@link #getVersion()}.
      *
      * @return The current game board
      */
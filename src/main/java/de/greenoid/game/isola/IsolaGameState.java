@@ -4,19 +4,23 @@ package de.greenoid.game.isola;
  * Class representing the current state of an Isola game for UI consumption.
  * This class encapsulates all necessary information for a UI to display
  * the current game state and determine what actions are available.
+ * Instances are immutable and may be shared between threads.
  */
-public class IsolaGameState {
+public final class IsolaGameState {
     // Current player who needs to make a move
-    private int currentPlayer;
+    private final int currentPlayer;
     
     // Game phase: MOVE_PLAYER or REMOVE_TILE
-    private GamePhase gamePhase;
+    private final GamePhase gamePhase;
     
     // Current board state
-    private BoardState boardState;
+    private final BoardState boardState;
     
     // Game status: ONGOING, PLAYER1_WON, PLAYER2_WON
-    private GameStatus gameStatus;
+    private final GameStatus gameStatus;
+    
+    // Changed by the game on every modification
+    private final long version;
     
     /**
      * Constructor to create an IsolaGameState object.
@@ -27,10 +31,24 @@ public class IsolaGameState {
      * @param gameStatus The current status of the game (ONGOING, PLAYER1_WON, PLAYER2_WON)
      */
     public IsolaGameState(int currentPlayer, GamePhase gamePhase, BoardState boardState, GameStatus gameStatus) {
+        this(currentPlayer, gamePhase, boardState, gameStatus, boardState.getVersion());
+    }
+    
+    /**
+     * Constructor to create a versioned IsolaGameState object.
+     * 
+     * @param currentPlayer The player who needs to make a move
+     * @param gamePhase The current phase of the game (MOVE_PLAYER or REMOVE_TILE)
+     * @param boardState The current board state
+     * @param gameStatus The current status of the game (ONGOING, PLAYER1_WON, PLAYER2_WON)
+     * @param version The version of the game state
+     */
+    public IsolaGameState(int currentPlayer, GamePhase gamePhase, BoardState boardState, GameStatus gameStatus, long version) {
         this.currentPlayer = currentPlayer;
         this.gamePhase = gamePhase;
         this.boardState = boardState;
         this.gameStatus = gameStatus;
+        this.version = version;
     }
     
     /**
@@ -68,4 +86,28 @@ public class IsolaGameState {
     public GameStatus getGameStatus() {
         return gameStatus;
     }
-}
\ No newline at end of file
+    
+    /**
+     * Get the version of this game state. The version changes whenever the game
+     * changes, so consumers can skip states they have already processed.
+     * 
+     * @return The version number
+     */
+    public long getVersion() {
+        return version;
+    }
+    
+    /**
+     * Get the compact position: tiles, player squares and the player to move.
+     * 
+     * @return The position
+     * @throws IllegalArgumentException If the board state is not a regular 6x8 Isola board
+     */
+    public Position getPosition() {
+        int cols = boardState.getCols();
+        return Position.of(boardState.getTileMask(),
+                           boardState.getPlayer1Row() * cols + boardState.getPlayer1Col(),
+                           boardState.getPlayer2Row() * cols + boardState.getPlayer2Col(),
+                           currentPlayer);
+    }
+}
@@ -2,6 +2,12 @@ package de.greenoid.game.isola;
 
 import de.greenoid.game.isola.gui.swing.SwingGui;
 import de.greenoid.game.isola.gui.common.GuiController;
+import de.greenoid.game.isola.server.IsolaServer;
+import de.greenoid.game.isola.server.SessionManager;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
 
 /**
  * Main class to start the Isola game.
@@ -9,35 +15,247 @@ import de.greenoid.game.isola.gui.common.GuiController;
  * making it runnable from a JAR file.
  */
 public class Main {
-    
+    private static final String GAME_USAGE = "Usage: [-gui | -console] [-engine minimax|mcts] [-seed n]";
+    private static final String ANALYSIS_USAGE =
+            "Usage: -analyze <file> [-depth n] [-time ms] [-threads n] [-format csv|jsonl] [-seed n] [-multipv n] [-hash mb]";
+    private static final String SELF_PLAY_USAGE = "Usage: -selfplay [-games n] [-time ms]";
+
     /**
      * The main method that creates an instance of IsolaGame
      * and starts the game.
-     * @param args Command line arguments (not used).
+     * @param args Command line arguments: -gui (default) or -console with [-engine minimax|mcts] [-seed n],
+     *             -server [port], -analyze &lt;file&gt; [-depth n] [-time ms] [-threads n] [-format csv|jsonl] [-seed n] [-multipv n] [-hash mb]
+     *             -selfplay [-games n] [-time ms], -worker [port] [threads]
+     *             or -distribute "&lt;position&gt;" &lt;depth&gt; (-spawn &lt;count&gt; [threads] | -workers &lt;port,port,...&gt;).
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         // Check if GUI mode is requested (GUI is now default)
         boolean guiMode = true;
-        for (String arg : args) {
-            if ("-gui".equals(arg)) {
+        Long seed = null;
+        String engine = SearchEngine.MINIMAX;
+        for (int i = 0; i < args.length; i++) {
+            if ("-gui".equals(args[i])) {
                 guiMode = true;
-                break;
-            } else if ("-console".equals(arg)) {
+            } else if ("-console".equals(args[i])) {
                 guiMode = false;
-                break;
+            } else if ("-seed".equals(args[i])) {
+                seed = parseSeed(args, ++i);
+            } else if ("-engine".equals(args[i]) && i + 1 < args.length) {
+                engine = args[++i];
+            } else if ("-server".equals(args[i])) {
+                startServer(parsePort(args, i + 1));
+                return;
+            } else if ("-analyze".equals(args[i])) {
+                startAnalysis(args, i + 1);
+                return;
+            } else if ("-selfplay".equals(args[i])) {
+                startSelfPlay(args, i + 1);
+                return;
+            } else if ("-worker".equals(args[i])) {
+                SearchWorker.main(Arrays.copyOfRange(args, i + 1, args.length));
+                return;
+            } else if ("-distribute".equals(args[i])) {
+                DistributedSearch.main(Arrays.copyOfRange(args, i + 1, args.length));
+                return;
             }
         }
         
         if (guiMode) {
             // Initialize and start the Swing GUI
             IsolaGame game = new IsolaGame();
+            game.setEngine(engine);
+            if (seed != null) {
+                game.setSeed(seed);
+            }
             GuiController controller = new GuiController(game);
             SwingGui swingGui = new SwingGui(controller);
             swingGui.showGameWindow();
         } else {
             // Run the console version
             IsolaGame game = new IsolaGame();
+            game.setEngine(engine);
+            if (seed != null) {
+                game.setSeed(seed);
+            }
             game.startGame();
         }
     }
+    
+    /**
+     * Analyze the positions of a file and write the results to stdout.
+     *
+     * @param args The command line arguments
+     * @param first The index of the file argument
+     * @throws IOException If the file cannot be read
+     */
+    private static void startAnalysis(String[] args, int first) throws IOException {
+        if (first >= args.length) {
+            exitWithUsage("Missing file", ANALYSIS_USAGE);
+        }
+        int depth = 5;
+        long timeLimitMillis = Long.MAX_VALUE;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean json = false;
+        Long seed = null;
+        int multiPv = 1;
+        int hashMegabytes = 0;
+        for (int i = first + 1; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                exitWithUsage("Missing value for " + args[i], ANALYSIS_USAGE);
+            }
+            switch (args[i]) {
+                case "-depth":
+                    depth = (int) parseOption(args, i, 1, Integer.MAX_VALUE, ANALYSIS_USAGE);
+                    break;
+                case "-time":
+                    timeLimitMillis = parseOption(args, i, 1, Long.MAX_VALUE, ANALYSIS_USAGE);
+                    break;
+                case "-threads":
+                    threads = (int) parseOption(args, i, 1, Integer.MAX_VALUE, ANALYSIS_USAGE);
+                    break;
+                case "-format":
+                    if (!"csv".equals(args[i + 1]) && !"jsonl".equals(args[i + 1])) {
+                        exitWithUsage("Unknown format: " + args[i + 1], ANALYSIS_USAGE);
+                    }
+                    json = "jsonl".equals(args[i + 1]);
+                    break;
+                case "-seed":
+                    seed = parseOption(args, i, Long.MIN_VALUE, Long.MAX_VALUE, ANALYSIS_USAGE);
+                    break;
+                case "-multipv":
+                    multiPv = (int) parseOption(args, i, 1, Integer.MAX_VALUE, ANALYSIS_USAGE);
+                    break;
+                case "-hash":
+                    hashMegabytes = (int) parseOption(args, i, 1, TranspositionTable.MAX_MEGABYTES, ANALYSIS_USAGE);
+                    break;
+                default:
+                    exitWithUsage("Unknown option: " + args[i], ANALYSIS_USAGE);
+            }
+        }
+        BatchAnalyzer analyzer = new BatchAnalyzer(depth, timeLimitMillis, threads, json, seed);
+        analyzer.setMultiPv(multiPv);
+        if (hashMegabytes > 0) {
+            analyzer.setHashSize(hashMegabytes);
+        }
+        analyzer.analyze(Paths.get(args[first]), System.out);
+    }
+    
+    /**
+     * Play the minimax engine against the MCTS engine and print the results.
+     *
+     * @param args The command line arguments
+     * @param first The index of the first option
+     */
+    private static void startSelfPlay(String[] args, int first) {
+        int games = 20;
+        long timePerMoveMillis = 1000;
+        for (int i = first; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                exitWithUsage("Missing value for " + args[i], SELF_PLAY_USAGE);
+            }
+            switch (args[i]) {
+                case "-games":
+                    games = (int) parseOption(args, i, 1, Integer.MAX_VALUE, SELF_PLAY_USAGE);
+                    break;
+                case "-time":
+                    timePerMoveMillis = parseOption(args, i, 1, Long.MAX_VALUE, SELF_PLAY_USAGE);
+                    break;
+                default:
+                    exitWithUsage("Unknown option: " + args[i], SELF_PLAY_USAGE);
+            }
+        }
+        new SelfPlay(games, timePerMoveMillis).run(System.out);
+    }
+
+    /**
+     * Parse the seed of the game. Prints the usage and exits if it is missing or not a number.
+     *
+     * @param args The command line arguments
+     * @param index The index of the seed argument
+     * @return The seed
+     */
+    private static long parseSeed(String[] args, int index) {
+        if (index >= args.length) {
+            exitWithUsage("Missing value for -seed", GAME_USAGE);
+        }
+        try {
+            return Long.parseLong(args[index]);
+        } catch (NumberFormatException e) {
+            exitWithUsage("Invalid seed: " + args[index], GAME_USAGE);
+            return 0;
+        }
+    }
+
+    /**
+     * Parse the numeric value following an option. Prints the usage and exits if it is not a number
+     * in the allowed range.
+     *
+     * @param args The command line arguments
+     * @param index The index of the option; its value follows it
+     * @param min The smallest allowed value
+     * @param max The largest allowed value
+     * @param usage The usage of the mode
+     * @return The value
+     */
+    private static long parseOption(String[] args, int index, long min, long max, String usage) {
+        try {
+            long value = Long.parseLong(args[index + 1]);
+            if (value >= min && value <= max) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        exitWithUsage("Invalid value for " + args[index] + ": " + args[index + 1], usage);
+        return min;
+    }
+
+    /**
+     * Print an error and the usage to stderr and exit.
+     *
+     * @param message The error
+     * @param usage The usage of the mode
+     */
+    private static void exitWithUsage(String message, String usage) {
+        System.err.println(message);
+        System.err.println(usage);
+        System.exit(1);
+    }
+
+    /**
+     * Parse the optional port of the server. Prints the usage and exits on an invalid port.
+     *
+     * @param args The command line arguments
+     * @param index The index of the port argument
+     * @return The port, or the default port if none is given
+     */
+    private static int parsePort(String[] args, int index) {
+        if (index >= args.length) {
+            return IsolaServer.DEFAULT_PORT;
+        }
+        try {
+            int port = Integer.parseInt(args[index]);
+            if (port >= 0 && port <= 65535) {
+                return port;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        exitWithUsage("Invalid port: " + args[index], "Usage: -server [port]");
+        return -1;
+    }
+
+    /**
+     * Start the multi-game server on a local port.
+     *
+     * @param port The port to listen on
+     * @throws IOException If the server cannot be started
+     */
+    private static void startServer(int port) throws IOException {
+        int processors = Runtime.getRuntime().availableProcessors();
+        SessionManager sessionManager = new SessionManager(Math.max(1, processors / 2), 4096);
+        IsolaServer server = new IsolaServer(port, sessionManager);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        server.start();
+    }
 }
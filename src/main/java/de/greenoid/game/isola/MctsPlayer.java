@@ -0,0 +1,587 @@
+package de.greenoid.game.isola;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monte Carlo tree search engine (UCT).
+ *
+ * Positions are kept as bitboards: the removable tiles as a 48-bit mask plus the squares of both
+ * players. Each iteration walks down the tree with the UCT formula, adds one node and finishes the
+ * game with a fast playout, in which the piece steps to the neighbour with the most open squares
+ * around it and removes a tile next to the opponent. Positions covered by the endgame tablebase end
+ * the playout with the exact result. New children are added by progressive widening, best
+ * candidates first (removals close to the opponent), since a position has up to ~370 moves.
+ *
+ * Several workers share one tree; a virtual loss on the path being searched spreads them over
+ * different lines. The subtree of the position after the opponent's reply is kept for the next
+ * search. The depth of the budget is ignored and its node limit counts playouts.
+ */
+public class MctsPlayer implements SearchEngine {
+
+    private static final int BOARD_COLS = IsolaBoard.BOARD_COLS;
+    private static final int SQUARES = IsolaBoard.BOARD_ROWS * BOARD_COLS;
+    private static final int PLAYER1_START_SQUARE = 5 * BOARD_COLS + 3;
+    private static final int PLAYER2_START_SQUARE = 0 * BOARD_COLS + 4;
+    private static final long START_MASK = (1L << PLAYER1_START_SQUARE) | (1L << PLAYER2_START_SQUARE);
+    private static final long[] NEIGHBOURS = new long[SQUARES];
+
+    // UCT exploration constant for results between 0 and 1
+    private static final double EXPLORATION = 0.7;
+    // Visits counted as lost while a worker is still searching below a node
+    private static final int VIRTUAL_LOSS = 1;
+    // A node gets a new child while it has fewer than WIDENING * sqrt(visits) children
+    private static final double WIDENING = 2.0;
+    // New nodes are no longer added beyond this size, the playouts continue from the leaves
+    private static final int MAX_TREE_NODES = 1_000_000;
+    // Time per move if the budget has neither a time nor a playout limit
+    private static final long DEFAULT_TIME_MILLIS = 2000;
+    private static final long PROGRESS_INTERVAL_MILLIS = 100;
+    private static final int TIME_CHECK_INTERVAL = 64;
+
+    static {
+        for (int square = 0; square < SQUARES; square++) {
+            int row = square / BOARD_COLS;
+            int col = square % BOARD_COLS;
+            long neighbours = 0L;
+            for (int dr = -1; dr <= 1; dr++) {
+                for (int dc = -1; dc <= 1; dc++) {
+                    if (dr == 0 && dc == 0) continue;
+                    int newRow = row + dr;
+                    int newCol = col + dc;
+                    if (newRow >= 0 && newRow < IsolaBoard.BOARD_ROWS && newCol >= 0 && newCol < BOARD_COLS) {
+                        neighbours |= 1L << (newRow * BOARD_COLS + newCol);
+                    }
+                }
+            }
+            NEIGHBOURS[square] = neighbours;
+        }
+    }
+
+    private final ExecutorService executorService;
+    private final boolean ownsExecutor;
+    private final int threads;
+    private EndgameTablebase tablebase;
+    private boolean verbose = true;
+    private boolean deterministic;
+    private long seed;
+    // Tree of the last search, searched for the next position
+    private Node reusableTree;
+
+    public MctsPlayer() {
+        this(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()),
+             Runtime.getRuntime().availableProcessors(), true);
+    }
+
+    /**
+     * Creates an MCTS player whose workers run on a shared executor.
+     * The executor is not shut down by {@link #shutdown()}.
+     *
+     * @param executorService The executor to run the workers on
+     * @param threads The number of threads of the executor
+     */
+    public MctsPlayer(ExecutorService executorService, int threads) {
+        this(executorService, threads, false);
+    }
+
+    private MctsPlayer(ExecutorService executorService, int threads, boolean ownsExecutor) {
+        this.executorService = executorService;
+        this.threads = threads;
+        this.ownsExecutor = ownsExecutor;
+        this.tablebase = EndgameTablebase.getDefault();
+    }
+
+    @Override
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    /**
+     * Seed the playouts. With one worker and a playout limit, a search is then reproducible.
+     *
+     * @param seed The seed of the playouts
+     */
+    @Override
+    public void setSeed(long seed) {
+        this.seed = seed;
+        this.deterministic = true;
+    }
+
+    /**
+     * Set the endgame tablebase that ends playouts with the exact result.
+     *
+     * @param tablebase The tablebase to use, or null to play every game to the end
+     */
+    public void setTablebase(EndgameTablebase tablebase) {
+        this.tablebase = tablebase;
+    }
+
+    @Override
+    public IsolaMove findBestMove(IsolaBoard board, int currentPlayer) {
+        return search(board, currentPlayer, SearchBudget.UNLIMITED).getMove();
+    }
+
+    @Override
+    public SearchResult search(IsolaBoard board, int currentPlayer, SearchBudget budget) {
+        return search(board, currentPlayer, budget, null);
+    }
+
+    /**
+     * Searches the best move within the given budget and reports the progress to a listener.
+     * Without a time or playout limit the search runs for two seconds.
+     *
+     * @param board The current game board
+     * @param currentPlayer The player to move
+     * @param budget The playout, time and parallelism limits of this search
+     * @param listener The listener to report the progress to, or null
+     * @return The search result; its move is null if the player cannot move
+     */
+    @Override
+    public SearchResult search(IsolaBoard board, int currentPlayer, SearchBudget budget, SearchListener listener) {
+        long startTime = System.nanoTime();
+        Position position = Position.fromBoard(board, currentPlayer);
+        log("Position: " + position);
+
+        Node root = takeTree(position);
+        if (root == null) {
+            int moverSquare = (currentPlayer == IsolaBoard.PLAYER1) ? position.getPlayer1Square() : position.getPlayer2Square();
+            int opponentSquare = (currentPlayer == IsolaBoard.PLAYER1) ? position.getPlayer2Square() : position.getPlayer1Square();
+            root = new Node(position.getTileMask(), moverSquare, opponentSquare, currentPlayer, -1, null);
+        } else {
+            log("Reusing " + root.visits + " playouts of the previous search");
+        }
+        if (root.untriedCount < 0) {
+            root.generateMoves();
+        }
+        if (root.isTerminal()) {
+            double lossValue = (currentPlayer == IsolaBoard.PLAYER1) ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+            return new SearchResult(null, lossValue, 0, 0, (System.nanoTime() - startTime) / 1_000_000, false);
+        }
+
+        long timeLimitMillis = budget.getTimeLimitMillis();
+        long maxPlayouts = budget.getMaxNodes();
+        if (timeLimitMillis == Long.MAX_VALUE && maxPlayouts == Long.MAX_VALUE) {
+            timeLimitMillis = DEFAULT_TIME_MILLIS;
+        }
+        long deadline = (timeLimitMillis == Long.MAX_VALUE) ? Long.MAX_VALUE
+                : startTime + TimeUnit.MILLISECONDS.toNanos(timeLimitMillis);
+
+        SearchState state = new SearchState(root, maxPlayouts, deadline);
+        int workers = Math.max(1, Math.min(budget.getParallelism(), threads));
+        CountDownLatch done = new CountDownLatch(workers);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < workers; w++) {
+            SplittableRandom random = deterministic
+                    ? new SplittableRandom(seed ^ position.pack() ^ (w * 0x9E3779B97F4A7C15L))
+                    : new SplittableRandom();
+            futures.add(executorService.submit(() -> {
+                try {
+                    state.run(random);
+                } finally {
+                    done.countDown();
+                }
+            }));
+        }
+
+        try {
+            while (!done.await(PROGRESS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (listener != null) {
+                    if (listener.isStopRequested()) {
+                        state.stopped = true;
+                    }
+                    listener.searchProgress(snapshot(root, state.playouts.get(), startTime));
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            System.err.println("An error occurred during move calculation: " + e.getMessage());
+            state.stopped = true;
+        }
+
+        SearchProgress result = snapshot(root, state.playouts.get(), startTime);
+        if (listener != null) {
+            listener.searchProgress(result);
+        }
+        keepTree(root);
+
+        List<IsolaMove> principalVariation = result.getPrincipalVariation();
+        IsolaMove bestMove = principalVariation.isEmpty() ? null : principalVariation.get(0);
+        long duration = (System.nanoTime() - startTime) / 1_000_000;
+        log("MCTS abgeschlossen in " + duration + " ms. " + result.getNodes() + " Playouts, Wert: " +
+            String.format("%+.1f", result.getValue()) + ", Baum: " + state.treeSize.get() + " neue Knoten");
+        log("Computer wählt Zug: " + bestMove);
+
+        return new SearchResult(bestMove, result.getValue(), result.getDepth(), result.getNodes(), duration,
+                false, principalVariation);
+    }
+
+    /**
+     * Describes the tree: the line of most visited children, their values and the root move values.
+     * The values are the expected results between -100 and 100 from Player 1's point of view.
+     */
+    private SearchProgress snapshot(Node root, long playouts, long startTime) {
+        List<ScoredMove> rootScores = new ArrayList<>();
+        List<IsolaMove> principalVariation = new ArrayList<>();
+        double value = 0.0;
+
+        synchronized (root) {
+            for (Node child : root.children) {
+                rootScores.add(new ScoredMove(child.toMove(root), child.getValue()));
+            }
+        }
+        Node node = root;
+        while (true) {
+            Node best = null;
+            synchronized (node) {
+                for (Node child : node.children) {
+                    if (best == null || child.visits > best.visits) {
+                        best = child;
+                    }
+                }
+            }
+            if (best == null) {
+                break;
+            }
+            if (node == root) {
+                value = best.getValue();
+            }
+            principalVariation.add(best.toMove(node));
+            node = best;
+        }
+        return new SearchProgress(principalVariation.size(), value, principalVariation, rootScores,
+                playouts, (System.nanoTime() - startTime) / 1_000_000);
+    }
+
+    private synchronized Node takeTree(Position position) {
+        Node tree = reusableTree;
+        reusableTree = null;
+        if (tree == null) {
+            return null;
+        }
+        // The position is usually two plies below the last root: our move and the opponent's reply
+        Node found = findPosition(tree, position, 2);
+        if (found != null) {
+            found.parent = null;
+        }
+        return found;
+    }
+
+    private synchronized void keepTree(Node root) {
+        reusableTree = root;
+    }
+
+    private static Node findPosition(Node node, Position position, int depth) {
+        if (node.matches(position)) {
+            return node;
+        }
+        if (depth > 0) {
+            for (Node child : node.children) {
+                Node found = findPosition(child, position, depth - 1);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Shared state of the workers of one search.
+     */
+    private final class SearchState {
+        final Node root;
+        final long maxPlayouts;
+        final long deadline;
+        final AtomicLong playouts = new AtomicLong();
+        final AtomicInteger treeSize = new AtomicInteger();
+        volatile boolean stopped;
+
+        SearchState(Node root, long maxPlayouts, long deadline) {
+            this.root = root;
+            this.maxPlayouts = maxPlayouts;
+            this.deadline = deadline;
+        }
+
+        void run(SplittableRandom random) {
+            while (!stopped) {
+                iterate(random);
+                long count = playouts.incrementAndGet();
+                if (count >= maxPlayouts) {
+                    stopped = true;
+                } else if (count % TIME_CHECK_INTERVAL == 0 && System.nanoTime() - deadline >= 0) {
+                    stopped = true;
+                }
+            }
+        }
+
+        /**
+         * One iteration: selection, expansion, playout and backpropagation.
+         */
+        private void iterate(SplittableRandom random) {
+            Node node = root;
+            while (true) {
+                Node child = null;
+                boolean expanded = false;
+                synchronized (node) {
+                    if (node.untriedCount < 0) {
+                        node.generateMoves();
+                    }
+                    if (node.canExpand() && treeSize.get() < MAX_TREE_NODES) {
+                        child = node.expand();
+                        expanded = true;
+                        treeSize.incrementAndGet();
+                    } else if (!node.children.isEmpty()) {
+                        child = node.select();
+                    }
+                    if (child != null) {
+                        child.visits += VIRTUAL_LOSS;
+                    }
+                }
+                if (child == null) {
+                    break;
+                }
+                node = child;
+                if (expanded) {
+                    break;
+                }
+            }
+
+            int winner;
+            if (node.isTerminal()) {
+                winner = opponent(node.player);
+            } else {
+                winner = playout(node.tileMask, node.moverSquare, node.opponentSquare, node.player, random);
+            }
+
+            for (Node n = node; n != null; n = n.parent) {
+                synchronized (n) {
+                    // The virtual loss becomes the real visit
+                    n.visits += (n == root) ? 1 : 1 - VIRTUAL_LOSS;
+                    if (winner != n.player) {
+                        n.wins += 1.0;
+                    }
+                }
+                if (n == root) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Plays the game to the end with a fast heuristic policy.
+     *
+     * @return The winning player
+     */
+    private int playout(long tileMask, int moverSquare, int opponentSquare, int player, SplittableRandom random) {
+        while (true) {
+            if (tablebase != null) {
+                int result = tablebase.probe(tileMask, moverSquare, opponentSquare);
+                if (result != EndgameTablebase.UNKNOWN) {
+                    return result > 0 ? player : opponent(player);
+                }
+            }
+
+            long open = tileMask | START_MASK;
+            long opponentBit = 1L << opponentSquare;
+            long removable = tileMask & ~opponentBit;
+            long targets = NEIGHBOURS[moverSquare] & open & ~opponentBit;
+            if (Long.bitCount(removable) <= 1) {
+                // The tile to remove must not be the target square
+                targets &= ~removable;
+                if (removable == 0) {
+                    targets = 0;
+                }
+            }
+            if (targets == 0) {
+                return opponent(player);
+            }
+
+            int target;
+            if (random.nextInt(8) == 0) {
+                target = randomSquare(targets, random);
+            } else {
+                // Step to the square with the most open neighbours, ties broken at random
+                target = -1;
+                int bestMobility = -1;
+                int ties = 0;
+                for (long t = targets; t != 0; t &= t - 1) {
+                    int square = Long.numberOfTrailingZeros(t);
+                    int mobility = Long.bitCount(NEIGHBOURS[square] & open & ~opponentBit);
+                    if (mobility > bestMobility) {
+                        bestMobility = mobility;
+                        target = square;
+                        ties = 1;
+                    } else if (mobility == bestMobility && random.nextInt(++ties) == 0) {
+                        target = square;
+                    }
+                }
+            }
+
+            removable &= ~(1L << target);
+            long nearOpponent = removable & NEIGHBOURS[opponentSquare];
+            int removal = (nearOpponent != 0 && random.nextInt(4) != 0)
+                    ? randomSquare(nearOpponent, random)
+                    : randomSquare(removable, random);
+            tileMask &= ~(1L << removal);
+
+            moverSquare = opponentSquare;
+            opponentSquare = target;
+            player = opponent(player);
+        }
+    }
+
+    private static int randomSquare(long mask, SplittableRandom random) {
+        for (int skip = random.nextInt(Long.bitCount(mask)); skip > 0; skip--) {
+            mask &= mask - 1;
+        }
+        return Long.numberOfTrailingZeros(mask);
+    }
+
+    private static int opponent(int player) {
+        return (player == IsolaBoard.PLAYER1) ? IsolaBoard.PLAYER2 : IsolaBoard.PLAYER1;
+    }
+
+    /**
+     * A position in the tree. All fields except the position are guarded by the node's monitor.
+     */
+    private static final class Node {
+        final long tileMask;
+        final int moverSquare;
+        final int opponentSquare;
+        // The player to move
+        final int player;
+        // Target square << 6 | removed square of the move leading here, -1 at the root
+        final int move;
+        Node parent;
+        // Moves without a child yet, best candidates last; -1 until generated
+        short[] untriedMoves;
+        int untriedCount = -1;
+        final List<Node> children = new ArrayList<>(4);
+        int visits;
+        // Won playouts of the player who made the move leading here
+        double wins;
+
+        Node(long tileMask, int moverSquare, int opponentSquare, int player, int move, Node parent) {
+            this.tileMask = tileMask;
+            this.moverSquare = moverSquare;
+            this.opponentSquare = opponentSquare;
+            this.player = player;
+            this.move = move;
+            this.parent = parent;
+        }
+
+        void generateMoves() {
+            long open = tileMask | START_MASK;
+            long opponentBit = 1L << opponentSquare;
+            long targets = NEIGHBOURS[moverSquare] & open & ~opponentBit;
+            int[] keyed = new int[Long.bitCount(targets) * SQUARES];
+            int count = 0;
+
+            for (; targets != 0; targets &= targets - 1) {
+                int target = Long.numberOfTrailingZeros(targets);
+                int mobility = Long.bitCount(NEIGHBOURS[target] & open & ~opponentBit);
+                for (long removable = tileMask & ~(1L << target) & ~opponentBit; removable != 0; removable &= removable - 1) {
+                    int removal = Long.numberOfTrailingZeros(removable);
+                    int distance = Math.max(Math.abs(removal / BOARD_COLS - opponentSquare / BOARD_COLS),
+                                            Math.abs(removal % BOARD_COLS - opponentSquare % BOARD_COLS));
+                    // Removals next to the opponent first, then steps to open squares
+                    int priority = distance * 16 + (8 - mobility);
+                    keyed[count++] = priority << 12 | target << 6 | removal;
+                }
+            }
+
+            Arrays.sort(keyed, 0, count);
+            untriedMoves = new short[count];
+            for (int i = 0; i < count; i++) {
+                untriedMoves[count - 1 - i] = (short) (keyed[i] & 0xFFF);
+            }
+            untriedCount = count;
+        }
+
+        boolean isTerminal() {
+            return untriedCount == 0 && children.isEmpty();
+        }
+
+        boolean canExpand() {
+            return untriedCount > 0 && children.size() < Math.max(1.0, WIDENING * Math.sqrt(visits));
+        }
+
+        Node expand() {
+            int next = untriedMoves[--untriedCount];
+            if (untriedCount == 0) {
+                untriedMoves = null;
+            }
+            int target = next >>> 6;
+            int removal = next & 0x3F;
+            Node child = new Node(tileMask & ~(1L << removal), opponentSquare, target, opponent(player), next, this);
+            children.add(child);
+            return child;
+        }
+
+        Node select() {
+            double logVisits = Math.log(Math.max(1, visits));
+            Node best = null;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (Node child : children) {
+                double score = child.wins / child.visits + EXPLORATION * Math.sqrt(logVisits / child.visits);
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * The expected result of the move leading here, between -100 and 100 from Player 1's point of view.
+         */
+        synchronized double getValue() {
+            double winRate = (visits == 0) ? 0.5 : wins / visits;
+            double value = (2 * winRate - 1) * 100;
+            // The wins belong to the player who moved here, the opponent of the player to move
+            return (player == IsolaBoard.PLAYER2) ? value : -value;
+        }
+
+        IsolaMove toMove(Node parent) {
+            int target = move >>> 6;
+            int removal = move & 0x3F;
+            return new IsolaMove(parent.moverSquare / BOARD_COLS, parent.moverSquare % BOARD_COLS,
+                                 target / BOARD_COLS, target % BOARD_COLS, removal / BOARD_COLS, removal % BOARD_COLS);
+        }
+
+        boolean matches(Position position) {
+            if (position.getPlayerToMove() != player || position.getTileMask() != tileMask) {
+                return false;
+            }
+            int player1Square = (player == IsolaBoard.PLAYER1) ? moverSquare : opponentSquare;
+            int player2Square = (player == IsolaBoard.PLAYER1) ? opponentSquare : moverSquare;
+            return position.getPlayer1Square() == player1Square && position.getPlayer2Square() == player2Square;
+        }
+    }
+
+    private void log(String message) {
+        if (verbose) {
+            System.out.println(message);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        if (ownsExecutor) {
+            executorService.shutdown();
+        }
+    }
+}
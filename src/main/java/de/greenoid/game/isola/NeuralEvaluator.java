@@ -0,0 +1,254 @@
+package de.greenoid.game.isola;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Small neural network that evaluates a position, as an alternative to the hand-written evaluation.
+ *
+ * The input are 145 binary features: one per remaining tile, one per square of each player and one
+ * for Player 2 to move. The first layer is an accumulator in the style of NNUE evaluators: its sum over
+ * the active features is updated move by move, a move only moves one piece feature, removes one tile
+ * feature and flips the side to move. Two small dense layers follow, with the accumulator clipped to
+ * [0, 1] and a ReLU in between. The output is the probability of a Player 1 win, scaled to the range
+ * -100 .. 100 of the search.
+ *
+ * All parameters are kept in one array: the first layer row by row per feature, its biases, the second
+ * layer row by row per accumulator unit, its biases, the output weights and the output bias. Both weight
+ * matrices are stored by input, so every layer is a sum of scaled rows. The layers run on the Vector API
+ * if the JVM was started with {@code --add-modules jdk.incubator.vector}.
+ */
+public final class NeuralEvaluator {
+
+    /** Number of input features. */
+    public static final int FEATURES = 145;
+
+    /** Width of the accumulator. */
+    public static final int ACCUMULATOR_SIZE = 32;
+
+    /** Width of the second hidden layer. */
+    public static final int HIDDEN_SIZE = 16;
+
+    /** Largest absolute value returned by {@link #evaluate(float[])}. */
+    public static final double MAX_VALUE = 100.0;
+
+    // Feature offsets of the tiles, the two pieces and the side to move
+    static final int TILE_FEATURES = 0;
+    static final int PLAYER1_FEATURES = 48;
+    static final int PLAYER2_FEATURES = 96;
+    static final int SIDE_FEATURE = 144;
+
+    // Offsets of the layers in the parameter array
+    static final int ACCUMULATOR_BIAS = FEATURES * ACCUMULATOR_SIZE;
+    static final int HIDDEN_WEIGHTS = ACCUMULATOR_BIAS + ACCUMULATOR_SIZE;
+    static final int HIDDEN_BIAS = HIDDEN_WEIGHTS + ACCUMULATOR_SIZE * HIDDEN_SIZE;
+    static final int OUTPUT_WEIGHTS = HIDDEN_BIAS + HIDDEN_SIZE;
+    static final int OUTPUT_BIAS = OUTPUT_WEIGHTS + HIDDEN_SIZE;
+    static final int PARAMETERS = OUTPUT_BIAS + 1;
+
+    private static final int MAGIC = 0x49534E4E; // "ISNN"
+    private static final int FORMAT_VERSION = 1;
+
+    private static final NeuralKernels KERNELS = NeuralKernels.getBest();
+
+    final float[] parameters;
+
+    NeuralEvaluator(float[] parameters) {
+        if (parameters.length != PARAMETERS) {
+            throw new IllegalArgumentException("Expected " + PARAMETERS + " parameters, got " + parameters.length);
+        }
+        this.parameters = parameters;
+    }
+
+    /**
+     * Creates a network with small random weights as the starting point of the training.
+     *
+     * @param random The random generator
+     * @return The new network
+     */
+    static NeuralEvaluator createRandom(Random random) {
+        float[] parameters = new float[PARAMETERS];
+        // About 30 features are active at a time
+        initialize(parameters, 0, ACCUMULATOR_BIAS, random, Math.sqrt(1.0 / 30));
+        Arrays.fill(parameters, ACCUMULATOR_BIAS, HIDDEN_WEIGHTS, 0.5f);
+        initialize(parameters, HIDDEN_WEIGHTS, HIDDEN_BIAS, random, Math.sqrt(2.0 / ACCUMULATOR_SIZE));
+        initialize(parameters, OUTPUT_WEIGHTS, OUTPUT_BIAS, random, Math.sqrt(1.0 / HIDDEN_SIZE));
+        return new NeuralEvaluator(parameters);
+    }
+
+    private static void initialize(float[] parameters, int from, int to, Random random, double deviation) {
+        for (int i = from; i < to; i++) {
+            parameters[i] = (float) (random.nextGaussian() * deviation);
+        }
+    }
+
+    /**
+     * Get the network configured with the system property {@code isola.network}.
+     *
+     * @return The loaded network, or null if no network is configured or it cannot be loaded
+     */
+    public static NeuralEvaluator getDefault() {
+        return DefaultHolder.NETWORK;
+    }
+
+    private static final class DefaultHolder {
+        static final NeuralEvaluator NETWORK = loadDefault(System.getProperty("isola.network"));
+
+        private static NeuralEvaluator loadDefault(String fileName) {
+            if (fileName == null) {
+                return null;
+            }
+            try {
+                return load(Paths.get(fileName));
+            } catch (IOException e) {
+                System.err.println("Could not load network " + fileName + ": " + e.getMessage());
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Collects the active features of a position.
+     *
+     * @param tileMask The remaining tiles
+     * @param player1Square The square of Player 1
+     * @param player2Square The square of Player 2
+     * @param playerToMove The player to move
+     * @return The indices of the active features
+     */
+    static int[] features(long tileMask, int player1Square, int player2Square, int playerToMove) {
+        int count = Long.bitCount(tileMask) + 2 + (playerToMove == IsolaBoard.PLAYER2 ? 1 : 0);
+        int[] features = new int[count];
+        int i = 0;
+        for (long tiles = tileMask; tiles != 0; tiles &= tiles - 1) {
+            features[i++] = TILE_FEATURES + Long.numberOfTrailingZeros(tiles);
+        }
+        features[i++] = PLAYER1_FEATURES + player1Square;
+        features[i++] = PLAYER2_FEATURES + player2Square;
+        if (playerToMove == IsolaBoard.PLAYER2) {
+            features[i] = SIDE_FEATURE;
+        }
+        return features;
+    }
+
+    /**
+     * Computes the accumulator of a position from scratch.
+     *
+     * @param board The board
+     * @param playerToMove The player to move
+     * @return The new accumulator
+     */
+    public float[] createAccumulator(IsolaBoard board, int playerToMove) {
+        float[] accumulator = Arrays.copyOfRange(parameters, ACCUMULATOR_BIAS, ACCUMULATOR_BIAS + ACCUMULATOR_SIZE);
+        for (int feature : features(board.getTileMask(),
+                                    board.player1Row * IsolaBoard.BOARD_COLS + board.player1Col,
+                                    board.player2Row * IsolaBoard.BOARD_COLS + board.player2Col, playerToMove)) {
+            KERNELS.add(accumulator, parameters, feature * ACCUMULATOR_SIZE, ACCUMULATOR_SIZE);
+        }
+        return accumulator;
+    }
+
+    /**
+     * Updates an accumulator with a move: the piece changes its square, one tile is removed and
+     * the other player moves next.
+     *
+     * @param accumulator The accumulator of the position before the move, updated in place
+     * @param player The moving player
+     * @param fromSquare The square the piece leaves
+     * @param toSquare The square the piece moves to
+     * @param removedSquare The square of the removed tile
+     */
+    public void update(float[] accumulator, int player, int fromSquare, int toSquare, int removedSquare) {
+        int pieceFeatures = (player == IsolaBoard.PLAYER1) ? PLAYER1_FEATURES : PLAYER2_FEATURES;
+        KERNELS.subtract(accumulator, parameters, (pieceFeatures + fromSquare) * ACCUMULATOR_SIZE, ACCUMULATOR_SIZE);
+        KERNELS.add(accumulator, parameters, (pieceFeatures + toSquare) * ACCUMULATOR_SIZE, ACCUMULATOR_SIZE);
+        KERNELS.subtract(accumulator, parameters, (TILE_FEATURES + removedSquare) * ACCUMULATOR_SIZE, ACCUMULATOR_SIZE);
+        if (player == IsolaBoard.PLAYER1) {
+            KERNELS.add(accumulator, parameters, SIDE_FEATURE * ACCUMULATOR_SIZE, ACCUMULATOR_SIZE);
+        } else {
+            KERNELS.subtract(accumulator, parameters, SIDE_FEATURE * ACCUMULATOR_SIZE, ACCUMULATOR_SIZE);
+        }
+    }
+
+    /**
+     * Evaluates a position from its accumulator.
+     *
+     * @param accumulator The accumulator of the position
+     * @return The value from Player 1's point of view, between -{@link #MAX_VALUE} and {@link #MAX_VALUE}
+     */
+    public double evaluate(float[] accumulator) {
+        return MAX_VALUE * Math.tanh(0.5 * forward(accumulator.clone()));
+    }
+
+    /**
+     * Runs the dense layers on an accumulator.
+     *
+     * @param accumulator The accumulator, clipped in place
+     * @return The output logit, the log odds of a Player 1 win
+     */
+    float forward(float[] accumulator) {
+        KERNELS.clamp(accumulator, 0f, 1f, ACCUMULATOR_SIZE);
+        float[] hidden = Arrays.copyOfRange(parameters, HIDDEN_BIAS, HIDDEN_BIAS + HIDDEN_SIZE);
+        for (int k = 0; k < ACCUMULATOR_SIZE; k++) {
+            if (accumulator[k] > 0f) {
+                KERNELS.addScaled(hidden, accumulator[k], parameters, HIDDEN_WEIGHTS + k * HIDDEN_SIZE, HIDDEN_SIZE);
+            }
+        }
+        KERNELS.clamp(hidden, 0f, Float.POSITIVE_INFINITY, HIDDEN_SIZE);
+        return parameters[OUTPUT_BIAS] + KERNELS.dot(parameters, OUTPUT_WEIGHTS, hidden, 0, HIDDEN_SIZE);
+    }
+
+    /**
+     * Write the network to a file.
+     *
+     * @param file The file to write
+     * @throws IOException If the file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        try (OutputStream fileOut = Files.newOutputStream(file);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(FEATURES);
+            out.writeInt(ACCUMULATOR_SIZE);
+            out.writeInt(HIDDEN_SIZE);
+            for (float parameter : parameters) {
+                out.writeFloat(parameter);
+            }
+        }
+    }
+
+    /**
+     * Read a network previously written with {@link #save(Path)}.
+     *
+     * @param file The file to read
+     * @return The loaded network
+     * @throws IOException If the file cannot be read or has an unexpected format
+     */
+    public static NeuralEvaluator load(Path file) throws IOException {
+        try (InputStream fileIn = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(fileIn))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Not an Isola network file: " + file);
+            }
+            if (in.readInt() != FEATURES || in.readInt() != ACCUMULATOR_SIZE || in.readInt() != HIDDEN_SIZE) {
+                throw new IOException("Unsupported network layout in " + file);
+            }
+            float[] parameters = new float[PARAMETERS];
+            for (int i = 0; i < PARAMETERS; i++) {
+                parameters[i] = in.readFloat();
+            }
+            return new NeuralEvaluator(parameters);
+        }
+    }
+}
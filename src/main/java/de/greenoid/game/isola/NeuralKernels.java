@@ -0,0 +1,93 @@
+package de.greenoid.game.isola;
+
+/**
+ * The vector operations of the neural network inference.
+ *
+ * The SIMD implementation uses the incubating Vector API and is only available if the JVM
+ * was started with {@code --add-modules jdk.incubator.vector}; otherwise the plain loops are used.
+ */
+interface NeuralKernels {
+
+    /**
+     * Adds {@code length} values of {@code source}, starting at {@code offset}, to {@code target}.
+     */
+    void add(float[] target, float[] source, int offset, int length);
+
+    /**
+     * Subtracts {@code length} values of {@code source}, starting at {@code offset}, from {@code target}.
+     */
+    void subtract(float[] target, float[] source, int offset, int length);
+
+    /**
+     * Adds {@code factor} times {@code length} values of {@code source}, starting at {@code offset}, to {@code target}.
+     */
+    void addScaled(float[] target, float factor, float[] source, int offset, int length);
+
+    /**
+     * Computes the dot product of {@code length} values of both arrays.
+     */
+    float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    /**
+     * Clamps every value to the range [min, max].
+     */
+    void clamp(float[] target, float min, float max, int length);
+
+    /**
+     * Get the fastest implementation available in this JVM.
+     *
+     * @return The kernels
+     */
+    static NeuralKernels getBest() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return new SimdKernels();
+            } catch (LinkageError e) {
+                System.err.println("Vector API not usable, using scalar kernels: " + e);
+            }
+        }
+        return new Scalar();
+    }
+
+    /**
+     * Plain Java loops, used if the Vector API is not available.
+     */
+    final class Scalar implements NeuralKernels {
+        @Override
+        public void add(float[] target, float[] source, int offset, int length) {
+            for (int i = 0; i < length; i++) {
+                target[i] += source[offset + i];
+            }
+        }
+
+        @Override
+        public void subtract(float[] target, float[] source, int offset, int length) {
+            for (int i = 0; i < length; i++) {
+                target[i] -= source[offset + i];
+            }
+        }
+
+        @Override
+        public void addScaled(float[] target, float factor, float[] source, int offset, int length) {
+            for (int i = 0; i < length; i++) {
+                target[i] += factor * source[offset + i];
+            }
+        }
+
+        @Override
+        public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+            float sum = 0f;
+            for (int i = 0; i < length; i++) {
+                sum += a[aOffset + i] * b[bOffset + i];
+            }
+            return sum;
+        }
+
+        @Override
+        public void clamp(float[] target, float min, float max, int length) {
+            for (int i = 0; i < length; i++) {
+                target[i] = Math.min(max, Math.max(min, target[i]));
+            }
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package de.greenoid.game.isola;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Trains a {@link NeuralEvaluator} on self-play positions labelled with their game outcome.
+ *
+ * The network output is read as the log odds of a Player 1 win and trained with the cross-entropy
+ * loss. Every mini-batch is split into chunks whose gradients are computed in parallel and summed;
+ * the parameters are updated with Adam. A part of the positions is held back to report the
+ * validation loss after every epoch; the training positions are doubled by their rotations.
+ */
+public class NeuralTrainer {
+    private static final int BATCH_SIZE = 256;
+    private static final float LEARNING_RATE = 0.002f;
+    private static final float BETA1 = 0.9f;
+    private static final float BETA2 = 0.999f;
+    private static final float EPSILON = 1e-8f;
+    private static final double VALIDATION_SHARE = 0.1;
+
+    private final NeuralEvaluator network;
+    private final float[] parameters;
+    private final float[] firstMoments = new float[NeuralEvaluator.PARAMETERS];
+    private final float[] secondMoments = new float[NeuralEvaluator.PARAMETERS];
+    private final int chunks = Runtime.getRuntime().availableProcessors();
+    private int steps;
+
+    /**
+     * Constructor to continue the training of a network. The network is updated in place.
+     *
+     * @param network The network to train
+     */
+    public NeuralTrainer(NeuralEvaluator network) {
+        this.network = network;
+        this.parameters = network.parameters;
+    }
+
+    /**
+     * Train the network.
+     *
+     * @param data The labelled positions, a random tenth is held back for validation; the others are
+     *             trained together with their images under the 180 degree rotation
+     * @param epochs The number of passes over the training positions
+     * @param seed The seed of the shuffling
+     * @param log The stream to report the loss per epoch to
+     */
+    public void train(TrainingData data, int epochs, long seed, PrintStream log) {
+        // Position i is followed by its rotation at size + i. The rotation keeps the colours and the
+        // player to move, so the rotated position has the same outcome.
+        int size = data.size();
+        int[][] features = new int[2 * size][];
+        float[] results = new float[2 * size];
+        for (int i = 0; i < size; i++) {
+            Position position = data.getPosition(i);
+            features[i] = features(position);
+            features[size + i] = features(Symmetry.ROTATE_180.transform(position));
+            results[i] = data.getResult(i);
+            results[size + i] = results[i];
+        }
+
+        // Shuffle once before the split, the data comes game by game. Only the training positions get
+        // their rotations, so no position is validated against its own rotated twin.
+        Random random = new Random(seed);
+        int[] positions = IntStream.range(0, size).toArray();
+        shuffle(positions, positions.length, random);
+        int trainingPositions = (int) Math.round(size * (1.0 - VALIDATION_SHARE));
+        int[] validation = Arrays.copyOfRange(positions, trainingPositions, size);
+        int trainingSize = 2 * trainingPositions;
+        int[] order = new int[trainingSize];
+        for (int i = 0; i < trainingPositions; i++) {
+            order[2 * i] = positions[i];
+            order[2 * i + 1] = size + positions[i];
+        }
+
+        for (int epoch = 1; epoch <= epochs; epoch++) {
+            shuffle(order, trainingSize, random);
+            double trainingLoss = 0.0;
+            for (int start = 0; start < trainingSize; start += BATCH_SIZE) {
+                int end = Math.min(trainingSize, start + BATCH_SIZE);
+                trainingLoss += step(features, results, order, start, end);
+            }
+            log.printf("Epoch %d: training loss %.4f, validation loss %.4f%n", epoch,
+                       trainingLoss / trainingSize, loss(features, results, validation));
+        }
+    }
+
+    private static int[] features(Position position) {
+        return NeuralEvaluator.features(position.getTileMask(), position.getPlayer1Square(),
+                                        position.getPlayer2Square(), position.getPlayerToMove());
+    }
+
+    private static void shuffle(int[] order, int length, Random random) {
+        for (int i = length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+    }
+
+    /**
+     * Computes the mean loss on the given positions.
+     */
+    private double loss(int[][] features, float[] results, int[] indices) {
+        if (indices.length == 0) {
+            return Double.NaN;
+        }
+        return IntStream.of(indices).parallel().mapToDouble(i -> {
+            float[] accumulator = accumulator(features[i]);
+            return crossEntropy(network.forward(accumulator), results[i]);
+        }).sum() / indices.length;
+    }
+
+    /**
+     * Performs one Adam step on a mini-batch.
+     *
+     * @return The summed loss of the mini-batch before the step
+     */
+    private double step(int[][] features, float[] results, int[] order, int start, int end) {
+        int chunkSize = (end - start + chunks - 1) / chunks;
+        float[][] gradients = new float[chunks][];
+        double[] losses = new double[chunks];
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            float[] gradient = new float[NeuralEvaluator.PARAMETERS];
+            int from = start + chunk * chunkSize;
+            int to = Math.min(end, from + chunkSize);
+            for (int n = from; n < to; n++) {
+                losses[chunk] += backpropagate(features[order[n]], results[order[n]], gradient);
+            }
+            gradients[chunk] = gradient;
+        });
+
+        steps++;
+        float scale = 1f / (end - start);
+        float correction1 = 1f - (float) Math.pow(BETA1, steps);
+        float correction2 = 1f - (float) Math.pow(BETA2, steps);
+        for (int p = 0; p < NeuralEvaluator.PARAMETERS; p++) {
+            float gradient = 0f;
+            for (float[] chunkGradient : gradients) {
+                gradient += chunkGradient[p];
+            }
+            gradient *= scale;
+            firstMoments[p] = BETA1 * firstMoments[p] + (1f - BETA1) * gradient;
+            secondMoments[p] = BETA2 * secondMoments[p] + (1f - BETA2) * gradient * gradient;
+            parameters[p] -= LEARNING_RATE * (firstMoments[p] / correction1) /
+                             ((float) Math.sqrt(secondMoments[p] / correction2) + EPSILON);
+        }
+
+        double loss = 0.0;
+        for (double chunkLoss : losses) {
+            loss += chunkLoss;
+        }
+        return loss;
+    }
+
+    private float[] accumulator(int[] features) {
+        float[] accumulator = new float[NeuralEvaluator.ACCUMULATOR_SIZE];
+        System.arraycopy(parameters, NeuralEvaluator.ACCUMULATOR_BIAS, accumulator, 0, accumulator.length);
+        for (int feature : features) {
+            for (int k = 0; k < accumulator.length; k++) {
+                accumulator[k] += parameters[feature * NeuralEvaluator.ACCUMULATOR_SIZE + k];
+            }
+        }
+        return accumulator;
+    }
+
+    /**
+     * Runs one position forwards and backwards and adds its gradient.
+     *
+     * @return The loss of the position
+     */
+    private double backpropagate(int[] features, float result, float[] gradient) {
+        final int h1 = NeuralEvaluator.ACCUMULATOR_SIZE;
+        final int h2 = NeuralEvaluator.HIDDEN_SIZE;
+
+        float[] accumulator = accumulator(features);
+        float[] hidden1 = new float[h1];
+        for (int k = 0; k < h1; k++) {
+            hidden1[k] = Math.min(1f, Math.max(0f, accumulator[k]));
+        }
+        float[] hidden2 = new float[h2];
+        float output = parameters[NeuralEvaluator.OUTPUT_BIAS];
+        for (int j = 0; j < h2; j++) {
+            float value = parameters[NeuralEvaluator.HIDDEN_BIAS + j];
+            for (int k = 0; k < h1; k++) {
+                value += parameters[NeuralEvaluator.HIDDEN_WEIGHTS + k * h2 + j] * hidden1[k];
+            }
+            hidden2[j] = Math.max(0f, value);
+            output += parameters[NeuralEvaluator.OUTPUT_WEIGHTS + j] * hidden2[j];
+        }
+
+        // Derivative of the cross-entropy loss with respect to the logit
+        float outputGradient = (float) (sigmoid(output) - result);
+        gradient[NeuralEvaluator.OUTPUT_BIAS] += outputGradient;
+        float[] accumulatorGradient = new float[h1];
+        for (int j = 0; j < h2; j++) {
+            gradient[NeuralEvaluator.OUTPUT_WEIGHTS + j] += outputGradient * hidden2[j];
+            if (hidden2[j] <= 0f) {
+                continue;
+            }
+            float hiddenGradient = outputGradient * parameters[NeuralEvaluator.OUTPUT_WEIGHTS + j];
+            gradient[NeuralEvaluator.HIDDEN_BIAS + j] += hiddenGradient;
+            for (int k = 0; k < h1; k++) {
+                gradient[NeuralEvaluator.HIDDEN_WEIGHTS + k * h2 + j] += hiddenGradient * hidden1[k];
+                accumulatorGradient[k] += hiddenGradient * parameters[NeuralEvaluator.HIDDEN_WEIGHTS + k * h2 + j];
+            }
+        }
+
+        // The clipping passes the gradient only inside (0, 1)
+        for (int k = 0; k < h1; k++) {
+            if (accumulator[k] <= 0f || accumulator[k] >= 1f) {
+                accumulatorGradient[k] = 0f;
+            }
+            gradient[NeuralEvaluator.ACCUMULATOR_BIAS + k] += accumulatorGradient[k];
+        }
+        for (int feature : features) {
+            int row = feature * h1;
+            for (int k = 0; k < h1; k++) {
+                gradient[row + k] += accumulatorGradient[k];
+            }
+        }
+        return crossEntropy(output, result);
+    }
+
+    private static double sigmoid(double x) {
+        return 1.0 / (1.0 + Math.exp(-x));
+    }
+
+    /**
+     * Cross-entropy of the logit against the result, computed without overflow.
+     */
+    private static double crossEntropy(double logit, double result) {
+        return Math.max(logit, 0.0) - logit * result + Math.log1p(Math.exp(-Math.abs(logit)));
+    }
+
+    /**
+     * Generates training data or trains a network.
+     * Usage: NeuralTrainer generate &lt;games&gt; &lt;data file&gt; [depth]
+     *    or: NeuralTrainer train &lt;data file&gt; &lt;network file&gt; [epochs]
+     *
+     * @param args The command and its arguments
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 3 && args[0].equals("generate")) {
+            int depth = (args.length > 3) ? Integer.parseInt(args[3]) : 3;
+            TrainingData data = TrainingData.generate(Integer.parseInt(args[1]), depth, 1L, System.out);
+            data.save(Paths.get(args[2]));
+            System.out.println(data.size() + " positions written to " + args[2]);
+        } else if (args.length >= 3 && args[0].equals("train")) {
+            int epochs = (args.length > 3) ? Integer.parseInt(args[3]) : 20;
+            TrainingData data = TrainingData.load(Paths.get(args[1]));
+            System.out.println(data.size() + " positions loaded");
+            NeuralEvaluator network = NeuralEvaluator.createRandom(new Random(1));
+            new NeuralTrainer(network).train(data, epochs, 1L, System.out);
+            network.save(Paths.get(args[2]));
+            System.out.println("Network written to " + args[2]);
+        } else {
+            System.err.println("Usage: NeuralTrainer generate <games> <data file> [depth]");
+            System.err.println("       NeuralTrainer train <data file> <network file> [epochs]");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package de.greenoid.game.isola;
+
+/**
+ * Immutable game position: the remaining tiles, both piece squares and the player to move.
+ *
+ * The text form is one line: six rows from row 0 to row 5 separated by '/', eight cells per row,
+ * then a space and the player to move ({@code 1} or {@code 2}). Cells are
+ * {@code o} tile, {@code .} removed tile, {@code a} / {@code b} free start square of Player 1 / 2
+ * and {@code 1} / {@code 2} the square of Player 1 / 2. The start position is
+ * <pre>oooo2ooo/oooooooo/oooooooo/oooooooo/oooooooo/ooo1oooo 1</pre>
+ * The start squares are the same in every game, so they are implied and not stored.
+ *
+ * The packed form is a 64-bit key: the tile mask in the low 48 bits, the squares of Player 1
+ * and Player 2 in the next 6 bits each, and the player to move in bit 60 (set for Player 2).
+ * Both forms round-trip: {@code parse(p.toString())} and {@code unpack(p.pack())} equal {@code p}.
+ */
+public final class Position {
+    private static final int ROWS = IsolaBoard.BOARD_ROWS;
+    private static final int COLS = IsolaBoard.BOARD_COLS;
+
+    // Start squares (row * BOARD_COLS + col) as set up by IsolaBoard
+    private static final int PLAYER1_START_SQUARE = 5 * COLS + 3;
+    private static final int PLAYER2_START_SQUARE = 0 * COLS + 4;
+
+    private static final int SQUARES = ROWS * COLS;
+    private static final long BOARD_MASK = (1L << SQUARES) - 1;
+    private static final int PLAYER1_SHIFT = SQUARES;
+    private static final int PLAYER2_SHIFT = SQUARES + 6;
+    private static final int SIDE_SHIFT = SQUARES + 12;
+
+    /**
+     * The position at the start of every game.
+     */
+    public static final Position START = fromBoard(new IsolaBoard(), IsolaBoard.PLAYER1);
+
+    private final long tileMask;
+    private final int player1Square;
+    private final int player2Square;
+    private final int playerToMove;
+
+    private Position(long tileMask, int player1Square, int player2Square, int playerToMove) {
+        this.tileMask = tileMask;
+        this.player1Square = player1Square;
+        this.player2Square = player2Square;
+        this.playerToMove = playerToMove;
+    }
+
+    /**
+     * Create a position from its parts.
+     *
+     * @param tileMask The removable tiles, bit {@code row * BOARD_COLS + col} per cell
+     * @param player1Square The square of Player 1
+     * @param player2Square The square of Player 2
+     * @param playerToMove The player to move (IsolaBoard.PLAYER1 or IsolaBoard.PLAYER2)
+     * @return The position
+     * @throws IllegalArgumentException If the parts do not form a valid position
+     */
+    public static Position of(long tileMask, int player1Square, int player2Square, int playerToMove) {
+        if ((tileMask & ~BOARD_MASK) != 0 ||
+            (tileMask & (1L << PLAYER1_START_SQUARE | 1L << PLAYER2_START_SQUARE)) != 0) {
+            throw new IllegalArgumentException("Invalid tile mask " + Long.toHexString(tileMask));
+        }
+        if (!isStandingSquare(tileMask, player1Square) || !isStandingSquare(tileMask, player2Square) ||
+            player1Square == player2Square) {
+            throw new IllegalArgumentException("Invalid player squares " + player1Square + ", " + player2Square);
+        }
+        if (playerToMove != IsolaBoard.PLAYER1 && playerToMove != IsolaBoard.PLAYER2) {
+            throw new IllegalArgumentException("Invalid player to move " + playerToMove);
+        }
+        return new Position(tileMask, player1Square, player2Square, playerToMove);
+    }
+
+    private static boolean isStandingSquare(long tileMask, int square) {
+        return square >= 0 && square < SQUARES &&
+               (square == PLAYER1_START_SQUARE || square == PLAYER2_START_SQUARE || ((tileMask >>> square) & 1L) != 0);
+    }
+
+    /**
+     * Unpack a position from its 64-bit packed form.
+     *
+     * @param packed The packed form
+     * @return The position
+     * @throws IllegalArgumentException If the value is not a valid packed position
+     */
+    public static Position unpack(long packed) {
+        if ((packed >>> (SIDE_SHIFT + 1)) != 0) {
+            throw new IllegalArgumentException("Invalid packed position " + Long.toHexString(packed));
+        }
+        return of(packed & BOARD_MASK,
+                  (int) (packed >>> PLAYER1_SHIFT) & 0x3F,
+                  (int) (packed >>> PLAYER2_SHIFT) & 0x3F,
+                  ((packed >>> SIDE_SHIFT) & 1L) != 0 ? IsolaBoard.PLAYER2 : IsolaBoard.PLAYER1);
+    }
+
+    /**
+     * Create the position of a board.
+     *
+     * @param board The board
+     * @param playerToMove The player to move (IsolaBoard.PLAYER1 or IsolaBoard.PLAYER2)
+     * @return The position
+     */
+    public static Position fromBoard(IsolaBoard board, int playerToMove) {
+        return new Position(board.getTileMask(),
+                board.player1Row * COLS + board.player1Col,
+                board.player2Row * COLS + board.player2Col,
+                playerToMove);
+    }
+
+    /**
+     * Parse the one-line text form.
+     *
+     * @param text The text form
+     * @return The position
+     * @throws IllegalArgumentException If the text is not a valid position
+     */
+    public static Position parse(String text) {
+        String[] fields = text.trim().split("\\s+");
+        if (fields.length != 2) {
+            throw new IllegalArgumentException("Expected board and player to move: " + text);
+        }
+        String[] rows = fields[0].split("/");
+        if (rows.length != ROWS) {
+            throw new IllegalArgumentException("Expected " + ROWS + " rows: " + text);
+        }
+
+        long tileMask = 0L;
+        int player1Square = -1;
+        int player2Square = -1;
+        for (int row = 0; row < ROWS; row++) {
+            if (rows[row].length() != COLS) {
+                throw new IllegalArgumentException("Expected " + COLS + " cells in row " + row + ": " + text);
+            }
+            for (int col = 0; col < COLS; col++) {
+                int square = row * COLS + col;
+                char cell = rows[row].charAt(col);
+                boolean startSquare = square == PLAYER1_START_SQUARE || square == PLAYER2_START_SQUARE;
+                switch (cell) {
+                    case 'o':
+                        if (startSquare) {
+                            throw new IllegalArgumentException("Start square shown as tile at " + row + "," + col);
+                        }
+                        tileMask |= 1L << square;
+                        break;
+                    case '.':
+                        if (startSquare) {
+                            throw new IllegalArgumentException("Start square cannot be removed at " + row + "," + col);
+                        }
+                        break;
+                    case 'a':
+                    case 'b':
+                        if (square != ((cell == 'a') ? PLAYER1_START_SQUARE : PLAYER2_START_SQUARE)) {
+                            throw new IllegalArgumentException("Misplaced start square at " + row + "," + col);
+                        }
+                        break;
+                    case '1':
+                    case '2':
+                        if ((cell == '1' ? player1Square : player2Square) >= 0) {
+                            throw new IllegalArgumentException("Player " + cell + " appears twice: " + text);
+                        }
+                        if (cell == '1') {
+                            player1Square = square;
+                        } else {
+                            player2Square = square;
+                        }
+                        // A piece stands on a tile unless it is on a start square
+                        if (!startSquare) {
+                            tileMask |= 1L << square;
+                        }
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown cell '" + cell + "' at " + row + "," + col);
+                }
+            }
+        }
+        if (player1Square < 0 || player2Square < 0) {
+            throw new IllegalArgumentException("Both players must be on the board: " + text);
+        }
+
+        int playerToMove;
+        if ("1".equals(fields[1])) {
+            playerToMove = IsolaBoard.PLAYER1;
+        } else if ("2".equals(fields[1])) {
+            playerToMove = IsolaBoard.PLAYER2;
+        } else {
+            throw new IllegalArgumentException("Player to move must be 1 or 2: " + text);
+        }
+        return of(tileMask, player1Square, player2Square, playerToMove);
+    }
+
+    /**
+     * Get the 64-bit packed form, e.g. as a cache key.
+     *
+     * @return The packed form
+     */
+    public long pack() {
+        return pack(tileMask, player1Square, player2Square, playerToMove);
+    }
+
+    /**
+     * Packs a position into 64 bits without creating a Position, e.g. for the keys of a search table.
+     * The arguments are not validated.
+     *
+     * @param tileMask The removable tiles
+     * @param player1Square The square of Player 1
+     * @param player2Square The square of Player 2
+     * @param playerToMove The player to move
+     * @return The packed form, equal to {@link #pack()} of the same position
+     */
+    static long pack(long tileMask, int player1Square, int player2Square, int playerToMove) {
+        return tileMask | (long) player1Square << PLAYER1_SHIFT | (long) player2Square << PLAYER2_SHIFT |
+               (playerToMove == IsolaBoard.PLAYER2 ? 1L << SIDE_SHIFT : 0L);
+    }
+
+    /**
+     * Get the symmetry that maps this position onto its canonical representative,
+     * the equivalent position with the smallest packed form.
+     *
+     * @return The symmetry to apply
+     */
+    public Symmetry getCanonicalSymmetry() {
+        return getCanonicalSymmetry(tileMask, player1Square, player2Square, playerToMove);
+    }
+
+    /**
+     * Get the symmetry that maps a position onto its canonical representative, without creating
+     * the position; for the search, which needs it at every node.
+     *
+     * @return The symmetry to apply
+     */
+    static Symmetry getCanonicalSymmetry(long tileMask, int player1Square, int player2Square, int playerToMove) {
+        Symmetry rotation = Symmetry.ROTATE_180;
+        long rotated = pack(rotation.transformMask(tileMask), rotation.transformSquare(player1Square),
+                            rotation.transformSquare(player2Square), playerToMove);
+        long packed = pack(tileMask, player1Square, player2Square, playerToMove);
+        return Long.compareUnsigned(rotated, packed) < 0 ? Symmetry.ROTATE_180 : Symmetry.IDENTITY;
+    }
+
+    /**
+     * Get the canonical representative of this position under the board symmetries.
+     * Equivalent positions have the same canonical position, so it can key caches and tables.
+     *
+     * @return The canonical position
+     */
+    public Position canonical() {
+        return getCanonicalSymmetry().transform(this);
+    }
+
+    /**
+     * Create a board with this position.
+     *
+     * @return A new board
+     */
+    public IsolaBoard toBoard() {
+        IsolaBoard board = new IsolaBoard();
+        copyTo(board);
+        return board;
+    }
+
+    /**
+     * Set up an existing board with this position.
+     *
+     * @param board The board to overwrite
+     */
+    void copyTo(IsolaBoard board) {
+        for (int square = 0; square < ROWS * COLS; square++) {
+            if (square != PLAYER1_START_SQUARE && square != PLAYER2_START_SQUARE) {
+                board.board[square / COLS][square % COLS] =
+                        ((tileMask >>> square) & 1L) != 0 ? IsolaBoard.TILE : IsolaBoard.EMPTY;
+            }
+        }
+        board.player1Row = player1Square / COLS;
+        board.player1Col = player1Square % COLS;
+        board.player2Row = player2Square / COLS;
+        board.player2Col = player2Square % COLS;
+    }
+
+    /**
+     * Get the removable tiles, bit {@code row * BOARD_COLS + col} per cell.
+     *
+     * @return The tile mask
+     */
+    public long getTileMask() {
+        return tileMask;
+    }
+
+    /**
+     * Get the square of Player 1.
+     *
+     * @return The square index ({@code row * BOARD_COLS + col})
+     */
+    public int getPlayer1Square() {
+        return player1Square;
+    }
+
+    /**
+     * Get the square of Player 2.
+     *
+     * @return The square index ({@code row * BOARD_COLS + col})
+     */
+    public int getPlayer2Square() {
+        return player2Square;
+    }
+
+    /**
+     * Get the player to move.
+     *
+     * @return IsolaBoard.PLAYER1 or IsolaBoard.PLAYER2
+     */
+    public int getPlayerToMove() {
+        return playerToMove;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof Position)) {
+            return false;
+        }
+        Position position = (Position) other;
+        return tileMask == position.tileMask && player1Square == position.player1Square &&
+               player2Square == position.player2Square && playerToMove == position.playerToMove;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(pack());
+    }
+
+    /**
+     * Format the position in its one-line text form.
+     *
+     * @return The text form
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(ROWS * (COLS + 1) + 2);
+        for (int row = 0; row < ROWS; row++) {
+            if (row > 0) {
+                text.append('/');
+            }
+            for (int col = 0; col < COLS; col++) {
+                int square = row * COLS + col;
+                if (square == player1Square) {
+                    text.append('1');
+                } else if (square == player2Square) {
+                    text.append('2');
+                } else if (square == PLAYER1_START_SQUARE) {
+                    text.append('a');
+                } else if (square == PLAYER2_START_SQUARE) {
+                    text.append('b');
+                } else {
+                    text.append(((tileMask >>> square) & 1L) != 0 ? 'o' : '.');
+                }
+            }
+        }
+        return text.append(' ').append(playerToMove == IsolaBoard.PLAYER1 ? '1' : '2').toString();
+    }
+}
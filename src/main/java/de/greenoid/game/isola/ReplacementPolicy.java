@@ -0,0 +1,18 @@
+package de.greenoid.game.isola;
+
+/**
+ * Decides which result a slot of the transposition table keeps when two positions hash to it.
+ */
+public enum ReplacementPolicy {
+
+    /**
+     * Keep the result searched to the larger depth. Results of earlier searches are always replaced,
+     * so deep results of past moves do not fill the table.
+     */
+    DEPTH_PREFERRED,
+
+    /**
+     * Always keep the newest result.
+     */
+    ALWAYS_REPLACE
+}
@@ -0,0 +1,58 @@
+package de.greenoid.game.isola;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A line of play starting with a root move, together with the search value of the root move.
+ */
+public class ScoredLine {
+    private final double value;
+    private final List<IsolaMove> moves;
+
+    /**
+     * Constructor to create a ScoredLine.
+     *
+     * @param value The minimax value of the first move from Player 1's point of view
+     * @param moves The moves of the line, starting with the root move
+     */
+    public ScoredLine(double value, List<IsolaMove> moves) {
+        if (moves.isEmpty()) {
+            throw new IllegalArgumentException("A line needs at least one move");
+        }
+        this.value = value;
+        this.moves = Collections.unmodifiableList(moves);
+    }
+
+    /**
+     * Get the root move of the line.
+     *
+     * @return The first move
+     */
+    public IsolaMove getMove() {
+        return moves.get(0);
+    }
+
+    /**
+     * Get the minimax value of the root move.
+     *
+     * @return The value from Player 1's point of view
+     */
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * Get the moves of the line.
+     *
+     * @return The moves, starting with the root move
+     */
+    public List<IsolaMove> getMoves() {
+        return moves;
+    }
+
+    @Override
+    public String toString() {
+        return value + ": " + moves;
+    }
+}
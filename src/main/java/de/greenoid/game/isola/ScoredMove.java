@@ -0,0 +1,67 @@
+package de.greenoid.game.isola;
+
+/**
+ * A root move together with its search value, which may only be a bound when the move was searched
+ * with a narrowed window.
+ */
+public class ScoredMove {
+    private final IsolaMove move;
+    private final double value;
+    private final boolean exact;
+
+    /**
+     * Constructor to create a ScoredMove with an exact value.
+     *
+     * @param move The move
+     * @param value The minimax value of the move from Player 1's point of view
+     */
+    public ScoredMove(IsolaMove move, double value) {
+        this(move, value, true);
+    }
+
+    /**
+     * Constructor to create a ScoredMove.
+     *
+     * @param move The move
+     * @param value The minimax value of the move from Player 1's point of view
+     * @param exact true if the value is exact, false if it is only a bound
+     */
+    public ScoredMove(IsolaMove move, double value, boolean exact) {
+        this.move = move;
+        this.value = value;
+        this.exact = exact;
+    }
+
+    /**
+     * Get the move.
+     *
+     * @return The move
+     */
+    public IsolaMove getMove() {
+        return move;
+    }
+
+    /**
+     * Get the minimax value of the move.
+     *
+     * @return The value from Player 1's point of view
+     */
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * Check whether the value is exact. A move that cannot be the best one is cut off by the search,
+     * and its value is then only a bound.
+     *
+     * @return true if the value is exact, false if it is a bound
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    @Override
+    public String toString() {
+        return move + (exact ? " = " : " bound ") + value;
+    }
+}
@@ -0,0 +1,96 @@
+package de.greenoid.game.isola;
+
+/**
+ * Limits for a single computer move search.
+ * A search that runs out of nodes or time returns the best move of the last
+ * completed iteration of the iterative deepening.
+ */
+public class SearchBudget {
+    /** No limits beyond the computer player's own depth settings. */
+    public static final SearchBudget UNLIMITED = new SearchBudget(Integer.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE);
+
+    private final int maxDepth;
+    private final long maxNodes;
+    private final long timeLimitMillis;
+    private final int parallelism;
+
+    /**
+     * Constructor to create a SearchBudget.
+     *
+     * @param maxDepth The maximum search depth in plies
+     * @param maxNodes The maximum number of nodes to visit
+     * @param timeLimitMillis The maximum search time in milliseconds
+     * @param parallelism The maximum number of root tasks running at the same time
+     */
+    public SearchBudget(int maxDepth, long maxNodes, long timeLimitMillis, int parallelism) {
+        if (maxDepth < 1 || maxNodes < 1 || timeLimitMillis < 1 || parallelism < 1) {
+            throw new IllegalArgumentException("Search limits must be positive");
+        }
+        this.maxDepth = maxDepth;
+        this.maxNodes = maxNodes;
+        this.timeLimitMillis = timeLimitMillis;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Get the maximum search depth.
+     *
+     * @return The maximum depth in plies
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Get the maximum number of nodes.
+     *
+     * @return The node limit
+     */
+    public long getMaxNodes() {
+        return maxNodes;
+    }
+
+    /**
+     * Get the time limit.
+     *
+     * @return The time limit in milliseconds
+     */
+    public long getTimeLimitMillis() {
+        return timeLimitMillis;
+    }
+
+    /**
+     * Get the maximum number of parallel root tasks.
+     *
+     * @return The parallelism
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Create a copy of this budget with a lower depth limit.
+     *
+     * @param depth The new maximum depth; the lower of both limits is used
+     * @return The reduced budget
+     */
+    public SearchBudget withMaxDepth(int depth) {
+        return new SearchBudget(Math.min(maxDepth, depth), maxNodes, timeLimitMillis, parallelism);
+    }
+
+    /**
+     * Create a copy of this budget with a shorter time limit.
+     *
+     * @param millis The new time limit; the lower of both limits is used
+     * @return The reduced budget
+     */
+    public SearchBudget withTimeLimitMillis(long millis) {
+        return new SearchBudget(maxDepth, maxNodes, Math.min(timeLimitMillis, millis), parallelism);
+    }
+
+    @Override
+    public String toString() {
+        return "SearchBudget(depth=" + maxDepth + ", nodes=" + maxNodes + ", time=" + timeLimitMillis +
+               " ms, parallelism=" + parallelism + ")";
+    }
+}
@@ -0,0 +1,84 @@
+package de.greenoid.game.isola;
+
+/**
+ * A computer opponent that searches the best move for a player.
+ *
+ * The minimax search of {@link ComputerPlayer} and the Monte Carlo tree search of {@link MctsPlayer}
+ * are interchangeable behind this interface.
+ */
+public interface SearchEngine {
+
+    /** Name of the alpha-beta minimax engine. */
+    String MINIMAX = "minimax";
+
+    /** Name of the Monte Carlo tree search engine. */
+    String MCTS = "mcts";
+
+    /**
+     * Create an engine by name.
+     *
+     * @param name The name of the engine, {@link #MINIMAX} or {@link #MCTS}
+     * @param maxSearchDepth The maximum search depth of the minimax engine
+     * @return The new engine
+     * @throws IllegalArgumentException If there is no engine with this name
+     */
+    static SearchEngine create(String name, int maxSearchDepth) {
+        switch (name) {
+            case MINIMAX:
+                return new ComputerPlayer(maxSearchDepth);
+            case MCTS:
+                return new MctsPlayer();
+            default:
+                throw new IllegalArgumentException("Unknown engine: " + name);
+        }
+    }
+
+    /**
+     * Searches the best move with the engine's default budget.
+     *
+     * @param board The current game board
+     * @param currentPlayer The player to move
+     * @return The best move, or null if the player cannot move
+     */
+    IsolaMove findBestMove(IsolaBoard board, int currentPlayer);
+
+    /**
+     * Searches the best move within the given budget.
+     *
+     * @param board The current game board
+     * @param currentPlayer The player to move
+     * @param budget The limits of this search
+     * @return The search result; its move is null if the player cannot move
+     */
+    SearchResult search(IsolaBoard board, int currentPlayer, SearchBudget budget);
+
+    /**
+     * Searches the best move within the given budget and reports the progress to a listener.
+     *
+     * @param board The current game board
+     * @param currentPlayer The player to move
+     * @param budget The limits of this search
+     * @param listener The listener to report the progress to, or null
+     * @return The search result; its move is null if the player cannot move
+     */
+    SearchResult search(IsolaBoard board, int currentPlayer, SearchBudget budget, SearchListener listener);
+
+    /**
+     * Enable or disable the search progress output on the console.
+     *
+     * @param verbose true to print search progress, false to search silently
+     */
+    void setVerbose(boolean verbose);
+
+    /**
+     * Switch to a reproducible mode with a seeded random generator.
+     *
+     * @param seed The seed
+     */
+    void setSeed(long seed);
+
+    /**
+     * Release the threads of the engine.
+     */
+    void shutdown();
+}
@@ -0,0 +1,27 @@
+package de.greenoid.game.isola;
+
+/**
+ * Receives progress reports from a running search.
+ *
+ * The methods are called on the search threads, so implementations must be thread-safe
+ * and return quickly. A GUI should store the latest progress and render it on its own timer.
+ */
+public interface SearchListener {
+
+    /**
+     * Called after every completed iteration and periodically while an iteration runs.
+     *
+     * @param progress The current state of the search
+     */
+    void searchProgress(SearchProgress progress);
+
+    /**
+     * Checked periodically during the search; the search stops after its current
+     * iteration as soon as this returns true, like when its budget runs out.
+     *
+     * @return true to stop the search
+     */
+    default boolean isStopRequested() {
+        return false;
+    }
+}
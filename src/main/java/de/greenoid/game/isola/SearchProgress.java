@@ -0,0 +1,113 @@
+package de.greenoid.game.isola;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable snapshot of a running search.
+ * Line, value and root scores belong to the last completed iteration,
+ * the node count and time are current.
+ */
+public final class SearchProgress {
+    private final int depth;
+    private final double value;
+    private final List<IsolaMove> principalVariation;
+    private final List<ScoredMove> rootScores;
+    private final long nodes;
+    private final long elapsedMillis;
+
+    /**
+     * Constructor to create a SearchProgress.
+     *
+     * @param depth The depth of the last completed iteration, 0 if none is complete yet
+     * @param value The value of the best line from Player 1's point of view
+     * @param principalVariation The best line, starting with the move to play
+     * @param rootScores The values of the root moves searched in the last completed iteration
+     * @param nodes The number of nodes visited so far
+     * @param elapsedMillis The search time so far in milliseconds
+     */
+    public SearchProgress(int depth, double value, List<IsolaMove> principalVariation,
+                          List<ScoredMove> rootScores, long nodes, long elapsedMillis) {
+        this.depth = depth;
+        this.value = value;
+        this.principalVariation = Collections.unmodifiableList(principalVariation);
+        this.rootScores = Collections.unmodifiableList(rootScores);
+        this.nodes = nodes;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Create a copy with updated node count and time.
+     *
+     * @param nodes The number of nodes visited so far
+     * @param elapsedMillis The search time so far in milliseconds
+     * @return The updated progress
+     */
+    SearchProgress withNodes(long nodes, long elapsedMillis) {
+        return new SearchProgress(depth, value, principalVariation, rootScores, nodes, elapsedMillis);
+    }
+
+    /**
+     * Get the depth of the last completed iteration.
+     *
+     * @return The depth in plies, 0 if no iteration is complete yet
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Get the value of the best line.
+     *
+     * @return The value from Player 1's point of view
+     */
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * Get the best line found so far.
+     *
+     * @return The moves of the line, empty if no iteration is complete yet
+     */
+    public List<IsolaMove> getPrincipalVariation() {
+        return principalVariation;
+    }
+
+    /**
+     * Get the values of the root moves of the last completed iteration. Only the best moves
+     * have exact values, the others may be bounds from a narrowed window, see {@link ScoredMove#isExact()}.
+     *
+     * @return The scored root moves
+     */
+    public List<ScoredMove> getRootScores() {
+        return rootScores;
+    }
+
+    /**
+     * Get the number of visited nodes.
+     *
+     * @return The node count
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Get the search time so far.
+     *
+     * @return The search time in milliseconds
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Get the search speed.
+     *
+     * @return The visited nodes per second
+     */
+    public long getNodesPerSecond() {
+        return elapsedMillis > 0 ? nodes * 1000 / elapsedMillis : 0;
+    }
+}
@@ -0,0 +1,154 @@
+package de.greenoid.game.isola;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a computer move search.
+ */
+public class SearchResult {
+    private final IsolaMove move;
+    private final double value;
+    private final int depth;
+    private final long nodes;
+    private final long elapsedMillis;
+    private final boolean aborted;
+    private final List<IsolaMove> principalVariation;
+    private final List<ScoredLine> lines;
+
+    /**
+     * Constructor to create a SearchResult.
+     *
+     * @param move The chosen move, or null if the player cannot move
+     * @param value The minimax value of the move from Player 1's point of view
+     * @param depth The depth of the last completed iteration
+     * @param nodes The number of nodes visited
+     * @param elapsedMillis The search time in milliseconds
+     * @param aborted true if the search stopped early because its budget ran out
+     */
+    public SearchResult(IsolaMove move, double value, int depth, long nodes, long elapsedMillis, boolean aborted) {
+        this(move, value, depth, nodes, elapsedMillis, aborted,
+             move == null ? Collections.<IsolaMove>emptyList() : Collections.singletonList(move));
+    }
+
+    /**
+     * Constructor to create a SearchResult with the expected line of play.
+     *
+     * @param move The chosen move, or null if the player cannot move
+     * @param value The minimax value of the move from Player 1's point of view
+     * @param depth The depth of the last completed iteration
+     * @param nodes The number of nodes visited
+     * @param elapsedMillis The search time in milliseconds
+     * @param aborted true if the search stopped early because its budget ran out
+     * @param principalVariation The expected line, starting with the chosen move
+     */
+    public SearchResult(IsolaMove move, double value, int depth, long nodes, long elapsedMillis, boolean aborted,
+                        List<IsolaMove> principalVariation) {
+        this(move, value, depth, nodes, elapsedMillis, aborted, principalVariation,
+             principalVariation.isEmpty() ? Collections.<ScoredLine>emptyList()
+                                          : Collections.singletonList(new ScoredLine(value, principalVariation)));
+    }
+
+    /**
+     * Constructor to create a SearchResult with the best lines of a multi-PV search.
+     *
+     * @param move The chosen move, or null if the player cannot move
+     * @param value The minimax value of the move from Player 1's point of view
+     * @param depth The depth of the last completed iteration
+     * @param nodes The number of nodes visited
+     * @param elapsedMillis The search time in milliseconds
+     * @param aborted true if the search stopped early because its budget ran out
+     * @param principalVariation The expected line, starting with the chosen move
+     * @param lines The best lines with exact values, best first
+     */
+    public SearchResult(IsolaMove move, double value, int depth, long nodes, long elapsedMillis, boolean aborted,
+                        List<IsolaMove> principalVariation, List<ScoredLine> lines) {
+        this.principalVariation = Collections.unmodifiableList(principalVariation);
+        this.lines = Collections.unmodifiableList(lines);
+        this.move = move;
+        this.value = value;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.elapsedMillis = elapsedMillis;
+        this.aborted = aborted;
+    }
+
+    /**
+     * Get the chosen move.
+     *
+     * @return The move, or null if the player cannot move
+     */
+    public IsolaMove getMove() {
+        return move;
+    }
+
+    /**
+     * Get the minimax value of the chosen move.
+     *
+     * @return The value from Player 1's point of view
+     */
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * Get the depth of the last completed iteration.
+     *
+     * @return The search depth in plies
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Get the number of visited nodes.
+     *
+     * @return The node count
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Get the search time.
+     *
+     * @return The search time in milliseconds
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Check whether the search stopped early because its budget ran out.
+     *
+     * @return true if the search was aborted
+     */
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    /**
+     * Get the expected line of play.
+     *
+     * @return The moves of the line, starting with the chosen move
+     */
+    public List<IsolaMove> getPrincipalVariation() {
+        return principalVariation;
+    }
+
+    /**
+     * Get the best lines of the search, one per searched root move with an exact value.
+     * Without multi-PV this is the expected line only.
+     *
+     * @return The lines, best first
+     */
+    public List<ScoredLine> getLines() {
+        return lines;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchResult(" + move + ", value=" + value + ", depth=" + depth + ", nodes=" + nodes +
+               ", time=" + elapsedMillis + " ms" + (aborted ? ", aborted" : "") + ")";
+    }
+}
@@ -0,0 +1,194 @@
+package de.greenoid.game.isola;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Worker process of a {@link DistributedSearch}: accepts coordinators on a local port and searches the
+ * subtrees they send, see {@link WorkerProtocol}.
+ *
+ * All connections share one engine, so its transposition table serves every subtree, and a fixed
+ * number of search threads. When a coordinator disconnects, the searches of its subtrees stop.
+ */
+public class SearchWorker {
+    private final int threads;
+    private final ExecutorService searchExecutor;
+    private final ScheduledExecutorService heartbeatExecutor;
+    private final ComputerPlayer computerPlayer;
+
+    /**
+     * Constructor to create a worker.
+     *
+     * @param threads The number of subtrees searched at the same time
+     */
+    public SearchWorker(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one thread is needed");
+        }
+        this.threads = threads;
+        this.searchExecutor = Executors.newFixedThreadPool(threads);
+        this.heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.computerPlayer = new ComputerPlayer(Integer.MAX_VALUE, searchExecutor);
+        this.computerPlayer.setVerbose(false);
+    }
+
+    /**
+     * Accept coordinators until the server socket is closed. Every connection is served on its own thread.
+     *
+     * @param serverSocket The socket to accept connections on
+     */
+    public void serve(ServerSocket serverSocket) {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread thread = new Thread(() -> handleConnection(socket), "coordinator-" + socket.getPort());
+                thread.start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    System.err.println("Could not accept a coordinator: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void handleConnection(Socket socket) {
+        Connection connection = new Connection(socket);
+        try {
+            socket.setTcpNoDelay(true);
+            connection.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            connection.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            WorkerProtocol.writeHandshake(connection.out, threads);
+            connection.heartbeat = heartbeatExecutor.scheduleAtFixedRate(connection::sendHeartbeat,
+                    WorkerProtocol.HEARTBEAT_INTERVAL_MILLIS, WorkerProtocol.HEARTBEAT_INTERVAL_MILLIS,
+                    TimeUnit.MILLISECONDS);
+
+            while (true) {
+                byte type = connection.in.readByte();
+                if (type != WorkerProtocol.TASK) {
+                    throw new IOException("Unexpected message type " + type);
+                }
+                int id = connection.in.readInt();
+                Position position = Position.unpack(connection.in.readLong());
+                int depth = connection.in.readByte();
+                double alpha = connection.in.readDouble();
+                double beta = connection.in.readDouble();
+                searchExecutor.submit(() -> connection.search(id, position, depth, alpha, beta));
+            }
+        } catch (EOFException e) {
+            // The coordinator is done
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Connection to coordinator failed: " + e.getMessage());
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Release the threads of the worker.
+     */
+    public void shutdown() {
+        searchExecutor.shutdownNow();
+        heartbeatExecutor.shutdownNow();
+    }
+
+    /**
+     * One coordinator. Results and heartbeats are written by different threads, guarded by the stream.
+     */
+    private final class Connection implements SearchListener {
+        private final Socket socket;
+        DataInputStream in;
+        DataOutputStream out;
+        ScheduledFuture<?> heartbeat;
+        private volatile boolean closed;
+
+        Connection(Socket socket) {
+            this.socket = socket;
+        }
+
+        void search(int id, Position position, int depth, double alpha, double beta) {
+            if (closed) {
+                return;
+            }
+            SearchResult result = computerPlayer.searchSubtree(position.toBoard(), position.getPlayerToMove(), depth,
+                                                               alpha, beta, this);
+            if (result.isAborted()) {
+                return;
+            }
+            try {
+                synchronized (out) {
+                    WorkerProtocol.writeResult(out, id, result.getValue(), result.getNodes(),
+                                               WorkerProtocol.encodeMove(result.getMove()));
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        void sendHeartbeat() {
+            try {
+                synchronized (out) {
+                    out.writeByte(WorkerProtocol.HEARTBEAT);
+                    out.flush();
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        void close() {
+            closed = true;
+            if (heartbeat != null) {
+                heartbeat.cancel(false);
+            }
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+
+        @Override
+        public void searchProgress(SearchProgress progress) {
+        }
+
+        @Override
+        public boolean isStopRequested() {
+            return closed;
+        }
+    }
+
+    /**
+     * Runs a worker on the loopback interface and prints its port.
+     * Usage: SearchWorker [port] [threads], port 0 picks a free port
+     *
+     * @param args The port and the number of threads
+     */
+    public static void main(String[] args) throws IOException {
+        int port = (args.length > 0) ? Integer.parseInt(args[0]) : 0;
+        int threads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        SearchWorker worker = new SearchWorker(threads);
+        try (ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            System.out.println(DistributedSearch.LISTENING + serverSocket.getLocalPort());
+            System.out.flush();
+            worker.serve(serverSocket);
+        } finally {
+            worker.shutdown();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package de.greenoid.game.isola;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Plays the minimax engine against the MCTS engine with the same time per move.
+ *
+ * Every opening of a few random plies is played twice with swapped colours, so neither engine
+ * profits from a lucky opening or from moving first.
+ */
+public class SelfPlay {
+    private static final int OPENING_PLIES = 4;
+
+    private final int games;
+    private final long timePerMoveMillis;
+    private final Random random = new Random(1);
+
+    /**
+     * Constructor to create a SelfPlay match.
+     *
+     * @param games The number of games, rounded up to an even number
+     * @param timePerMoveMillis The time limit per move in milliseconds for both engines
+     */
+    public SelfPlay(int games, long timePerMoveMillis) {
+        if (games <= 0 || timePerMoveMillis <= 0) {
+            throw new IllegalArgumentException("Games and time per move must be positive");
+        }
+        this.games = games;
+        this.timePerMoveMillis = timePerMoveMillis;
+    }
+
+    /**
+     * Play the match and print one line per game and a summary.
+     *
+     * @param out The stream to print the results to
+     */
+    public void run(PrintStream out) {
+        ComputerPlayer minimax = new ComputerPlayer(5);
+        MctsPlayer mcts = new MctsPlayer();
+        minimax.setVerbose(false);
+        mcts.setVerbose(false);
+        SearchBudget budget = new SearchBudget(Integer.MAX_VALUE, Long.MAX_VALUE, timePerMoveMillis, Integer.MAX_VALUE);
+
+        // Index 0: minimax, index 1: MCTS
+        String[] names = {SearchEngine.MINIMAX, SearchEngine.MCTS};
+        int[] wins = new int[2];
+        long[] moves = new long[2];
+        long[] millis = new long[2];
+        long[] nodes = new long[2];
+
+        try {
+            for (int game = 0; game < games; game += 2) {
+                Position opening = randomOpening(random, OPENING_PLIES);
+                for (int first = 0; first < 2; first++) {
+                    SearchEngine[] engines = (first == 0)
+                            ? new SearchEngine[]{minimax, mcts} : new SearchEngine[]{mcts, minimax};
+                    IsolaBoard board = opening.toBoard();
+                    int player = opening.getPlayerToMove();
+                    int plies = 0;
+                    int winner;
+
+                    while (true) {
+                        // Player 1 is played by engines[0]
+                        int side = (player == IsolaBoard.PLAYER1) ? 0 : 1;
+                        int engine = (engines[side] == minimax) ? 0 : 1;
+                        SearchResult result = engines[side].search(board, player, budget);
+                        moves[engine]++;
+                        millis[engine] += result.getElapsedMillis();
+                        nodes[engine] += result.getNodes();
+
+                        IsolaMove move = result.getMove();
+                        if (move == null) {
+                            winner = 1 - engine;
+                            break;
+                        }
+                        board.movePlayer(player, move.moveToRow, move.moveToCol);
+                        board.removeTile(move.removeTileRow, move.removeTileCol);
+                        plies++;
+                        player = (player == IsolaBoard.PLAYER1) ? IsolaBoard.PLAYER2 : IsolaBoard.PLAYER1;
+                        if (board.isPlayerIsolated(player)) {
+                            winner = engine;
+                            break;
+                        }
+                    }
+
+                    wins[winner]++;
+                    out.println("Game " + (game + first + 1) + ": " + opening + ", Player 1 " +
+                                names[engines[0] == minimax ? 0 : 1] + ", " + names[winner] + " wins after " +
+                                plies + " plies");
+                }
+            }
+        } finally {
+            minimax.shutdown();
+            mcts.shutdown();
+        }
+
+        for (int engine = 0; engine < 2; engine++) {
+            out.println(names[engine] + ": " + wins[engine] + " wins, " +
+                        (moves[engine] == 0 ? 0 : millis[engine] / moves[engine]) + " ms and " +
+                        (moves[engine] == 0 ? 0 : nodes[engine] / moves[engine]) + " nodes per move");
+        }
+    }
+
+    /**
+     * Plays a few random plies from the start position, without isolating a player.
+     *
+     * @param random The random generator choosing the moves
+     * @param plies The number of plies to play
+     * @return The position after the opening
+     */
+    static Position randomOpening(Random random, int plies) {
+        while (true) {
+            IsolaBoard board = new IsolaBoard();
+            int player = IsolaBoard.PLAYER1;
+            boolean valid = true;
+            for (int ply = 0; ply < plies && valid; ply++) {
+                int[] position = (player == IsolaBoard.PLAYER1) ? board.getPlayer1Position() : board.getPlayer2Position();
+                List<int[]> targets = new ArrayList<>();
+                for (int dr = -1; dr <= 1; dr++) {
+                    for (int dc = -1; dc <= 1; dc++) {
+                        if ((dr != 0 || dc != 0) && board.clone().movePlayer(player, position[0] + dr, position[1] + dc)) {
+                            targets.add(new int[]{position[0] + dr, position[1] + dc});
+                        }
+                    }
+                }
+                int[] target = targets.get(random.nextInt(targets.size()));
+                board.movePlayer(player, target[0], target[1]);
+
+                List<int[]> tiles = new ArrayList<>();
+                for (int r = 0; r < IsolaBoard.BOARD_ROWS; r++) {
+                    for (int c = 0; c < IsolaBoard.BOARD_COLS; c++) {
+                        if (board.clone().removeTile(r, c)) {
+                            tiles.add(new int[]{r, c});
+                        }
+                    }
+                }
+                int[] tile = tiles.get(random.nextInt(tiles.size()));
+                board.removeTile(tile[0], tile[1]);
+                player = (player == IsolaBoard.PLAYER1) ? IsolaBoard.PLAYER2 : IsolaBoard.PLAYER1;
+                valid = !board.isPlayerIsolated(player);
+            }
+            if (valid) {
+                return Position.fromBoard(board, player);
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package de.greenoid.game.isola;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Neural network kernels on the Vector API, with a scalar loop for the remainder of each array.
+ */
+final class SimdKernels implements NeuralKernels {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public void add(float[] target, float[] source, int offset, int length) {
+        int i = 0;
+        for (int upper = SPECIES.loopBound(length); i < upper; i += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, target, i)
+                       .add(FloatVector.fromArray(SPECIES, source, offset + i))
+                       .intoArray(target, i);
+        }
+        for (; i < length; i++) {
+            target[i] += source[offset + i];
+        }
+    }
+
+    @Override
+    public void subtract(float[] target, float[] source, int offset, int length) {
+        int i = 0;
+        for (int upper = SPECIES.loopBound(length); i < upper; i += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, target, i)
+                       .sub(FloatVector.fromArray(SPECIES, source, offset + i))
+                       .intoArray(target, i);
+        }
+        for (; i < length; i++) {
+            target[i] -= source[offset + i];
+        }
+    }
+
+    @Override
+    public void addScaled(float[] target, float factor, float[] source, int offset, int length) {
+        int i = 0;
+        FloatVector factors = FloatVector.broadcast(SPECIES, factor);
+        for (int upper = SPECIES.loopBound(length); i < upper; i += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, source, offset + i)
+                       .fma(factors, FloatVector.fromArray(SPECIES, target, i))
+                       .intoArray(target, i);
+        }
+        for (; i < length; i++) {
+            target[i] += factor * source[offset + i];
+        }
+    }
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        int i = 0;
+        FloatVector sum = FloatVector.zero(SPECIES);
+        for (int upper = SPECIES.loopBound(length); i < upper; i += SPECIES.length()) {
+            sum = FloatVector.fromArray(SPECIES, a, aOffset + i)
+                             .fma(FloatVector.fromArray(SPECIES, b, bOffset + i), sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            result += a[aOffset + i] * b[bOffset + i];
+        }
+        return result;
+    }
+
+    @Override
+    public void clamp(float[] target, float min, float max, int length) {
+        int i = 0;
+        for (int upper = SPECIES.loopBound(length); i < upper; i += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, target, i).max(min).min(max).intoArray(target, i);
+        }
+        for (; i < length; i++) {
+            target[i] = Math.min(max, Math.max(min, target[i]));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package de.greenoid.game.isola;
+
+/**
+ * Symmetries of the Isola board that map every position onto an equivalent position.
+ *
+ * The 6x8 board has horizontal, vertical and 180 degree symmetries, but only the rotation
+ * maps the two start squares, which can never be removed, onto each other. The mirror images
+ * move a start square onto a removable tile and so change the game. The rotation keeps the
+ * colour of the pieces and the player to move; values and best moves carry over unchanged.
+ */
+public enum Symmetry {
+    IDENTITY,
+    ROTATE_180;
+
+    private static final int SQUARES = IsolaBoard.BOARD_ROWS * IsolaBoard.BOARD_COLS;
+
+    /**
+     * Map a square index ({@code row * BOARD_COLS + col}).
+     *
+     * @param square The square index
+     * @return The transformed square index
+     */
+    public int transformSquare(int square) {
+        return (this == IDENTITY) ? square : SQUARES - 1 - square;
+    }
+
+    /**
+     * Map a square mask, bit {@code row * BOARD_COLS + col} per square.
+     *
+     * @param mask The square mask
+     * @return The transformed square mask
+     */
+    public long transformMask(long mask) {
+        // Reversing the 64 bits maps square s to 63 - s, the shift turns that into 47 - s
+        return (this == IDENTITY) ? mask : Long.reverse(mask) >>> (Long.SIZE - SQUARES);
+    }
+
+    /**
+     * Map a move.
+     *
+     * @param move The move
+     * @return The transformed move
+     */
+    public IsolaMove transform(IsolaMove move) {
+        if (this == IDENTITY) {
+            return move;
+        }
+        int lastRow = IsolaBoard.BOARD_ROWS - 1;
+        int lastCol = IsolaBoard.BOARD_COLS - 1;
+        return new IsolaMove(lastRow - move.moveFromRow, lastCol - move.moveFromCol,
+                             lastRow - move.moveToRow, lastCol - move.moveToCol,
+                             lastRow - move.removeTileRow, lastCol - move.removeTileCol);
+    }
+
+    /**
+     * Map a position.
+     *
+     * @param position The position
+     * @return The transformed position
+     */
+    public Position transform(Position position) {
+        if (this == IDENTITY) {
+            return position;
+        }
+        return Position.of(transformMask(position.getTileMask()),
+                           transformSquare(position.getPlayer1Square()),
+                           transformSquare(position.getPlayer2Square()),
+                           position.getPlayerToMove());
+    }
+
+    /**
+     * Get the symmetry that undoes this one.
+     *
+     * @return The inverse symmetry
+     */
+    public Symmetry inverse() {
+        // Both symmetries are their own inverse
+        return this;
+    }
+}
@@ -0,0 +1,175 @@
+package de.greenoid.game.isola;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Positions from self-play games labelled with the outcome of their game.
+ *
+ * The file format has one position per line in the text form of {@link Position}, followed by
+ * the result: 1 if Player 1 won the game, 0 if Player 2 won.
+ */
+public final class TrainingData {
+    private static final int MIN_OPENING_PLIES = 2;
+    private static final int MAX_OPENING_PLIES = 8;
+
+    private final List<Position> positions;
+    private final List<Float> results;
+
+    private TrainingData(List<Position> positions, List<Float> results) {
+        this.positions = positions;
+        this.results = results;
+    }
+
+    /**
+     * Plays games of the minimax engine against itself and labels every position with the outcome.
+     * Each game starts with a few random plies; the engine searches in its deterministic mode, so
+     * the same seed generates the same data.
+     *
+     * @param games The number of games
+     * @param depth The search depth per move
+     * @param seed The seed of the openings and the engine
+     * @param log The stream to report the progress to, or null
+     * @return The generated data
+     */
+    public static TrainingData generate(int games, int depth, long seed, PrintStream log) {
+        List<Position> positions = new ArrayList<>();
+        List<Float> results = new ArrayList<>();
+        Random random = new Random(seed);
+        ComputerPlayer engine = new ComputerPlayer(depth);
+        engine.setVerbose(false);
+        engine.setSeed(seed);
+        SearchBudget budget = new SearchBudget(depth, Long.MAX_VALUE, Long.MAX_VALUE, 1);
+        int player1Wins = 0;
+
+        try {
+            for (int game = 0; game < games; game++) {
+                int openingPlies = MIN_OPENING_PLIES + random.nextInt(MAX_OPENING_PLIES - MIN_OPENING_PLIES + 1);
+                Position opening = SelfPlay.randomOpening(random, openingPlies);
+                IsolaBoard board = opening.toBoard();
+                int player = opening.getPlayerToMove();
+                List<Position> gamePositions = new ArrayList<>();
+
+                while (true) {
+                    gamePositions.add(Position.fromBoard(board, player));
+                    IsolaMove move = engine.search(board, player, budget).getMove();
+                    if (move == null) {
+                        break;
+                    }
+                    board.movePlayer(player, move.moveToRow, move.moveToCol);
+                    board.removeTile(move.removeTileRow, move.removeTileCol);
+                    player = (player == IsolaBoard.PLAYER1) ? IsolaBoard.PLAYER2 : IsolaBoard.PLAYER1;
+                    if (board.isPlayerIsolated(player)) {
+                        gamePositions.add(Position.fromBoard(board, player));
+                        break;
+                    }
+                }
+
+                // The player to move in the last position has lost
+                float result = (player == IsolaBoard.PLAYER1) ? 0f : 1f;
+                player1Wins += (int) result;
+                for (Position position : gamePositions) {
+                    positions.add(position);
+                    results.add(result);
+                }
+                if (log != null && (game + 1) % 10 == 0) {
+                    log.println((game + 1) + " games, " + positions.size() + " positions, Player 1 won " +
+                                player1Wins);
+                }
+            }
+        } finally {
+            engine.shutdown();
+        }
+        return new TrainingData(positions, results);
+    }
+
+    /**
+     * Read training data from a file.
+     *
+     * @param file The file to read
+     * @return The loaded data
+     * @throws IOException If the file cannot be read or contains an invalid line
+     */
+    public static TrainingData load(Path file) throws IOException {
+        List<Position> positions = new ArrayList<>();
+        List<Float> results = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                int separator = line.lastIndexOf(' ');
+                try {
+                    float result = (separator < 0) ? Float.NaN : Float.parseFloat(line.substring(separator + 1));
+                    if (!(result >= 0f && result <= 1f)) {
+                        throw new IllegalArgumentException("Invalid result");
+                    }
+                    positions.add(Position.parse(line.substring(0, separator)));
+                    results.add(result);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Invalid training data in line " + lineNumber + " of " + file + ": " +
+                                          e.getMessage());
+                }
+            }
+        }
+        return new TrainingData(positions, results);
+    }
+
+    /**
+     * Write the data to a file.
+     *
+     * @param file The file to write
+     * @throws IOException If the file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < positions.size(); i++) {
+                float result = results.get(i);
+                writer.write(positions.get(i) + " " + (result == (int) result ? String.valueOf((int) result)
+                                                                            : String.valueOf(result)));
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Get the number of positions.
+     *
+     * @return The number of positions
+     */
+    public int size() {
+        return positions.size();
+    }
+
+    /**
+     * Get a position.
+     *
+     * @param index The index of the position
+     * @return The position
+     */
+    public Position getPosition(int index) {
+        return positions.get(index);
+    }
+
+    /**
+     * Get the outcome of the game a position was taken from.
+     *
+     * @param index The index of the position
+     * @return 1 if Player 1 won, 0 if Player 2 won
+     */
+    public float getResult(int index) {
+        return results.get(index);
+    }
+}
@@ -0,0 +1,245 @@
+package de.greenoid.game.isola;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size hash table of search results, shared by all root workers of a {@link ComputerPlayer}.
+ * Positions are keyed by their canonical form, so a position and its rotation share one entry; the
+ * best move is stored in the canonical orientation. This needs an evaluation that gives both the same
+ * value: with a {@link NeuralEvaluator}, which is not invariant under the rotation, positions are keyed
+ * as they are.
+ *
+ * The table lives in a direct buffer outside the heap, so many engines in one JVM do not add to the
+ * garbage collector's work. Every slot holds two longs: the raw bits of the value, and a key word
+ * XORed with them. The key word packs 42 check bits of the position's hash, the generation of the
+ * search, the depth, the bound and the best move (target and removed square). Workers read and write
+ * the two longs without locks; a slot torn by two concurrent writes fails the check and reads as a miss.
+ * The packed position is hashed with an odd multiplier, so different positions have different hashes.
+ * From 64 MB on the slot index and the check bits cover the whole hash and a hit is always the right
+ * position; smaller tables leave a few hash bits unchecked.
+ */
+final class TranspositionTable {
+
+    /** The value is exact. */
+    static final int EXACT = 0;
+    /** The value is a lower bound, the search failed high. */
+    static final int LOWER_BOUND = 1;
+    /** The value is an upper bound, the search failed low. */
+    static final int UPPER_BOUND = 2;
+
+    /** The largest table size in MB. */
+    static final int MAX_MEGABYTES = 1024;
+
+    private static final int SLOT_BYTES = 2 * Long.BYTES;
+    private static final long FIBONACCI = 0x9E3779B97F4A7C15L;
+
+    // Layout of the key word, from the top: check bits, generation, depth, bound, target, removed square
+    private static final int CHECK_SHIFT = 22;
+    private static final long CHECK_MASK = (1L << (Long.SIZE - CHECK_SHIFT)) - 1;
+    private static final int GENERATION_SHIFT = 20;
+    private static final int GENERATION_MASK = 0x3;
+    private static final int DEPTH_SHIFT = 14;
+    private static final int MAX_DEPTH = 0x3F;
+    private static final int BOUND_SHIFT = 12;
+    private static final int SQUARE_BITS = 6;
+    private static final int SQUARE_MASK = 0x3F;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final ByteBuffer slots;
+    private final int slotCount;
+    private final int shift;
+    private final int megabytes;
+    private final ReplacementPolicy policy;
+    private volatile int generation;
+
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder collisions = new LongAdder();
+
+    /**
+     * Creates an empty table.
+     *
+     * @param megabytes The size of the table; the number of slots is rounded down to a power of two
+     * @param policy The replacement policy
+     * @throws IllegalArgumentException If the size is not between 1 and 1024 MB
+     */
+    TranspositionTable(int megabytes, ReplacementPolicy policy) {
+        if (megabytes < 1 || megabytes > MAX_MEGABYTES) {
+            throw new IllegalArgumentException("Table size must be between 1 and " + MAX_MEGABYTES + " MB: " +
+                                               megabytes);
+        }
+        int bits = 31 - Integer.numberOfLeadingZeros(megabytes) + 20 - Integer.numberOfTrailingZeros(SLOT_BYTES);
+        this.slotCount = 1 << bits;
+        this.shift = Long.SIZE - bits;
+        this.megabytes = megabytes;
+        this.policy = policy;
+        // Atomic access to the longs needs them aligned
+        this.slots = ByteBuffer.allocateDirect(slotCount * SLOT_BYTES + Long.BYTES).alignedSlice(Long.BYTES);
+    }
+
+    /**
+     * Looks up a position.
+     *
+     * @param key The packed canonical position, see {@link Position#canonical()}, or the packed position
+     *            itself when the search uses a network
+     * @return The entry, or null if the position is not in the table
+     */
+    Entry probe(long key) {
+        probes.increment();
+        long hash = key * FIBONACCI;
+        int offset = offset(hash);
+        long data = (long) LONGS.getOpaque(slots, offset + Long.BYTES);
+        long keyWord = (long) LONGS.getOpaque(slots, offset) ^ data;
+        if ((keyWord >>> CHECK_SHIFT) != (hash & CHECK_MASK)) {
+            if (keyWord != 0 || data != 0) {
+                collisions.increment();
+            }
+            return null;
+        }
+        hits.increment();
+        return new Entry((int) (keyWord >>> DEPTH_SHIFT) & MAX_DEPTH, Double.longBitsToDouble(data),
+                         (int) (keyWord >>> BOUND_SHIFT) & 0x3, (int) (keyWord >>> SQUARE_BITS) & SQUARE_MASK,
+                         (int) keyWord & SQUARE_MASK);
+    }
+
+    /**
+     * Stores the result of a search.
+     *
+     * @param key The packed position, keyed as in {@link #probe(long)}
+     * @param depth The remaining depth of the search
+     * @param value The value from Player 1's point of view
+     * @param bound {@link #EXACT}, {@link #LOWER_BOUND} or {@link #UPPER_BOUND}
+     * @param bestMove The best move found in the canonical orientation, or null
+     */
+    void store(long key, int depth, double value, int bound, IsolaMove bestMove) {
+        long hash = key * FIBONACCI;
+        int offset = offset(hash);
+        depth = Math.min(depth, MAX_DEPTH);
+        int currentGeneration = generation;
+        if (policy == ReplacementPolicy.DEPTH_PREFERRED) {
+            long currentData = (long) LONGS.getOpaque(slots, offset + Long.BYTES);
+            long currentKeyWord = (long) LONGS.getOpaque(slots, offset) ^ currentData;
+            // A deeper result of the running search stays, whichever position it belongs to
+            if (((currentKeyWord >>> GENERATION_SHIFT) & GENERATION_MASK) == currentGeneration &&
+                    ((currentKeyWord >>> DEPTH_SHIFT) & MAX_DEPTH) > depth) {
+                return;
+            }
+        }
+
+        // A null move is stored with equal squares, which no real move has
+        int target = 0;
+        int removed = 0;
+        if (bestMove != null) {
+            target = bestMove.moveToRow * IsolaBoard.BOARD_COLS + bestMove.moveToCol;
+            removed = bestMove.removeTileRow * IsolaBoard.BOARD_COLS + bestMove.removeTileCol;
+        }
+        long keyWord = ((hash & CHECK_MASK) << CHECK_SHIFT) | ((long) currentGeneration << GENERATION_SHIFT) |
+                       ((long) depth << DEPTH_SHIFT) | ((long) bound << BOUND_SHIFT) |
+                       ((long) target << SQUARE_BITS) | removed;
+        long data = Double.doubleToRawLongBits(value);
+        LONGS.setOpaque(slots, offset, keyWord ^ data);
+        LONGS.setOpaque(slots, offset + Long.BYTES, data);
+    }
+
+    /**
+     * Starts a new search: results of earlier searches are kept, but no longer protected by the
+     * depth-preferred policy.
+     */
+    void newSearch() {
+        generation = (generation + 1) & GENERATION_MASK;
+    }
+
+    /**
+     * Removes all entries and resets the statistics, e.g. after the evaluation changed.
+     */
+    void clear() {
+        for (int offset = 0; offset < slotCount * SLOT_BYTES; offset += Long.BYTES) {
+            LONGS.setOpaque(slots, offset, 0L);
+        }
+        probes.reset();
+        hits.reset();
+        collisions.reset();
+    }
+
+    /**
+     * Get the share of the slots in use.
+     *
+     * @return The occupied slots divided by all slots
+     */
+    double getOccupancy() {
+        int used = 0;
+        for (int offset = 0; offset < slotCount * SLOT_BYTES; offset += SLOT_BYTES) {
+            if ((long) LONGS.getOpaque(slots, offset) != 0 || (long) LONGS.getOpaque(slots, offset + Long.BYTES) != 0) {
+                used++;
+            }
+        }
+        return (double) used / slotCount;
+    }
+
+    /**
+     * Get the share of the probes that found their position.
+     *
+     * @return The hits divided by the probes since the last {@link #clear()}
+     */
+    double getHitRate() {
+        long count = probes.sum();
+        return (count == 0) ? 0.0 : (double) hits.sum() / count;
+    }
+
+    /**
+     * Get the share of the probes that found the slot taken by another position.
+     *
+     * @return The collisions divided by the probes since the last {@link #clear()}
+     */
+    double getCollisionRate() {
+        long count = probes.sum();
+        return (count == 0) ? 0.0 : (double) collisions.sum() / count;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d MB, %s, Belegung %.1f%%, Treffer %.1f%%, Kollisionen %.1f%%", megabytes, policy,
+                             100 * getOccupancy(), 100 * getHitRate(), 100 * getCollisionRate());
+    }
+
+    private int offset(long hash) {
+        // Fibonacci hashing spreads the tile bits over the index
+        return (int) (hash >>> shift) * SLOT_BYTES;
+    }
+
+    /**
+     * The stored result of one position.
+     */
+    static final class Entry {
+        final int depth;
+        final double value;
+        final int bound;
+        private final int target;
+        private final int removed;
+
+        Entry(int depth, double value, int bound, int target, int removed) {
+            this.depth = depth;
+            this.value = value;
+            this.bound = bound;
+            this.target = target;
+            this.removed = removed;
+        }
+
+        /**
+         * Checks whether a move is the stored best move.
+         *
+         * @param move The move in the orientation of the searched position
+         * @param symmetry The symmetry that maps the searched position onto the canonical one
+         */
+        boolean isBestMove(IsolaMove move, Symmetry symmetry) {
+            return target != removed &&
+                   symmetry.transformSquare(move.moveToRow * IsolaBoard.BOARD_COLS + move.moveToCol) == target &&
+                   symmetry.transformSquare(move.removeTileRow * IsolaBoard.BOARD_COLS + move.removeTileCol) == removed;
+        }
+    }
+}
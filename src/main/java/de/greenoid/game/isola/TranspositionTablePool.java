@@ -0,0 +1,88 @@
+package de.greenoid.game.isola;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A fixed number of transposition tables lent to the searches of many {@link ComputerPlayer}s.
+ *
+ * A search borrows a table for its duration and returns it afterwards, so the off-heap memory of
+ * all engines is bounded by the size of the pool, however many engines there are. With one table per
+ * search running at the same time no search has to wait, and a table is only ever used by one search,
+ * so the depth-preferred policy protects the results of that search. The tables are allocated when
+ * they are first needed. All engines using a pool must evaluate positions the same way.
+ */
+public final class TranspositionTablePool {
+    private final int size;
+    private final int megabytes;
+    private final ReplacementPolicy policy;
+    private final Deque<TranspositionTable> freeTables = new ArrayDeque<>();
+    private int allocated;
+
+    /**
+     * Creates a pool without tables yet.
+     *
+     * @param size The maximum number of tables
+     * @param megabytes The size of each table, between 1 and 1024 MB
+     * @param policy The replacement policy of the tables
+     * @throws IllegalArgumentException If the number of tables or their size is out of range
+     */
+    public TranspositionTablePool(int size, int megabytes, ReplacementPolicy policy) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Pool needs at least one table: " + size);
+        }
+        if (megabytes < 1 || megabytes > TranspositionTable.MAX_MEGABYTES) {
+            throw new IllegalArgumentException("Table size must be between 1 and " +
+                                               TranspositionTable.MAX_MEGABYTES + " MB: " + megabytes);
+        }
+        this.size = size;
+        this.megabytes = megabytes;
+        this.policy = policy;
+    }
+
+    /**
+     * Borrows a table, waiting until one is free if all are lent.
+     *
+     * @return The table
+     * @throws IllegalStateException If the thread is interrupted while waiting
+     */
+    synchronized TranspositionTable acquire() {
+        while (freeTables.isEmpty()) {
+            if (allocated < size) {
+                allocated++;
+                return new TranspositionTable(megabytes, policy);
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a transposition table", e);
+            }
+        }
+        return freeTables.pop();
+    }
+
+    /**
+     * Returns a borrowed table.
+     *
+     * @param table The table from {@link #acquire()}
+     */
+    synchronized void release(TranspositionTable table) {
+        freeTables.push(table);
+        notify();
+    }
+
+    /**
+     * Get the off-heap memory the pool may use at most.
+     *
+     * @return The size of all tables in MB
+     */
+    public int getMegabytes() {
+        return size * megabytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d x %d MB, %s, %d angelegt", size, megabytes, policy, allocated);
+    }
+}
@@ -0,0 +1,114 @@
+package de.greenoid.game.isola;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Binary messages between a {@link DistributedSearch} and its {@link SearchWorker}s.
+ *
+ * After connecting, the worker sends the magic number, the protocol version and the number of
+ * subtrees it searches at the same time. Then the coordinator sends tasks and the worker answers
+ * each with a result, in any order; in between the worker sends a heartbeat every second, so
+ * a worker that stopped responding is noticed. Positions travel in their packed 64-bit form, moves
+ * as a short of target and removed square.
+ *
+ * <pre>
+ * task:      byte TASK,      int id, long position, byte depth, double alpha, double beta  (30 bytes)
+ * result:    byte RESULT,    int id, double value, long nodes, short reply                 (23 bytes)
+ * heartbeat: byte HEARTBEAT
+ * </pre>
+ */
+final class WorkerProtocol {
+
+    static final int MAGIC = 0x49535744; // "ISWD"
+    static final int VERSION = 1;
+
+    static final byte TASK = 1;
+    static final byte RESULT = 2;
+    static final byte HEARTBEAT = 3;
+
+    /** A worker sends a heartbeat this often. */
+    static final int HEARTBEAT_INTERVAL_MILLIS = 1000;
+
+    /** A worker that sent nothing for this long is considered lost. */
+    static final int TIMEOUT_MILLIS = 10_000;
+
+    /** The reply of a result without a move. */
+    static final short NO_MOVE = -1;
+
+    private WorkerProtocol() {
+    }
+
+    static void writeTask(DataOutputStream out, int id, long position, int depth, double alpha, double beta)
+            throws IOException {
+        out.writeByte(TASK);
+        out.writeInt(id);
+        out.writeLong(position);
+        out.writeByte(depth);
+        out.writeDouble(alpha);
+        out.writeDouble(beta);
+        out.flush();
+    }
+
+    static void writeResult(DataOutputStream out, int id, double value, long nodes, short reply) throws IOException {
+        out.writeByte(RESULT);
+        out.writeInt(id);
+        out.writeDouble(value);
+        out.writeLong(nodes);
+        out.writeShort(reply);
+        out.flush();
+    }
+
+    /**
+     * Reads the handshake of a worker.
+     *
+     * @return The number of subtrees the worker searches at the same time
+     * @throws IOException If the peer is not a worker of this protocol version
+     */
+    static int readHandshake(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Not an Isola search worker");
+        }
+        int slots = in.readInt();
+        if (slots < 1) {
+            throw new IOException("Invalid number of worker threads: " + slots);
+        }
+        return slots;
+    }
+
+    static void writeHandshake(DataOutputStream out, int slots) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(slots);
+        out.flush();
+    }
+
+    /**
+     * Encodes a move as its target and removed square.
+     */
+    static short encodeMove(IsolaMove move) {
+        if (move == null) {
+            return NO_MOVE;
+        }
+        int target = move.moveToRow * IsolaBoard.BOARD_COLS + move.moveToCol;
+        int removed = move.removeTileRow * IsolaBoard.BOARD_COLS + move.removeTileCol;
+        return (short) ((target << 6) | removed);
+    }
+
+    /**
+     * Decodes a move of the given player on the board it is played on.
+     *
+     * @return The move, or null for {@link #NO_MOVE}
+     */
+    static IsolaMove decodeMove(short encoded, IsolaBoard board, int player) {
+        if (encoded == NO_MOVE) {
+            return null;
+        }
+        int[] from = (player == IsolaBoard.PLAYER1) ? board.getPlayer1Position() : board.getPlayer2Position();
+        int target = encoded >> 6;
+        int removed = encoded & 0x3F;
+        return new IsolaMove(from[0], from[1], target / IsolaBoard.BOARD_COLS, target % IsolaBoard.BOARD_COLS,
+                             removed / IsolaBoard.BOARD_COLS, removed % IsolaBoard.BOARD_COLS);
+    }
+}
@@ -61,10 +61,78 @@ public class GuiController {
     }
     
     /**
-     * Start a new game.
+     * Start a new game with the same engine and seed. The computer player of the old game is shut down.
      */
     public void startNewGame() {
-        game = new IsolaGame();
+        IsolaGame newGame = new IsolaGame();
+        newGame.setEngine(game.getEngine());
+        newGame.setSeed(game.getSeed());
+        game.shutdown();
+        game = newGame;
+    }
+    
+    /**
+     * Take back the last turn.
+     *
+     * @return true if a turn was taken back
+     */
+    public boolean undo() {
+        return game.undo();
+    }
+    
+    /**
+     * Play the next turn taken back again.
+     *
+     * @return true if a turn was played again
+     */
+    public boolean redo() {
+        return game.redo();
+    }
+    
+    /**
+     * Restore the position after the given number of turns.
+     *
+     * @param ply The number of turns, between 0 and the length of the move history
+     * @return true if the position was restored
+     */
+    public boolean jumpToPly(int ply) {
+        return game.jumpToPly(ply);
+    }
+    
+    /**
+     * Get the number of turns played up to the current position.
+     *
+     * @return The current ply of the move history
+     */
+    public int getPly() {
+        return game.getPly();
+    }
+    
+    /**
+     * Get the number of turns in the move history, including the turns taken back.
+     *
+     * @return The length of the move history
+     */
+    public int getHistoryLength() {
+        return game.getHistoryLength();
+    }
+    
+    /**
+     * Check whether a turn can be taken back.
+     *
+     * @return true if there is a turn to undo
+     */
+    public boolean canUndo() {
+        return game.canUndo();
+    }
+    
+    /**
+     * Check whether a turn taken back can be played again.
+     *
+     * @return true if there is a turn to redo
+     */
+    public boolean canRedo() {
+        return game.canRedo();
     }
     
     /**
@@ -0,0 +1,97 @@
+package de.greenoid.game.isola.gui.swing;
+
+import de.greenoid.game.isola.IsolaMove;
+import de.greenoid.game.isola.Position;
+import de.greenoid.game.isola.ScoredMove;
+import de.greenoid.game.isola.SearchProgress;
+import de.greenoid.game.isola.Symmetry;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded cache of analysis results keyed by the packed canonical position.
+ * Symmetric positions share one entry; results are stored in the canonical orientation
+ * and mapped back to the requested position on lookup.
+ * For each position the deepest result is kept; the least recently used positions are dropped.
+ * Thread-safe, results are stored by the analysis thread and read on the EDT.
+ */
+public class AnalysisCache {
+    private final Map<Long, SearchProgress> results;
+    
+    /**
+     * Constructor to create an AnalysisCache.
+     *
+     * @param capacity The maximum number of positions kept
+     */
+    public AnalysisCache(int capacity) {
+        this.results = new LinkedHashMap<Long, SearchProgress>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, SearchProgress> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+    
+    /**
+     * Store a result unless a deeper one is already known for the position.
+     *
+     * @param position The analyzed position
+     * @param progress The analysis result
+     */
+    public void put(Position position, SearchProgress progress) {
+        Symmetry symmetry = position.getCanonicalSymmetry();
+        long key = symmetry.transform(position).pack();
+        SearchProgress canonicalProgress = transform(progress, symmetry);
+        synchronized (this) {
+            SearchProgress known = results.get(key);
+            if (known == null || progress.getDepth() >= known.getDepth()) {
+                results.put(key, canonicalProgress);
+            }
+        }
+    }
+    
+    /**
+     * Get the result for a position.
+     *
+     * @param position The position
+     * @return The deepest known result for the position or a symmetric one, or null if none was analyzed
+     */
+    public SearchProgress get(Position position) {
+        Symmetry symmetry = position.getCanonicalSymmetry();
+        SearchProgress canonicalProgress;
+        synchronized (this) {
+            canonicalProgress = results.get(symmetry.transform(position).pack());
+        }
+        return (canonicalProgress == null) ? null : transform(canonicalProgress, symmetry.inverse());
+    }
+    
+    /**
+     * Map the moves of a result with a symmetry; values are unchanged by the board symmetries.
+     */
+    private static SearchProgress transform(SearchProgress progress, Symmetry symmetry) {
+        if (symmetry == Symmetry.IDENTITY) {
+            return progress;
+        }
+        List<IsolaMove> line = new ArrayList<>();
+        for (IsolaMove move : progress.getPrincipalVariation()) {
+            line.add(symmetry.transform(move));
+        }
+        List<ScoredMove> rootScores = new ArrayList<>();
+        for (ScoredMove scoredMove : progress.getRootScores()) {
+            rootScores.add(new ScoredMove(symmetry.transform(scoredMove.getMove()), scoredMove.getValue(),
+                                          scoredMove.isExact()));
+        }
+        return new SearchProgress(progress.getDepth(), progress.getValue(), line, rootScores,
+                                  progress.getNodes(), progress.getElapsedMillis());
+    }
+    
+    /**
+     * Remove all results.
+     */
+    public synchronized void clear() {
+        results.clear();
+    }
+}
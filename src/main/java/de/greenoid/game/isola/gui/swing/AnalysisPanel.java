@@ -0,0 +1,102 @@
+package de.greenoid.game.isola.gui.swing;
+
+import de.greenoid.game.isola.IsolaMove;
+import de.greenoid.game.isola.SearchProgress;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.List;
+
+/**
+ * Panel showing what the engine thinks about the current position:
+ * depth, score, search speed and the expected line of play.
+ */
+public class AnalysisPanel extends JPanel {
+    private JLabel depthLabel;
+    private JLabel scoreLabel;
+    private JLabel speedLabel;
+    private JLabel lineLabel;
+    
+    /**
+     * Constructor to create an AnalysisPanel.
+     */
+    public AnalysisPanel() {
+        initializeComponents();
+    }
+    
+    /**
+     * Initialize the analysis panel components.
+     */
+    private void initializeComponents() {
+        setLayout(new FlowLayout(FlowLayout.LEFT));
+        
+        depthLabel = new JLabel();
+        scoreLabel = new JLabel();
+        speedLabel = new JLabel();
+        lineLabel = new JLabel();
+        add(depthLabel);
+        add(scoreLabel);
+        add(speedLabel);
+        add(lineLabel);
+        clear();
+    }
+    
+    /**
+     * Show the latest progress of the analysis.
+     *
+     * @param progress The search progress to show
+     */
+    public void showProgress(SearchProgress progress) {
+        depthLabel.setText("Depth: " + progress.getDepth());
+        scoreLabel.setText("| Score: " + formatScore(progress.getValue()));
+        speedLabel.setText("| " + progress.getNodesPerSecond() + " nodes/s");
+        lineLabel.setText("| Best line: " + formatLine(progress.getPrincipalVariation()));
+    }
+    
+    /**
+     * Clear the display, e.g. while it is the computer's turn.
+     */
+    public void clear() {
+        depthLabel.setText("Depth: -");
+        scoreLabel.setText("| Score: -");
+        speedLabel.setText("| - nodes/s");
+        lineLabel.setText("| Best line: -");
+    }
+    
+    /**
+     * Format a score from Player 1's point of view.
+     *
+     * @param value The minimax value
+     * @return The formatted score
+     */
+    private static String formatScore(double value) {
+        if (value == Double.POSITIVE_INFINITY) {
+            return "Player 1 wins";
+        }
+        if (value == Double.NEGATIVE_INFINITY) {
+            return "Player 2 wins";
+        }
+        return String.format("%+.1f", value);
+    }
+    
+    /**
+     * Format a line of play as target square and removed tile per move.
+     *
+     * @param line The moves of the line
+     * @return The formatted line
+     */
+    private static String formatLine(List<IsolaMove> line) {
+        if (line.isEmpty()) {
+            return "-";
+        }
+        StringBuilder text = new StringBuilder();
+        for (IsolaMove move : line) {
+            if (text.length() > 0) {
+                text.append("  ");
+            }
+            text.append('(').append(move.moveToRow).append(',').append(move.moveToCol).append(")x(")
+                .append(move.removeTileRow).append(',').append(move.removeTileCol).append(')');
+        }
+        return text.toString();
+    }
+}
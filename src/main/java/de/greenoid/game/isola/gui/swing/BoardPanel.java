@@ -6,19 +6,37 @@ import de.greenoid.game.isola.gui.util.ImageLoader;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.awt.image.BufferedImage;
 
 /**
  * Panel for displaying the game board.
+ * The cells scale with the panel size; the board is centered in the panel.
  */
 public class BoardPanel extends JPanel {
     private static final int BOARD_ROWS = 6;
     private static final int BOARD_COLS = 8;
-    private static final int CELL_SIZE = 128;
     
-    private int[][] boardState;
+    // Cell size the board is designed for (the size of the sprites), and the smallest usable one
+    private static final int PREFERRED_CELL_SIZE = 128;
+    private static final int MIN_CELL_SIZE = 32;
+    
+    // Share of the screen the board may take initially
+    private static final double MAX_SCREEN_SHARE = 0.8;
+    
+    // The highlight stroke reaches slightly beyond the cell, repaint a margin around it
+    private static final int HIGHLIGHT_MARGIN = 2;
+    
+    // Player images drawn in a cell, combined with the cell state into one appearance code
+    private static final int NO_PLAYER = 0;
+    private static final int PLAYER1_CHARACTER = 1;
+    private static final int PLAYER1_VICTORY = 2;
+    private static final int PLAYER2_CHARACTER = 3;
+    private static final int PLAYER2_VICTORY = 4;
+    
+    private BoardState boardState;
     private int player1Row, player1Col;
     private int player2Row, player2Col;
     private GameStatus gameStatus = GameStatus.ONGOING;
@@ -26,6 +44,21 @@ public class BoardPanel extends JPanel {
     private int highlightedRow = -1;
     private int highlightedCol = -1;
     
+    // Layout, recomputed only when the panel is resized
+    private int cellSize = PREFERRED_CELL_SIZE;
+    private int boardX;
+    private int boardY;
+    
+    // Analysis scores of the tiles that can be removed, higher is better for the player to move
+    private static final int SHADING_ALPHA = 110;
+    private double[] removalScores;
+    private double minRemovalScore;
+    private double maxRemovalScore;
+    
+    // What each cell currently shows, used to repaint only cells that change
+    private int[] cellAppearance = new int[BOARD_ROWS * BOARD_COLS];
+    private int[] nextCellAppearance = new int[BOARD_ROWS * BOARD_COLS];
+    
     /**
      * Constructor to create a BoardPanel.
      *
@@ -33,7 +66,7 @@ public class BoardPanel extends JPanel {
      */
     public BoardPanel(SwingGui gui) {
         this.gui = gui;
-        this.boardState = new int[BOARD_ROWS][BOARD_COLS];
+        this.boardState = new BoardState(BOARD_ROWS, BOARD_COLS, new int[BOARD_ROWS][BOARD_COLS], -1, -1, -1, -1);
         initializeBoard();
     }
     
@@ -41,8 +74,46 @@ public class BoardPanel extends JPanel {
      * Initialize the board panel.
      */
     private void initializeBoard() {
-        setPreferredSize(new Dimension(BOARD_COLS * CELL_SIZE, BOARD_ROWS * CELL_SIZE));
+        int initialCellSize = getInitialCellSize();
+        setPreferredSize(new Dimension(BOARD_COLS * initialCellSize, BOARD_ROWS * initialCellSize));
+        setMinimumSize(new Dimension(BOARD_COLS * MIN_CELL_SIZE, BOARD_ROWS * MIN_CELL_SIZE));
         addMouseListener(new BoardMouseListener());
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                updateLayout();
+            }
+        });
+    }
+    
+    /**
+     * Get the cell size for the initial window: the sprite size, unless the screen is too small for it.
+     *
+     * @return The initial cell size in pixels
+     */
+    private static int getInitialCellSize() {
+        if (GraphicsEnvironment.isHeadless()) {
+            return PREFERRED_CELL_SIZE;
+        }
+        Rectangle screen = GraphicsEnvironment.getLocalGraphicsEnvironment().getMaximumWindowBounds();
+        int fitting = (int) Math.min(screen.height * MAX_SCREEN_SHARE / BOARD_ROWS,
+                                     screen.width * MAX_SCREEN_SHARE / BOARD_COLS);
+        return Math.max(MIN_CELL_SIZE, Math.min(PREFERRED_CELL_SIZE, fitting));
+    }
+    
+    /**
+     * Recompute cell size and board position from the panel size.
+     */
+    private void updateLayout() {
+        int newCellSize = Math.max(1, Math.min(getWidth() / BOARD_COLS, getHeight() / BOARD_ROWS));
+        if (newCellSize != cellSize) {
+            // Pre-scaled images of the old size are no longer needed
+            ImageLoader.invalidateScaledImages();
+            cellSize = newCellSize;
+        }
+        boardX = (getWidth() - BOARD_COLS * cellSize) / 2;
+        boardY = (getHeight() - BOARD_ROWS * cellSize) / 2;
+        repaint();
     }
     
     /**
@@ -52,13 +123,70 @@ public class BoardPanel extends JPanel {
      * @param gameStatus The current game status
      */
     public void updateBoard(BoardState newBoardState, GameStatus gameStatus) {
-        this.boardState = newBoardState.getBoard();
+        // Snapshots are immutable, so an unchanged version needs no repaint
+        if (newBoardState == boardState ||
+            (newBoardState.getVersion() != 0 && newBoardState.getVersion() == boardState.getVersion())) {
+            if (gameStatus == this.gameStatus) {
+                return;
+            }
+        }
+        this.boardState = newBoardState;
         this.player1Row = newBoardState.getPlayer1Row();
         this.player1Col = newBoardState.getPlayer1Col();
         this.player2Row = newBoardState.getPlayer2Row();
         this.player2Col = newBoardState.getPlayer2Col();
         this.gameStatus = gameStatus;
-        repaint();
+        repaintChangedCells();
+    }
+    
+    /**
+     * Compare what each cell shows now with what it showed before and
+     * repaint only the cells that differ (usually the moved piece and the removed tile).
+     */
+    private void repaintChangedCells() {
+        for (int row = 0; row < BOARD_ROWS; row++) {
+            for (int col = 0; col < BOARD_COLS; col++) {
+                int index = row * BOARD_COLS + col;
+                nextCellAppearance[index] = getCellAppearance(row, col);
+                if (nextCellAppearance[index] != cellAppearance[index]) {
+                    repaintCell(row, col);
+                }
+            }
+        }
+        int[] swap = cellAppearance;
+        cellAppearance = nextCellAppearance;
+        nextCellAppearance = swap;
+    }
+    
+    /**
+     * Get a code for everything drawn in a cell except the highlight.
+     *
+     * @param row The row of the cell
+     * @param col The column of the cell
+     * @return The cell state combined with the player image shown in the cell
+     */
+    private int getCellAppearance(int row, int col) {
+        int player = NO_PLAYER;
+        if (row == player1Row && col == player1Col) {
+            player = (gameStatus == GameStatus.PLAYER1_WON) ? PLAYER1_VICTORY : PLAYER1_CHARACTER;
+        } else if (row == player2Row && col == player2Col) {
+            player = (gameStatus == GameStatus.PLAYER2_WON) ? PLAYER2_VICTORY : PLAYER2_CHARACTER;
+        }
+        return (boardState.getCellState(row, col) << 4) | player;
+    }
+    
+    /**
+     * Request a repaint of a single cell including its highlight margin.
+     *
+     * @param row The row of the cell
+     * @param col The column of the cell
+     */
+    private void repaintCell(int row, int col) {
+        if (row < 0 || row >= BOARD_ROWS || col < 0 || col >= BOARD_COLS) {
+            return;
+        }
+        repaint(boardX + col * cellSize - HIGHLIGHT_MARGIN, boardY + row * cellSize - HIGHLIGHT_MARGIN,
+                cellSize + 2 * HIGHLIGHT_MARGIN + 1, cellSize + 2 * HIGHLIGHT_MARGIN + 1);
     }
     
     /**
@@ -70,6 +198,65 @@ public class BoardPanel extends JPanel {
         updateBoard(newBoardState, GameStatus.ONGOING);
     }
     
+    /**
+     * Shade the tiles that can be removed by their analysis score.
+     * Cells whose score did not change are not repainted.
+     *
+     * @param scores The score per cell (index row * columns + column), higher is better for the
+     *               player to move; NaN for cells that are no candidate; null to remove the overlay
+     */
+    public void setRemovalScores(double[] scores) {
+        double[] oldScores = removalScores;
+        double[] oldDisplay = new double[BOARD_ROWS * BOARD_COLS];
+        for (int i = 0; i < oldDisplay.length; i++) {
+            oldDisplay[i] = getShadingLevel(i);
+        }
+        
+        removalScores = (scores == null) ? null : scores.clone();
+        minRemovalScore = Double.POSITIVE_INFINITY;
+        maxRemovalScore = Double.NEGATIVE_INFINITY;
+        if (removalScores != null) {
+            for (double score : removalScores) {
+                if (!Double.isNaN(score) && !Double.isInfinite(score)) {
+                    minRemovalScore = Math.min(minRemovalScore, score);
+                    maxRemovalScore = Math.max(maxRemovalScore, score);
+                }
+            }
+        }
+        
+        if (oldScores == null && removalScores == null) {
+            return;
+        }
+        for (int i = 0; i < oldDisplay.length; i++) {
+            if (Double.compare(oldDisplay[i], getShadingLevel(i)) != 0) {
+                repaintCell(i / BOARD_COLS, i % BOARD_COLS);
+            }
+        }
+    }
+    
+    /**
+     * Get how good removing a tile is compared to the other candidates.
+     *
+     * @param index The cell index (row * columns + column)
+     * @return 0 for the worst to 1 for the best candidate, NaN if the cell is no candidate
+     */
+    private double getShadingLevel(int index) {
+        if (removalScores == null || Double.isNaN(removalScores[index])) {
+            return Double.NaN;
+        }
+        double score = removalScores[index];
+        if (score == Double.POSITIVE_INFINITY) {
+            return 1.0;
+        }
+        if (score == Double.NEGATIVE_INFINITY) {
+            return 0.0;
+        }
+        if (maxRemovalScore <= minRemovalScore) {
+            return 0.5;
+        }
+        return (score - minRemovalScore) / (maxRemovalScore - minRemovalScore);
+    }
+    
     /**
      * Highlight a specific cell.
      *
@@ -77,18 +264,22 @@ public class BoardPanel extends JPanel {
      * @param col The column of the cell to highlight
      */
     public void highlightCell(int row, int col) {
+        if (row == highlightedRow && col == highlightedCol) {
+            return;
+        }
+        repaintCell(highlightedRow, highlightedCol);
         highlightedRow = row;
         highlightedCol = col;
-        repaint();
+        repaintCell(row, col);
     }
     
     /**
      * Clear any highlighted cell.
      */
     public void clearHighlight() {
+        repaintCell(highlightedRow, highlightedCol);
         highlightedRow = -1;
         highlightedCol = -1;
-        repaint();
     }
     
     @Override
@@ -103,10 +294,24 @@ public class BoardPanel extends JPanel {
      * @param g The graphics context to draw with
      */
     private void drawBoard(Graphics g) {
+        // Only draw the cells inside the area being repainted
+        int firstRow = 0, lastRow = BOARD_ROWS - 1;
+        int firstCol = 0, lastCol = BOARD_COLS - 1;
+        Rectangle clip = g.getClipBounds();
+        if (clip != null) {
+            firstRow = Math.max(0, Math.floorDiv(clip.y - boardY - HIGHLIGHT_MARGIN, cellSize));
+            lastRow = Math.min(BOARD_ROWS - 1, Math.floorDiv(clip.y + clip.height - boardY, cellSize));
+            firstCol = Math.max(0, Math.floorDiv(clip.x - boardX - HIGHLIGHT_MARGIN, cellSize));
+            lastCol = Math.min(BOARD_COLS - 1, Math.floorDiv(clip.x + clip.width - boardX, cellSize));
+        }
+        
+        // Sprites are pre-scaled to device pixels, so HiDPI screens get full detail
+        double deviceScale = ((Graphics2D) g).getTransform().getScaleX();
+        
         // Draw the game board with current state
-        for (int row = 0; row < BOARD_ROWS; row++) {
-            for (int col = 0; col < BOARD_COLS; col++) {
-                drawCell(g, row, col, boardState[row][col], row, col);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int col = firstCol; col <= lastCol; col++) {
+                drawCell(g, row, col, boardState.getCellState(row, col), row, col, deviceScale);
             }
         }
     }
@@ -120,10 +325,11 @@ public class BoardPanel extends JPanel {
      * @param cellState The state of the cell
      * @param boardRow The actual row on the board
      * @param boardCol The actual column on the board
+     * @param deviceScale The scale from panel coordinates to device pixels
      */
-    private void drawCell(Graphics g, int row, int col, int cellState, int boardRow, int boardCol) {
-        int x = col * CELL_SIZE;
-        int y = row * CELL_SIZE;
+    private void drawCell(Graphics g, int row, int col, int cellState, int boardRow, int boardCol, double deviceScale) {
+        int x = boardX + col * cellSize;
+        int y = boardY + row * cellSize;
         
         // Draw cell background image
         java.awt.Image backgroundImage = null;
@@ -145,9 +351,14 @@ public class BoardPanel extends JPanel {
                 break;
         }
         
-        // Draw the background image if available
-        if (backgroundImage != null) {
-            g.drawImage(backgroundImage, x, y, CELL_SIZE, CELL_SIZE, null);
+        // Draw the background image if available, pre-scaled to the cell size
+        drawSprite(g, backgroundImage, x, y, cellSize, deviceScale);
+        
+        // Shade removal candidates from red (worst) to green (best)
+        double level = getShadingLevel(boardRow * BOARD_COLS + boardCol);
+        if (!Double.isNaN(level)) {
+            g.setColor(new Color((int) Math.round(255 * (1 - level)), (int) Math.round(255 * level), 0, SHADING_ALPHA));
+            g.fillRect(x, y, cellSize, cellSize);
         }
         
         // Draw highlight if this is the selected cell
@@ -156,13 +367,13 @@ public class BoardPanel extends JPanel {
             Stroke originalStroke = g2d.getStroke();
             g2d.setStroke(new BasicStroke(3));
             g2d.setColor(Color.YELLOW);
-            g2d.drawRect(x, y, CELL_SIZE, CELL_SIZE);
+            g2d.drawRect(x, y, cellSize, cellSize);
             g2d.setStroke(originalStroke);
         }
         
         // Draw cell border
         g.setColor(Color.BLACK);
-        g.drawRect(x, y, CELL_SIZE, CELL_SIZE);
+        g.drawRect(x, y, cellSize, cellSize);
         
         // Draw player positions with images
         java.awt.Image playerImage = null;
@@ -185,10 +396,33 @@ public class BoardPanel extends JPanel {
         // Draw the player image if available
         if (playerImage != null) {
             // Scale the image to fit within the cell (slightly smaller than cell size)
-            int imageSize = CELL_SIZE - 10; // 10 pixels padding
-            int imageX = x + 5; // 5 pixels padding on left
-            int imageY = y + 5; // 5 pixels padding on top
-            g.drawImage(playerImage, imageX, imageY, imageSize, imageSize, null);
+            int padding = Math.max(1, cellSize * 5 / PREFERRED_CELL_SIZE); // 5 pixels at full size
+            int imageSize = cellSize - 2 * padding;
+            drawSprite(g, playerImage, x + padding, y + padding, imageSize, deviceScale);
+        }
+    }
+    
+    /**
+     * Draw a sprite from the pre-scaled image cache.
+     * The cached copy has the size in device pixels, so drawing it at the logical size is a 1:1 blit.
+     *
+     * @param g The graphics context to draw with
+     * @param image The source image
+     * @param x The x position in panel coordinates
+     * @param y The y position in panel coordinates
+     * @param size The width and height in panel coordinates
+     * @param deviceScale The scale from panel coordinates to device pixels
+     */
+    private void drawSprite(Graphics g, Image image, int x, int y, int size, double deviceScale) {
+        int devicePixels = (int) Math.round(size * deviceScale);
+        Image scaled = ImageLoader.getScaledImage(image, devicePixels, devicePixels, getGraphicsConfiguration());
+        if (scaled == null) {
+            return;
+        }
+        if (devicePixels == size) {
+            g.drawImage(scaled, x, y, null);
+        } else {
+            g.drawImage(scaled, x, y, size, size, null);
         }
     }
     
@@ -198,8 +432,15 @@ public class BoardPanel extends JPanel {
     private class BoardMouseListener extends MouseAdapter {
         @Override
         public void mouseClicked(MouseEvent e) {
-            int col = e.getX() / CELL_SIZE;
-            int row = e.getY() / CELL_SIZE;
+            // Clicks on the margin around the centered board are ignored
+            if (e.getX() < boardX || e.getY() < boardY) {
+                return;
+            }
+            int col = (e.getX() - boardX) / cellSize;
+            int row = (e.getY() - boardY) / cellSize;
+            if (row >= BOARD_ROWS || col >= BOARD_COLS) {
+                return;
+            }
             
             // Notify the GUI about the click
             gui.handleBoardClick(row, col);
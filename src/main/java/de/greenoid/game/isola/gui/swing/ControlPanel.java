@@ -13,6 +13,15 @@ public class ControlPanel extends JPanel {
     private JLabel statusLabel;
     private JButton newGameButton;
     private JButton exitButton;
+    private JButton hintButton;
+    private JToggleButton analyzeButton;
+    private JButton undoButton;
+    private JButton redoButton;
+    private JSlider historySlider;
+    private JLabel plyLabel;
+    // Set while the slider follows the game, so only the user's changes jump in the history
+    private boolean updatingHistory;
+    private final SwingGui gui;
     private ActionListener buttonListener;
     
     /**
@@ -21,6 +30,7 @@ public class ControlPanel extends JPanel {
      * @param gui The SwingGui instance to notify of user interactions
      */
     public ControlPanel(SwingGui gui) {
+        this.gui = gui;
         initializeComponents();
     }
     
@@ -37,6 +47,38 @@ public class ControlPanel extends JPanel {
         newGameButton.setActionCommand("New Game");
         add(newGameButton);
         
+        hintButton = new JButton("Hint");
+        hintButton.setActionCommand("Hint");
+        add(hintButton);
+        
+        analyzeButton = new JToggleButton("Analyze");
+        analyzeButton.setActionCommand("Analyze");
+        add(analyzeButton);
+        
+        undoButton = new JButton("Undo");
+        undoButton.setActionCommand("Undo");
+        undoButton.setEnabled(false);
+        add(undoButton);
+        
+        redoButton = new JButton("Redo");
+        redoButton.setActionCommand("Redo");
+        redoButton.setEnabled(false);
+        add(redoButton);
+        
+        // Dragging the slider shows the positions of the game, one per turn
+        historySlider = new JSlider(0, 0, 0);
+        historySlider.setToolTipText("Move history");
+        historySlider.setEnabled(false);
+        historySlider.addChangeListener(e -> {
+            if (!updatingHistory) {
+                gui.handleJumpToPly(historySlider.getValue());
+            }
+        });
+        add(historySlider);
+        
+        plyLabel = new JLabel("Ply 0/0");
+        add(plyLabel);
+        
         exitButton = new JButton("Exit");
         exitButton.setActionCommand("Exit");
         add(exitButton);
@@ -50,9 +92,44 @@ public class ControlPanel extends JPanel {
     public void setButtonListener(ActionListener listener) {
         this.buttonListener = listener;
         newGameButton.addActionListener(listener);
+        hintButton.addActionListener(listener);
+        analyzeButton.addActionListener(listener);
+        undoButton.addActionListener(listener);
+        redoButton.addActionListener(listener);
         exitButton.addActionListener(listener);
     }
     
+    /**
+     * Check whether the analysis mode is switched on.
+     *
+     * @return true if the Analyze button is selected
+     */
+    public boolean isAnalyzeSelected() {
+        return analyzeButton.isSelected();
+    }
+    
+    /**
+     * Update the history controls with the position in the move history.
+     *
+     * @param ply The number of turns played up to the current position
+     * @param length The number of turns in the move history
+     * @param canUndo true if a turn can be taken back
+     * @param canRedo true if a turn taken back can be played again
+     */
+    public void updateHistory(int ply, int length, boolean canUndo, boolean canRedo) {
+        updatingHistory = true;
+        try {
+            historySlider.setMaximum(length);
+            historySlider.setValue(ply);
+            historySlider.setEnabled(length > 0);
+        } finally {
+            updatingHistory = false;
+        }
+        undoButton.setEnabled(canUndo);
+        redoButton.setEnabled(canRedo);
+        plyLabel.setText("Ply " + ply + "/" + length);
+    }
+    
     /**
      * Update the status display with the current game state.
      * 
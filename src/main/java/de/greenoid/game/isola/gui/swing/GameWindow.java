@@ -14,15 +14,34 @@ public class GameWindow extends JFrame {
      * @param controlPanel The panel to display game controls
      */
     public GameWindow(JPanel boardPanel, JPanel controlPanel) {
+        this(boardPanel, controlPanel, null);
+    }
+    
+    /**
+     * Constructor to create a GameWindow with board, control and analysis panels.
+     *
+     * @param boardPanel The panel to display the game board
+     * @param controlPanel The panel to display game controls
+     * @param analysisPanel The panel to display the engine analysis above the board, or null
+     */
+    public GameWindow(JPanel boardPanel, JPanel controlPanel, JPanel analysisPanel) {
         setTitle("Isola Game");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLayout(new BorderLayout());
         
         add(boardPanel, BorderLayout.CENTER);
         add(controlPanel, BorderLayout.SOUTH);
+        if (analysisPanel != null) {
+            add(analysisPanel, BorderLayout.NORTH);
+        }
         
         pack();
-        setResizable(false);
+        
+        // The board scales with the window; keep the cells large enough to click
+        Dimension minimumBoard = boardPanel.getMinimumSize();
+        setMinimumSize(new Dimension(minimumBoard.width + getWidth() - boardPanel.getWidth(),
+                minimumBoard.height + getHeight() - boardPanel.getHeight()));
+        setResizable(true);
         setLocationRelativeTo(null);
     }
 }
\ No newline at end of file
@@ -8,11 +8,23 @@ import de.greenoid.game.isola.IsolaBoard;
 import de.greenoid.game.isola.ComputerPlayer;
 import de.greenoid.game.isola.IsolaMove;
 import de.greenoid.game.isola.IsolaGame;
+import de.greenoid.game.isola.GameStatus;
+import de.greenoid.game.isola.Position;
+import de.greenoid.game.isola.ScoredMove;
+import de.greenoid.game.isola.SearchBudget;
+import de.greenoid.game.isola.SearchEngine;
+import de.greenoid.game.isola.SearchListener;
+import de.greenoid.game.isola.SearchProgress;
+import de.greenoid.game.isola.gui.util.ImageLoader;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Main Swing GUI implementation.
@@ -21,10 +33,24 @@ public class SwingGui extends GuiAdapter implements ActionListener {
     private GameWindow gameWindow;
     private BoardPanel boardPanel;
     private ControlPanel controlPanel;
+    private AnalysisPanel analysisPanel;
     
     // Game state tracking
     private boolean movePhase = true; // true for move phase, false for remove tile phase
     
+    // Background analysis during the human's turn; in analysis mode the timer shows its latest progress
+    private static final int ANALYSIS_DISPLAY_INTERVAL_MILLIS = 250;
+    private ComputerPlayer analysisPlayer;
+    private ExecutorService analysisExecutor;
+    private Timer analysisTimer;
+    private AnalysisRun analysisRun;
+    private final AtomicReference<SearchProgress> latestProgress = new AtomicReference<>();
+    
+    // Analysis results of the positions met so far, the hint is served from here
+    private static final int ANALYSIS_CACHE_CAPACITY = 1024;
+    private final AnalysisCache analysisCache = new AnalysisCache(ANALYSIS_CACHE_CAPACITY);
+    private Position turnPosition;
+    
     /**
      * Constructor to create a SwingGui with a GuiController.
      *
@@ -39,9 +65,17 @@ public class SwingGui extends GuiAdapter implements ActionListener {
      * Initialize the GUI components.
      */
     private void initializeComponents() {
+        // Decode the sprites in the background while the window is being built
+        ImageLoader.preloadImages();
+        
         boardPanel = new BoardPanel(this);
         controlPanel = new ControlPanel(this);
-        gameWindow = new GameWindow(boardPanel, controlPanel);
+        analysisPanel = new AnalysisPanel();
+        analysisPanel.setVisible(false);
+        gameWindow = new GameWindow(boardPanel, controlPanel, analysisPanel);
+        
+        // Progress is only rendered at the timer rate, however often the search reports it
+        analysisTimer = new Timer(ANALYSIS_DISPLAY_INTERVAL_MILLIS, e -> showAnalysisProgress());
         
         // Register this as action listener for control panel buttons
         controlPanel.setButtonListener(this);
@@ -51,13 +85,18 @@ public class SwingGui extends GuiAdapter implements ActionListener {
     public void updateGameState(IsolaGameState state) {
         boardPanel.updateBoard(state.getBoardState(), state.getGameStatus());
         controlPanel.updateStatus(state);
+        controlPanel.updateHistory(controller.getPly(), controller.getHistoryLength(),
+                                   controller.canUndo(), controller.canRedo());
         
         // Update internal state tracking
         movePhase = (state.getGamePhase() == GamePhase.MOVE_PLAYER);
         
-        // Check if it's computer player's turn (P2)
+        updateAnalysis(state);
+        
+        // Check if it's computer player's turn (P2); while the user browses the history it waits
         if (state.getCurrentPlayer() == IsolaBoard.PLAYER2 &&
-            state.getGameStatus() == de.greenoid.game.isola.GameStatus.ONGOING) {
+            state.getGameStatus() == de.greenoid.game.isola.GameStatus.ONGOING &&
+            !controller.canRedo()) {
             // Use SwingUtilities.invokeLater to ensure UI updates are processed first
             SwingUtilities.invokeLater(new Runnable() {
                 public void run() {
@@ -93,6 +132,10 @@ public class SwingGui extends GuiAdapter implements ActionListener {
      */
     public void handleBoardClick(int row, int col) {
         IsolaGameState currentState = controller.getGameState();
+        if (currentState.getCurrentPlayer() == IsolaBoard.PLAYER2) {
+            // The computer's turn, e.g. while browsing the history
+            return;
+        }
         
         if (movePhase) {
             // Move phase - directly use clicked position as destination
@@ -223,8 +266,7 @@ public class SwingGui extends GuiAdapter implements ActionListener {
         }
         
         // Check if destination is not an empty tile
-        int[][] board = state.getBoardState().getBoard();
-        if (board[toRow][toCol] == 0) {
+        if (state.getBoardState().getCellState(toRow, toCol) == IsolaBoard.EMPTY) {
             return false;
         }
         
@@ -254,8 +296,7 @@ public class SwingGui extends GuiAdapter implements ActionListener {
         }
         
         // Check if tile is a regular tile (not a starting position)
-        int[][] board = state.getBoardState().getBoard();
-        if (board[row][col] != 1) {
+        if (state.getBoardState().getCellState(row, col) != IsolaBoard.TILE) {
             return false;
         }
         
@@ -270,12 +311,184 @@ public class SwingGui extends GuiAdapter implements ActionListener {
             case "New Game":
                 handleNewGame();
                 break;
+            case "Hint":
+                handleHint();
+                break;
+            case "Analyze":
+                handleAnalyze();
+                break;
+            case "Undo":
+                handleUndo();
+                break;
+            case "Redo":
+                handleRedo();
+                break;
             case "Exit":
                 handleExit();
                 break;
         }
     }
     
+    /**
+     * Handle switching the analysis mode on or off.
+     * The background analysis always runs during the human's turn, this only toggles its display.
+     */
+    public void handleAnalyze() {
+        boolean enabled = controlPanel.isAnalyzeSelected();
+        analysisPanel.setVisible(enabled);
+        gameWindow.revalidate();
+        if (enabled) {
+            if (analysisRun != null && analysisRun.progress != null) {
+                latestProgress.compareAndSet(null, analysisRun.progress);
+            }
+            analysisTimer.start();
+        } else {
+            analysisTimer.stop();
+            boardPanel.setRemovalScores(null);
+        }
+    }
+    
+    /**
+     * Handle a hint request: suggest the move, or the tile to remove, from the background analysis.
+     */
+    public void handleHint() {
+        IsolaGameState state = controller.getGameState();
+        if (state.getCurrentPlayer() != IsolaBoard.PLAYER1 || state.getGameStatus() != GameStatus.ONGOING) {
+            showMessage("Hints are only available during your turn.");
+            return;
+        }
+        
+        // Completed analyses are cached; otherwise use the deepest iteration finished so far
+        SearchProgress progress = (turnPosition == null) ? null : analysisCache.get(turnPosition);
+        if (progress == null && analysisRun != null) {
+            progress = analysisRun.progress;
+        }
+        if (progress == null || progress.getPrincipalVariation().isEmpty()) {
+            showMessage("The computer is still analyzing, please try again in a moment.");
+            return;
+        }
+        
+        IsolaMove move = progress.getPrincipalVariation().get(0);
+        if (movePhase) {
+            boardPanel.highlightCell(move.moveToRow, move.moveToCol);
+            showMessage("Hint: move to (" + move.moveToRow + "," + move.moveToCol + "), then remove the tile at (" +
+                        move.removeTileRow + "," + move.removeTileCol + ").");
+        } else if (state.getBoardState().getPlayer1Row() == move.moveToRow &&
+                   state.getBoardState().getPlayer1Col() == move.moveToCol) {
+            boardPanel.highlightCell(move.removeTileRow, move.removeTileCol);
+            showMessage("Hint: remove the tile at (" + move.removeTileRow + "," + move.removeTileCol + ").");
+        } else {
+            showMessage("No hint available, the computer would have moved elsewhere.");
+        }
+    }
+    
+    /**
+     * Start analyzing the position when it is the human's turn to move,
+     * and stop the analysis when the position is no longer current.
+     * Positions analyzed before are served from the cache without a new search.
+     *
+     * @param state The current game state
+     */
+    private void updateAnalysis(IsolaGameState state) {
+        boolean analyze = state.getCurrentPlayer() == IsolaBoard.PLAYER1 &&
+                          state.getGamePhase() == GamePhase.MOVE_PLAYER &&
+                          state.getGameStatus() == GameStatus.ONGOING;
+        if (analysisRun != null && (!analyze || analysisRun.version != state.getVersion())) {
+            analysisRun.stopped = true;
+            analysisRun = null;
+            latestProgress.set(null);
+            analysisPanel.clear();
+            boardPanel.setRemovalScores(null);
+        }
+        if (!analyze || analysisRun != null) {
+            return;
+        }
+        
+        if (analysisPlayer == null) {
+            analysisPlayer = new ComputerPlayer(5);
+            analysisPlayer.setVerbose(false);
+            analysisExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "analysis");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        Position position = state.getPosition();
+        turnPosition = position;
+        AnalysisRun run = new AnalysisRun(state.getVersion(), position);
+        analysisRun = run;
+        
+        SearchProgress cached = analysisCache.get(position);
+        if (cached != null) {
+            run.searchProgress(cached);
+            return;
+        }
+        analysisExecutor.submit(() -> {
+            if (!run.stopped) {
+                analysisPlayer.search(position.toBoard(), IsolaBoard.PLAYER1, SearchBudget.UNLIMITED, run);
+            }
+        });
+    }
+    
+    /**
+     * Show the latest analysis progress, called by the analysis timer on the EDT.
+     */
+    private void showAnalysisProgress() {
+        SearchProgress progress = latestProgress.getAndSet(null);
+        if (progress == null) {
+            return;
+        }
+        analysisPanel.showProgress(progress);
+        
+        // Score each removable tile by the best root move removing it. Bounds of moves cut off by the
+        // search say nothing about how good the removal is, so those tiles stay unshaded
+        double[] removalScores = new double[IsolaBoard.BOARD_ROWS * IsolaBoard.BOARD_COLS];
+        Arrays.fill(removalScores, Double.NaN);
+        for (ScoredMove scoredMove : progress.getRootScores()) {
+            if (!scoredMove.isExact()) {
+                continue;
+            }
+            IsolaMove move = scoredMove.getMove();
+            int index = move.removeTileRow * IsolaBoard.BOARD_COLS + move.removeTileCol;
+            if (Double.isNaN(removalScores[index]) || scoredMove.getValue() > removalScores[index]) {
+                removalScores[index] = scoredMove.getValue();
+            }
+        }
+        boardPanel.setRemovalScores(removalScores);
+    }
+    
+    /**
+     * One background analysis of a position; it keeps the latest progress, caches every
+     * completed iteration and stops as soon as the position it analyzes is no longer current.
+     */
+    private class AnalysisRun implements SearchListener {
+        private final long version;
+        private final Position position;
+        private volatile boolean stopped;
+        private volatile SearchProgress progress;
+        
+        AnalysisRun(long version, Position position) {
+            this.version = version;
+            this.position = position;
+        }
+        
+        @Override
+        public void searchProgress(SearchProgress newProgress) {
+            if (newProgress.getDepth() > 0 && (progress == null || newProgress.getDepth() > progress.getDepth())) {
+                analysisCache.put(position, newProgress);
+            }
+            if (!stopped) {
+                progress = newProgress;
+                latestProgress.set(newProgress);
+            }
+        }
+        
+        @Override
+        public boolean isStopRequested() {
+            return stopped;
+        }
+    }
+    
     /**
      * Handle a new game event.
      */
@@ -286,6 +499,49 @@ public class SwingGui extends GuiAdapter implements ActionListener {
         updateGameState(controller.getGameState());
     }
     
+    /**
+     * Handle an undo request: take back turns until it is the human's turn again.
+     */
+    public void handleUndo() {
+        boolean undone = controller.undo();
+        // Also take back the computer's reply
+        while (undone && controller.getGameState().getCurrentPlayer() == IsolaBoard.PLAYER2) {
+            undone = controller.undo();
+        }
+        showRestoredPosition();
+    }
+    
+    /**
+     * Handle a redo request: play the turns taken back again until it is the human's turn.
+     */
+    public void handleRedo() {
+        boolean redone = controller.redo();
+        // Also play the computer's reply
+        while (redone && controller.getGameState().getCurrentPlayer() == IsolaBoard.PLAYER2 &&
+               controller.getGameState().getGameStatus() == GameStatus.ONGOING) {
+            redone = controller.redo();
+        }
+        showRestoredPosition();
+    }
+    
+    /**
+     * Handle a jump in the move history, e.g. from the history slider.
+     *
+     * @param ply The number of turns of the position to show
+     */
+    public void handleJumpToPly(int ply) {
+        if (ply != controller.getPly() || controller.getCurrentGamePhase() != GamePhase.MOVE_PLAYER) {
+            controller.jumpToPly(ply);
+            showRestoredPosition();
+        }
+    }
+    
+    private void showRestoredPosition() {
+        movePhase = true;
+        boardPanel.clearHighlight();
+        updateGameState(controller.getGameState());
+    }
+    
     /**
      * Handle an exit event.
      */
@@ -306,15 +562,15 @@ public class SwingGui extends GuiAdapter implements ActionListener {
      * Handle computer player move.
      */
     private void handleComputerMove() {
-        // Create a computer player instance
-        ComputerPlayer computerPlayer = new ComputerPlayer(5);
-        
         // Get the current game state
         IsolaGameState currentState = controller.getGameState();
         
         // Get the underlying IsolaGame instance from the controller
         IsolaGame game = controller.getGame();
         
+        // The game keeps its computer player between moves, so the search reuses its tables and tree
+        SearchEngine computerPlayer = game.getComputerPlayer();
+        
         // Get the computer's move
         IsolaMove move = computerPlayer.findBestMove(game.getBoard(), IsolaBoard.PLAYER2);
         
@@ -356,8 +612,5 @@ public class SwingGui extends GuiAdapter implements ActionListener {
         
         // Update the display
         updateGameState(controller.getGameState());
-        
-        // Shutdown the computer player
-        computerPlayer.shutdown();
     }
 }
\ No newline at end of file
@@ -0,0 +1,69 @@
+package de.greenoid.game.isola.gui.util;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Build-time tool that packs the tile and character sprites into one atlas image per
+ * resolution, in the layout expected by {@link ImageLoader}.
+ *
+ * The 128px atlas is built from {@code tiles/128px}. Larger atlases are downscaled from
+ * the {@code tiles/1024px} originals, which themselves are not shipped in the jar.
+ * Usage: AtlasPacker &lt;tiles source directory&gt; &lt;output directory&gt;
+ */
+public class AtlasPacker {
+
+    /**
+     * Private constructor to prevent instantiation
+     */
+    private AtlasPacker() {
+        // Private constructor to prevent instantiation
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: AtlasPacker <tiles source directory> <output directory>");
+            System.exit(1);
+        }
+        File sourceDir = new File(args[0]);
+        File outputDir = new File(args[1]);
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IOException("Could not create output directory " + outputDir);
+        }
+
+        for (int spriteSize : ImageLoader.ATLAS_SPRITE_SIZES) {
+            File spriteDir = new File(sourceDir, spriteSize <= 128 ? "128px" : "1024px");
+            if (!spriteDir.isDirectory()) {
+                System.err.println("Skipping " + spriteSize + "px atlas, no sources in " + spriteDir);
+                continue;
+            }
+            File atlasFile = new File(outputDir, "atlas-" + spriteSize + ".png");
+            ImageIO.write(pack(spriteDir, spriteSize), "png", atlasFile);
+            System.out.println("Sprite atlas written to " + atlasFile);
+        }
+    }
+
+    private static BufferedImage pack(File spriteDir, int spriteSize) throws IOException {
+        int rows = (ImageLoader.SPRITE_NAMES.length + ImageLoader.ATLAS_COLUMNS - 1) / ImageLoader.ATLAS_COLUMNS;
+        BufferedImage atlas = new BufferedImage(ImageLoader.ATLAS_COLUMNS * spriteSize, rows * spriteSize,
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = atlas.createGraphics();
+
+        for (int i = 0; i < ImageLoader.SPRITE_NAMES.length; i++) {
+            File spriteFile = new File(spriteDir, ImageLoader.SPRITE_NAMES[i]);
+            BufferedImage sprite = ImageIO.read(spriteFile);
+            if (sprite == null) {
+                throw new IOException("Could not read sprite " + spriteFile);
+            }
+            BufferedImage scaled = ImageLoader.createScaledImage(sprite, spriteSize, spriteSize, null);
+            g2d.drawImage(scaled, (i % ImageLoader.ATLAS_COLUMNS) * spriteSize,
+                    (i / ImageLoader.ATLAS_COLUMNS) * spriteSize, null);
+        }
+
+        g2d.dispose();
+        return atlas;
+    }
+}
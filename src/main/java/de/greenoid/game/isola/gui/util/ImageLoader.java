@@ -1,18 +1,39 @@
 package de.greenoid.game.isola.gui.util;
 
 import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
 import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.net.URL;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Utility class for loading and managing game tile images.
+ *
+ * Besides the decoded source images, the loader keeps copies scaled to the sizes the
+ * board actually draws, created as compatible images of the target screen so that
+ * Java2D can keep them in video memory. Painting then becomes a plain blit without
+ * any per-frame scaling.
+ *
+ * All sprites are packed into one atlas per resolution at build time (see
+ * {@link AtlasPacker}). {@link #preloadImages()} decodes the atlas matching the
+ * display scale in the background, so the first paint does not stall on PNG decoding.
  */
 public class ImageLoader {
     // Map to cache loaded images
-    private static final Map<String, Image> imageCache = new HashMap<>();
+    private static final Map<String, Image> imageCache = new ConcurrentHashMap<>();
+    
+    // Map to cache images pre-scaled for a size and screen
+    private static final Map<ScaledImageKey, Image> scaledImageCache = new ConcurrentHashMap<>();
     
     // Image file paths
     private static final String IMAGE_PATH = "/tiles/128px/";
@@ -29,6 +50,20 @@ public class ImageLoader {
     private static final String PLAYER1_VICTORY = "Joyful Castaway Victory Red.png";
     private static final String PLAYER2_VICTORY = "Joyful Castaway Victory Black.png";
     
+    // Sprites in the order they are packed into the atlas, row by row
+    static final String[] SPRITE_NAMES = {
+        NORMAL_TILE, BLOCKED_TILE, PLAYER1_BASE, PLAYER2_BASE,
+        PLAYER1_CHARACTER, PLAYER2_CHARACTER, PLAYER1_VICTORY, PLAYER2_VICTORY
+    };
+    static final int ATLAS_COLUMNS = 4;
+    
+    // Sprite sizes of the generated atlases: 128px for normal and 256px for HiDPI displays
+    static final int[] ATLAS_SPRITE_SIZES = {128, 256};
+    private static final String ATLAS_PATH = "/tiles/atlas-%d.png";
+    
+    // Background decoding started by preloadImages(), null if not started
+    private static volatile CompletableFuture<Void> preload;
+    
     /**
      * Private constructor to prevent instantiation
      */
@@ -36,6 +71,72 @@ public class ImageLoader {
         // Private constructor to prevent instantiation
     }
     
+    /**
+     * Start decoding all sprites in the background, using the atlas resolution that
+     * matches the scale of the default screen. Calling this more than once has no effect.
+     */
+    public static synchronized void preloadImages() {
+        if (preload != null) {
+            return;
+        }
+        int spriteSize = chooseSpriteSize(getDisplayScale());
+        preload = CompletableFuture.runAsync(() -> loadSprites(spriteSize));
+    }
+    
+    private static double getDisplayScale() {
+        if (GraphicsEnvironment.isHeadless()) {
+            return 1.0;
+        }
+        return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                .getDefaultConfiguration().getDefaultTransform().getScaleX();
+    }
+    
+    private static int chooseSpriteSize(double displayScale) {
+        int wanted = (int) Math.ceil(ATLAS_SPRITE_SIZES[0] * displayScale);
+        for (int size : ATLAS_SPRITE_SIZES) {
+            if (size >= wanted) {
+                return size;
+            }
+        }
+        return ATLAS_SPRITE_SIZES[ATLAS_SPRITE_SIZES.length - 1];
+    }
+    
+    /**
+     * Fill the cache from the sprite atlas, falling back to the smallest atlas and
+     * finally to decoding the single images in parallel.
+     */
+    private static void loadSprites(int spriteSize) {
+        if (loadAtlas(spriteSize) || (spriteSize != ATLAS_SPRITE_SIZES[0] && loadAtlas(ATLAS_SPRITE_SIZES[0]))) {
+            return;
+        }
+        Arrays.stream(SPRITE_NAMES).parallel().forEach(name -> decodeImage(IMAGE_PATH + name));
+    }
+    
+    private static boolean loadAtlas(int spriteSize) {
+        String atlasPath = String.format(ATLAS_PATH, spriteSize);
+        URL atlasURL = ImageLoader.class.getResource(atlasPath);
+        if (atlasURL == null) {
+            return false;
+        }
+        try {
+            BufferedImage atlas = ImageIO.read(atlasURL);
+            int rows = (SPRITE_NAMES.length + ATLAS_COLUMNS - 1) / ATLAS_COLUMNS;
+            if (atlas == null || atlas.getWidth() != ATLAS_COLUMNS * spriteSize || atlas.getHeight() != rows * spriteSize) {
+                System.err.println("Unexpected sprite atlas layout: " + atlasPath);
+                return false;
+            }
+            for (int i = 0; i < SPRITE_NAMES.length; i++) {
+                BufferedImage sprite = atlas.getSubimage((i % ATLAS_COLUMNS) * spriteSize,
+                        (i / ATLAS_COLUMNS) * spriteSize, spriteSize, spriteSize);
+                imageCache.putIfAbsent(IMAGE_PATH + SPRITE_NAMES[i], sprite);
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Could not load sprite atlas: " + atlasPath);
+            return false;
+        }
+    }
+    
     /**
      * Load an image from the resources folder.
      * 
@@ -44,16 +145,41 @@ public class ImageLoader {
      */
     private static Image loadImage(String imagePath) {
         // Check if image is already cached
-        if (imageCache.containsKey(imagePath)) {
-            return imageCache.get(imagePath);
+        Image cachedImage = imageCache.get(imagePath);
+        if (cachedImage != null) {
+            return cachedImage;
         }
         
+        // Wait for a running preload instead of decoding the same image twice
+        CompletableFuture<Void> pending = preload;
+        if (pending != null) {
+            pending.join();
+            cachedImage = imageCache.get(imagePath);
+            if (cachedImage != null) {
+                return cachedImage;
+            }
+        }
+        return decodeImage(imagePath);
+    }
+    
+    /**
+     * Decode a single image from the resources folder and cache it.
+     * 
+     * @param imagePath The path to the image file
+     * @return The decoded Image, or null if decoding failed
+     */
+    private static Image decodeImage(String imagePath) {
         try {
             URL imageURL = ImageLoader.class.getResource(imagePath);
             if (imageURL != null) {
                 Image image = ImageIO.read(imageURL);
-                imageCache.put(imagePath, image);
-                return image;
+                if (image == null) {
+                    System.err.println("Unsupported image format: " + imagePath);
+                    return null;
+                }
+                // Another thread may have loaded the image in the meantime; keep the first one
+                Image previous = imageCache.putIfAbsent(imagePath, image);
+                return (previous != null) ? previous : image;
             } else {
                 System.err.println("Could not find image: " + imagePath);
                 return null;
@@ -146,9 +272,110 @@ public class ImageLoader {
      * @return The scaled image, or null if the input image was null
      */
     public static Image scaleImage(Image image, int width, int height) {
-        if (image == null) {
+        return getScaledImage(image, width, height, null);
+    }
+    
+    /**
+     * Get a copy of an image scaled to the given size for the given screen.
+     * The copy is created once and then served from the cache.
+     * 
+     * @param image The image to scale
+     * @param width The target width
+     * @param height The target height
+     * @param graphicsConfiguration The screen the image is drawn on, or null for the default screen
+     * @return The scaled image, or null if the input image was null
+     */
+    public static Image getScaledImage(Image image, int width, int height, GraphicsConfiguration graphicsConfiguration) {
+        if (image == null || width <= 0 || height <= 0) {
+            return null;
+        }
+        ScaledImageKey key = new ScaledImageKey(image, width, height, graphicsConfiguration);
+        return scaledImageCache.computeIfAbsent(key,
+                k -> createScaledImage(image, width, height, graphicsConfiguration));
+    }
+    
+    /**
+     * Drop all pre-scaled images, e.g. after the board was resized or moved to another screen.
+     */
+    public static void invalidateScaledImages() {
+        scaledImageCache.clear();
+    }
+    
+    /**
+     * Scale an image into a new compatible image.
+     * Large reductions are done in halving steps, which keeps bilinear filtering
+     * sharp without the cost of {@link Image#SCALE_SMOOTH}.
+     */
+    static BufferedImage createScaledImage(Image image, int width, int height, GraphicsConfiguration graphicsConfiguration) {
+        BufferedImage current = null;
+        Image source = image;
+        int currentWidth = image.getWidth(null);
+        int currentHeight = image.getHeight(null);
+        if (currentWidth <= 0 || currentHeight <= 0) {
             return null;
         }
-        return image.getScaledInstance(width, height, Image.SCALE_SMOOTH);
+        
+        do {
+            int stepWidth = (currentWidth / 2 >= width) ? currentWidth / 2 : width;
+            int stepHeight = (currentHeight / 2 >= height) ? currentHeight / 2 : height;
+            
+            BufferedImage step = createCompatibleImage(stepWidth, stepHeight, graphicsConfiguration);
+            Graphics2D g2d = step.createGraphics();
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g2d.drawImage(source, 0, 0, stepWidth, stepHeight, null);
+            g2d.dispose();
+            
+            current = step;
+            source = step;
+            currentWidth = stepWidth;
+            currentHeight = stepHeight;
+        } while (currentWidth != width || currentHeight != height);
+        
+        return current;
+    }
+    
+    private static BufferedImage createCompatibleImage(int width, int height, GraphicsConfiguration graphicsConfiguration) {
+        GraphicsConfiguration configuration = graphicsConfiguration;
+        if (configuration == null && !GraphicsEnvironment.isHeadless()) {
+            configuration = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                    .getDefaultScreenDevice().getDefaultConfiguration();
+        }
+        if (configuration == null) {
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        }
+        return configuration.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+    }
+    
+    /**
+     * Cache key of a pre-scaled image. Source images are compared by identity.
+     */
+    private static final class ScaledImageKey {
+        private final Image source;
+        private final int width;
+        private final int height;
+        private final GraphicsConfiguration graphicsConfiguration;
+        
+        ScaledImageKey(Image source, int width, int height, GraphicsConfiguration graphicsConfiguration) {
+            this.source = source;
+            this.width = width;
+            this.height = height;
+            this.graphicsConfiguration = graphicsConfiguration;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ScaledImageKey)) {
+                return false;
+            }
+            ScaledImageKey other = (ScaledImageKey) o;
+            return source == other.source && width == other.width && height == other.height &&
+                   Objects.equals(graphicsConfiguration, other.graphicsConfiguration);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(source), width, height, graphicsConfiguration);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,180 @@
+package de.greenoid.game.isola.server;
+
+import de.greenoid.game.isola.ComputerPlayer;
+import de.greenoid.game.isola.GamePhase;
+import de.greenoid.game.isola.GameStatus;
+import de.greenoid.game.isola.IsolaBoard;
+import de.greenoid.game.isola.IsolaGame;
+import de.greenoid.game.isola.IsolaGameState;
+import de.greenoid.game.isola.IsolaMove;
+import de.greenoid.game.isola.Position;
+
+/**
+ * A single game hosted by the {@link SessionManager}.
+ * The human plays Player 1, the computer plays Player 2. All access to the
+ * underlying {@link IsolaGame} is synchronized on the session. The computer
+ * searches with an engine of its own that is kept for the whole game.
+ */
+public class GameSession {
+    private final String id;
+    private final IsolaGame game;
+    private final ComputerPlayer computerPlayer;
+    private volatile long lastAccess;
+
+    // true while a computer move is queued or being searched
+    private boolean computerMovePending;
+
+    /**
+     * Constructor to create a GameSession.
+     *
+     * @param id The session id
+     * @param computerPlayer The engine searching the computer's moves of this game
+     */
+    public GameSession(String id, ComputerPlayer computerPlayer) {
+        this.id = id;
+        this.game = new IsolaGame();
+        this.computerPlayer = computerPlayer;
+        touch();
+    }
+
+    /**
+     * Get the session id.
+     *
+     * @return The session id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Get the engine searching the computer's moves.
+     *
+     * @return The computer player of this session
+     */
+    ComputerPlayer getComputerPlayer() {
+        return computerPlayer;
+    }
+
+    /**
+     * Get the current game state.
+     *
+     * @return The current game state
+     */
+    public synchronized IsolaGameState getGameState() {
+        touch();
+        return game.getGameState();
+    }
+
+    /**
+     * Play a complete human turn (move and tile removal).
+     * The turn is validated on a copy of the board first, so an invalid tile removal
+     * does not leave the game with a half-played turn.
+     *
+     * @param moveRow The row to move to
+     * @param moveCol The column to move to
+     * @param removeRow The row of the tile to remove
+     * @param removeCol The column of the tile to remove
+     * @return true if the turn was played, false if it was not the human's turn or the move was invalid
+     */
+    public synchronized boolean playHumanTurn(int moveRow, int moveCol, int removeRow, int removeCol) {
+        touch();
+        if (game.getGameStatus() != GameStatus.ONGOING || game.getCurrentPlayer() != IsolaBoard.PLAYER1) {
+            return false;
+        }
+
+        IsolaBoard trialBoard = game.getBoard().clone();
+        if (!trialBoard.movePlayer(IsolaBoard.PLAYER1, moveRow, moveCol) ||
+            !trialBoard.removeTile(removeRow, removeCol)) {
+            return false;
+        }
+
+        game.movePlayer(IsolaBoard.PLAYER1, moveRow, moveCol);
+        game.setCurrentGamePhase(GamePhase.REMOVE_TILE);
+        game.removeTile(removeRow, removeCol);
+        finishTurn();
+        return true;
+    }
+
+    /**
+     * Check whether the computer has to move and no move is queued yet.
+     * Marks the computer move as pending if so.
+     *
+     * @return true if the caller should schedule a computer move
+     */
+    synchronized boolean claimComputerMove() {
+        if (computerMovePending || game.getGameStatus() != GameStatus.ONGOING ||
+            game.getCurrentPlayer() != IsolaBoard.PLAYER2) {
+            return false;
+        }
+        computerMovePending = true;
+        return true;
+    }
+
+    /**
+     * Release a claimed computer move that could not be scheduled.
+     */
+    synchronized void releaseComputerMove() {
+        computerMovePending = false;
+    }
+
+    /**
+     * Get the current position for the computer's search, so the search can run without holding the lock.
+     *
+     * @return The current position
+     */
+    synchronized Position getPosition() {
+        return Position.fromBoard(game.getBoard(), game.getCurrentPlayer());
+    }
+
+    /**
+     * Apply the computer's move found by the search.
+     *
+     * @param move The move to apply, or null if the computer cannot move
+     */
+    synchronized void applyComputerMove(IsolaMove move) {
+        computerMovePending = false;
+        if (game.getGameStatus() != GameStatus.ONGOING || game.getCurrentPlayer() != IsolaBoard.PLAYER2) {
+            return;
+        }
+
+        if (move == null) {
+            // Computer cannot make a move, human player wins
+            game.setGameStatus(GameStatus.PLAYER1_WON);
+            return;
+        }
+
+        game.movePlayer(IsolaBoard.PLAYER2, move.moveToRow, move.moveToCol);
+        game.setCurrentGamePhase(GamePhase.REMOVE_TILE);
+        game.removeTile(move.removeTileRow, move.removeTileCol);
+        finishTurn();
+    }
+
+    /**
+     * Check whether a computer move is queued or being searched.
+     *
+     * @return true if a computer move is pending
+     */
+    public synchronized boolean isComputerMovePending() {
+        return computerMovePending;
+    }
+
+    /**
+     * Get the time of the last access to this session.
+     *
+     * @return The last access time in milliseconds
+     */
+    public long getLastAccess() {
+        return lastAccess;
+    }
+
+    private void finishTurn() {
+        game.setCurrentGamePhase(GamePhase.MOVE_PLAYER);
+        if (game.getGameStatus() == GameStatus.ONGOING) {
+            game.switchToNextPlayer();
+        }
+    }
+
+    private void touch() {
+        lastAccess = System.currentTimeMillis();
+    }
+}
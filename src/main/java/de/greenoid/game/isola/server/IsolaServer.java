@@ -0,0 +1,231 @@
+package de.greenoid.game.isola.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import de.greenoid.game.isola.BoardState;
+import de.greenoid.game.isola.IsolaBoard;
+import de.greenoid.game.isola.IsolaGameState;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local HTTP endpoint for the multi-game server mode.
+ *
+ * <pre>
+ * POST   /games                  create a game, returns its state
+ * GET    /games/{id}             current state of a game
+ * POST   /games/{id}/turn        play a human turn: moveRow, moveCol, removeRow, removeCol
+ * DELETE /games/{id}             close a game
+ * GET    /stats                  sessions, search queue and computer move latency
+ * </pre>
+ *
+ * Parameters are accepted as query string or form-encoded body. Responses are JSON.
+ * The server only binds to the loopback address.
+ */
+public class IsolaServer {
+    public static final int DEFAULT_PORT = 8080;
+
+    private static final long IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    private final SessionManager sessionManager;
+    private final HttpServer httpServer;
+    private final ExecutorService requestExecutor;
+    private final ScheduledExecutorService cleanupExecutor;
+
+    /**
+     * Constructor to create an IsolaServer.
+     *
+     * @param port The local port to listen on
+     * @param sessionManager The session manager holding the games
+     * @throws IOException If the port cannot be bound
+     */
+    public IsolaServer(int port, SessionManager sessionManager) throws IOException {
+        this.sessionManager = sessionManager;
+        this.httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.requestExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        this.cleanupExecutor = Executors.newSingleThreadScheduledExecutor();
+
+        httpServer.setExecutor(requestExecutor);
+        httpServer.createContext("/games", this::handleGames);
+        httpServer.createContext("/stats", this::handleStats);
+    }
+
+    /**
+     * Start serving requests.
+     */
+    public void start() {
+        httpServer.start();
+        cleanupExecutor.scheduleAtFixedRate(() -> sessionManager.removeIdleSessions(IDLE_TIMEOUT_MILLIS),
+                1, 1, TimeUnit.MINUTES);
+        System.out.println("Isola server listening on http://localhost:" + httpServer.getAddress().getPort() + "/games");
+    }
+
+    /**
+     * Stop the server and all running games.
+     */
+    public void stop() {
+        httpServer.stop(0);
+        cleanupExecutor.shutdownNow();
+        requestExecutor.shutdownNow();
+        sessionManager.shutdown();
+    }
+
+    private void handleGames(HttpExchange exchange) throws IOException {
+        try {
+            // Contexts match by prefix, so "/gamesX" arrives here as well
+            String path = exchange.getRequestURI().getPath();
+            if (!path.equals("/games") && !path.startsWith("/games/")) {
+                send(exchange, 404, error("Unknown resource"));
+                return;
+            }
+            String[] parts = path.split("/");
+            String method = exchange.getRequestMethod();
+
+            // parts: "", "games", {id}, {action}
+            if (parts.length == 2 && "POST".equals(method)) {
+                GameSession session = sessionManager.createSession();
+                send(exchange, 201, toJson(session));
+                return;
+            }
+            if (parts.length < 3) {
+                send(exchange, 404, error("Unknown resource"));
+                return;
+            }
+
+            GameSession session = sessionManager.getSession(parts[2]);
+            if (session == null) {
+                send(exchange, 404, error("Unknown game " + parts[2]));
+                return;
+            }
+
+            if (parts.length == 3 && "GET".equals(method)) {
+                // Retries a computer move that could not be queued earlier
+                sessionManager.scheduleComputerMove(session);
+                send(exchange, 200, toJson(session));
+            } else if (parts.length == 3 && "DELETE".equals(method)) {
+                sessionManager.removeSession(session.getId());
+                send(exchange, 204, "");
+            } else if (parts.length == 4 && "turn".equals(parts[3]) && "POST".equals(method)) {
+                handleTurn(exchange, session);
+            } else {
+                send(exchange, 405, error("Unsupported request"));
+            }
+        } catch (RuntimeException e) {
+            send(exchange, 500, error(e.toString()));
+        }
+    }
+
+    private void handleTurn(HttpExchange exchange, GameSession session) throws IOException {
+        if (!sessionManager.canAcceptComputerMove()) {
+            send(exchange, 503, error("Server busy, try again later"));
+            return;
+        }
+
+        Map<String, String> params = readParameters(exchange);
+        int moveRow, moveCol, removeRow, removeCol;
+        try {
+            moveRow = Integer.parseInt(params.get("moveRow"));
+            moveCol = Integer.parseInt(params.get("moveCol"));
+            removeRow = Integer.parseInt(params.get("removeRow"));
+            removeCol = Integer.parseInt(params.get("removeCol"));
+        } catch (NumberFormatException e) {
+            send(exchange, 400, error("moveRow, moveCol, removeRow and removeCol are required"));
+            return;
+        }
+
+        if (!session.playHumanTurn(moveRow, moveCol, removeRow, removeCol)) {
+            send(exchange, 409, error("Invalid move or not your turn"));
+            return;
+        }
+        sessionManager.scheduleComputerMove(session);
+        send(exchange, 200, toJson(session));
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestURI().getPath().equals("/stats")) {
+            send(exchange, 404, error("Unknown resource"));
+            return;
+        }
+        SearchScheduler scheduler = sessionManager.getSearchScheduler();
+        send(exchange, 200, "{\"sessions\":" + sessionManager.getSessions().size() +
+                ",\"queuedSearches\":" + scheduler.getQueuedSearches() +
+                ",\"activeSearches\":" + scheduler.getActiveSearches() +
+                ",\"completedSearches\":" + scheduler.getCompletedSearches() +
+                ",\"rejectedSearches\":" + scheduler.getRejectedSearches() +
+                ",\"degradedSearches\":" + scheduler.getDegradedSearches() +
+                ",\"latencyP50Millis\":" + scheduler.getLatencyPercentile(50) +
+                ",\"latencyP99Millis\":" + scheduler.getLatencyPercentile(99) + "}");
+    }
+
+    private static Map<String, String> readParameters(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        parseParameters(query, params);
+        try (InputStream body = exchange.getRequestBody()) {
+            parseParameters(new String(body.readAllBytes(), StandardCharsets.UTF_8), params);
+        }
+        return params;
+    }
+
+    private static void parseParameters(String encoded, Map<String, String> params) {
+        if (encoded == null || encoded.isEmpty()) {
+            return;
+        }
+        for (String pair : encoded.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(separator + 1).trim(), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private static String toJson(GameSession session) {
+        IsolaGameState state = session.getGameState();
+        BoardState boardState = state.getBoardState();
+
+        StringBuilder board = new StringBuilder();
+        for (int row = 0; row < boardState.getRows(); row++) {
+            if (row > 0) {
+                board.append('/');
+            }
+            for (int col = 0; col < boardState.getCols(); col++) {
+                board.append(boardState.getCellState(row, col));
+            }
+        }
+
+        return "{\"id\":\"" + session.getId() + "\"" +
+                ",\"currentPlayer\":" + (state.getCurrentPlayer() == IsolaBoard.PLAYER1 ? 1 : 2) +
+                ",\"status\":\"" + state.getGameStatus() + "\"" +
+                ",\"computerThinking\":" + session.isComputerMovePending() +
+                ",\"player1\":[" + boardState.getPlayer1Row() + "," + boardState.getPlayer1Col() + "]" +
+                ",\"player2\":[" + boardState.getPlayer2Row() + "," + boardState.getPlayer2Col() + "]" +
+                ",\"board\":\"" + board + "\"" +
+                ",\"position\":\"" + state.getPosition() + "\"}";
+    }
+
+    private static String error(String message) {
+        return "{\"error\":\"" + message.replace("\\", "\\\\").replace("\"", "\\\"") + "\"}";
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package de.greenoid.game.isola.server;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent latency samples and computes percentiles over them.
+ */
+public class LatencyStats {
+    private final long[] samples;
+    private int next;
+    private int count;
+
+    /**
+     * Constructor to create a LatencyStats.
+     *
+     * @param capacity The number of most recent samples to keep
+     */
+    public LatencyStats(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    /**
+     * Record a latency sample.
+     *
+     * @param millis The latency in milliseconds
+     */
+    public synchronized void record(long millis) {
+        samples[next] = millis;
+        next = (next + 1) % samples.length;
+        if (count < samples.length) {
+            count++;
+        }
+    }
+
+    /**
+     * Get a percentile of the recorded latencies.
+     *
+     * @param percentile The percentile between 0 and 100
+     * @return The latency in milliseconds, or 0 if nothing was recorded yet
+     */
+    public long getPercentile(double percentile) {
+        long[] sorted;
+        synchronized (this) {
+            if (count == 0) {
+                return 0;
+            }
+            sorted = Arrays.copyOf(samples, count);
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    /**
+     * Get the number of samples the percentiles are computed from.
+     *
+     * @return The sample count
+     */
+    public synchronized int getSampleCount() {
+        return count;
+    }
+}
@@ -0,0 +1,212 @@
+package de.greenoid.game.isola.server;
+
+import de.greenoid.game.isola.ComputerPlayer;
+import de.greenoid.game.isola.Position;
+import de.greenoid.game.isola.ReplacementPolicy;
+import de.greenoid.game.isola.SearchBudget;
+import de.greenoid.game.isola.SearchResult;
+import de.greenoid.game.isola.TranspositionTablePool;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Schedules computer move searches of many games with bounded latency.
+ *
+ * At most {@code concurrentSearches} searches run at once; further requests wait in a
+ * bounded FIFO queue and are rejected when it is full (admission control). Each search
+ * gets a node and time budget and may only use its share of the search threads. When
+ * requests are queued, the budget of the next search is reduced (shallower depth,
+ * shorter time) so the queue drains quickly instead of every game waiting for full-depth
+ * searches. The time from submission to result is recorded per request.
+ *
+ * Each game searches with its own engine from {@link #createComputerPlayer()}, so its
+ * predicted reply carries over between its moves without being overwritten by other games.
+ * All engines share the search threads of the scheduler and borrow their transposition
+ * tables from one pool with a table per search slot, so the off-heap memory does not grow
+ * with the number of games.
+ */
+public class SearchScheduler {
+    private static final int LATENCY_SAMPLES = 4096;
+    // Size of the transposition table of each search slot
+    private static final int TABLE_MEGABYTES = 4;
+
+    private final ThreadPoolExecutor requestExecutor;
+    private final ExecutorService searchExecutor;
+    private final TranspositionTablePool transpositionTablePool;
+    private final int maxSearchDepth;
+    private final SearchBudget baseBudget;
+    private final int concurrentSearches;
+
+    private final LatencyStats latencyStats = new LatencyStats(LATENCY_SAMPLES);
+    private final AtomicLong completedSearches = new AtomicLong();
+    private final AtomicLong rejectedSearches = new AtomicLong();
+    private final AtomicLong degradedSearches = new AtomicLong();
+
+    /**
+     * Constructor to create a SearchScheduler.
+     *
+     * @param maxSearchDepth The search depth used when the scheduler is idle
+     * @param concurrentSearches The number of searches running at the same time
+     * @param queueCapacity The number of searches that may wait for a free slot
+     * @param maxNodes The node budget of a single search
+     * @param timeLimitMillis The time budget of a single search when the scheduler is idle
+     */
+    public SearchScheduler(int maxSearchDepth, int concurrentSearches, int queueCapacity, long maxNodes, long timeLimitMillis) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        this.concurrentSearches = concurrentSearches;
+        this.requestExecutor = new ThreadPoolExecutor(concurrentSearches, concurrentSearches,
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity));
+        this.searchExecutor = Executors.newFixedThreadPool(processors);
+        this.transpositionTablePool = new TranspositionTablePool(concurrentSearches, TABLE_MEGABYTES,
+                ReplacementPolicy.DEPTH_PREFERRED);
+        this.maxSearchDepth = maxSearchDepth;
+        this.baseBudget = new SearchBudget(maxSearchDepth, maxNodes, timeLimitMillis,
+                Math.max(1, processors / concurrentSearches));
+    }
+
+    /**
+     * Create the engine of a game. It runs its searches on the shared search threads
+     * and borrows a transposition table of the pool for each search.
+     *
+     * @return The new engine
+     */
+    ComputerPlayer createComputerPlayer() {
+        ComputerPlayer computerPlayer = new ComputerPlayer(maxSearchDepth, searchExecutor);
+        computerPlayer.setVerbose(false);
+        computerPlayer.setTranspositionTablePool(transpositionTablePool);
+        return computerPlayer;
+    }
+
+    /**
+     * Check whether another search can be queued right now.
+     *
+     * @return true if the queue has free capacity
+     */
+    public boolean hasCapacity() {
+        return requestExecutor.getQueue().remainingCapacity() > 0;
+    }
+
+    /**
+     * Queue a search. The callback runs on a scheduler thread once the search is done.
+     *
+     * @param computerPlayer The engine of the game; it must not search anything else until the callback ran
+     * @param position The position to search; queued searches only hold this compact immutable form
+     * @param callback Receives the search result, or null if the search failed
+     * @return false if the queue is full and the search was rejected
+     */
+    public boolean submit(ComputerPlayer computerPlayer, Position position, Consumer<SearchResult> callback) {
+        long submitTime = System.nanoTime();
+        try {
+            requestExecutor.execute(() -> runSearch(computerPlayer, position, callback, submitTime));
+            return true;
+        } catch (RejectedExecutionException e) {
+            rejectedSearches.incrementAndGet();
+            return false;
+        }
+    }
+
+    private void runSearch(ComputerPlayer computerPlayer, Position position, Consumer<SearchResult> callback,
+                           long submitTime) {
+        SearchBudget budget = budgetForLoad(requestExecutor.getQueue().size());
+        SearchResult result = null;
+        try {
+            result = computerPlayer.search(position.toBoard(), position.getPlayerToMove(), budget);
+        } catch (RuntimeException e) {
+            System.err.println("Search failed: " + e.getMessage());
+        }
+
+        latencyStats.record((System.nanoTime() - submitTime) / 1_000_000);
+        completedSearches.incrementAndGet();
+        callback.accept(result);
+    }
+
+    /**
+     * Reduce the budget of the next search depending on how many requests are waiting.
+     *
+     * @param queued The number of queued requests
+     * @return The budget for the next search
+     */
+    private SearchBudget budgetForLoad(int queued) {
+        if (queued == 0) {
+            return baseBudget;
+        }
+        degradedSearches.incrementAndGet();
+
+        // Number of searches each slot still has to work through
+        int load = (queued + concurrentSearches - 1) / concurrentSearches;
+        if (load < 4) {
+            return baseBudget.withMaxDepth(2).withTimeLimitMillis(baseBudget.getTimeLimitMillis() / (load + 1));
+        }
+        return baseBudget.withMaxDepth(1);
+    }
+
+    /**
+     * Get a percentile of the recent request latencies (queue wait plus search time).
+     *
+     * @param percentile The percentile between 0 and 100
+     * @return The latency in milliseconds
+     */
+    public long getLatencyPercentile(double percentile) {
+        return latencyStats.getPercentile(percentile);
+    }
+
+    /**
+     * Get the number of queued searches.
+     *
+     * @return The queue length
+     */
+    public int getQueuedSearches() {
+        return requestExecutor.getQueue().size();
+    }
+
+    /**
+     * Get the number of running searches.
+     *
+     * @return The number of active searches
+     */
+    public int getActiveSearches() {
+        return requestExecutor.getActiveCount();
+    }
+
+    /**
+     * Get the number of completed searches.
+     *
+     * @return The completed search count
+     */
+    public long getCompletedSearches() {
+        return completedSearches.get();
+    }
+
+    /**
+     * Get the number of searches rejected because the queue was full.
+     *
+     * @return The rejected search count
+     */
+    public long getRejectedSearches() {
+        return rejectedSearches.get();
+    }
+
+    /**
+     * Get the number of searches that ran with a reduced budget.
+     *
+     * @return The degraded search count
+     */
+    public long getDegradedSearches() {
+        return degradedSearches.get();
+    }
+
+    /**
+     * Stop all searches.
+     */
+    public void shutdown() {
+        requestExecutor.shutdownNow();
+        searchExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,143 @@
+package de.greenoid.game.isola.server;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds many concurrent game sessions in one JVM.
+ *
+ * Computer moves are queued on the {@link SearchScheduler}. Each session has at most
+ * one computer move queued at any time, so the FIFO queue serves the sessions in turn
+ * and a single busy game cannot crowd out the others. Each session searches with its own
+ * engine, so it never runs two searches at once.
+ */
+public class SessionManager {
+    private static final int SEARCH_DEPTH = 5;
+    private static final long SEARCH_NODE_LIMIT = 2_000_000;
+    private static final long SEARCH_TIME_LIMIT_MILLIS = 2000;
+
+    private final Map<String, GameSession> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final SearchScheduler searchScheduler;
+
+    /**
+     * Constructor to create a SessionManager.
+     *
+     * @param concurrentSearches The number of computer moves searched at the same time
+     * @param queueCapacity The number of computer moves that may wait for a free search slot
+     */
+    public SessionManager(int concurrentSearches, int queueCapacity) {
+        this.searchScheduler = new SearchScheduler(SEARCH_DEPTH, concurrentSearches, queueCapacity,
+                SEARCH_NODE_LIMIT, SEARCH_TIME_LIMIT_MILLIS);
+    }
+
+    /**
+     * Create a new game session.
+     *
+     * @return The new session
+     */
+    public GameSession createSession() {
+        String id = Long.toString(nextId.getAndIncrement(), 36);
+        GameSession session = new GameSession(id, searchScheduler.createComputerPlayer());
+        sessions.put(id, session);
+        return session;
+    }
+
+    /**
+     * Get a session by id.
+     *
+     * @param id The session id
+     * @return The session, or null if there is no session with this id
+     */
+    public GameSession getSession(String id) {
+        return sessions.get(id);
+    }
+
+    /**
+     * Remove a session.
+     *
+     * @param id The session id
+     * @return true if the session existed
+     */
+    public boolean removeSession(String id) {
+        return sessions.remove(id) != null;
+    }
+
+    /**
+     * Get all sessions.
+     *
+     * @return The current sessions
+     */
+    public Collection<GameSession> getSessions() {
+        return sessions.values();
+    }
+
+    /**
+     * Check whether another computer move can be queued right now.
+     *
+     * @return true if the move queue has free capacity
+     */
+    public boolean canAcceptComputerMove() {
+        return searchScheduler.hasCapacity();
+    }
+
+    /**
+     * Queue the computer's move for a session if it is the computer's turn.
+     *
+     * @param session The session
+     * @return false if the move was due but the queue is full; the caller may retry later
+     */
+    public boolean scheduleComputerMove(GameSession session) {
+        if (!session.claimComputerMove()) {
+            return true;
+        }
+        boolean accepted = searchScheduler.submit(session.getComputerPlayer(), session.getPosition(), result -> {
+            if (result == null) {
+                // Leave the session waiting for the computer; the next request schedules it again
+                session.releaseComputerMove();
+            } else {
+                session.applyComputerMove(result.getMove());
+            }
+        });
+        if (!accepted) {
+            session.releaseComputerMove();
+        }
+        return accepted;
+    }
+
+    /**
+     * Remove sessions that have not been accessed for the given time.
+     *
+     * @param maxIdleMillis The maximum idle time in milliseconds
+     * @return The number of removed sessions
+     */
+    public int removeIdleSessions(long maxIdleMillis) {
+        long cutoff = System.currentTimeMillis() - maxIdleMillis;
+        int removed = 0;
+        for (GameSession session : sessions.values()) {
+            if (session.getLastAccess() < cutoff && !session.isComputerMovePending() &&
+                sessions.remove(session.getId(), session)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Get the scheduler running the computer moves.
+     *
+     * @return The search scheduler
+     */
+    public SearchScheduler getSearchScheduler() {
+        return searchScheduler;
+    }
+
+    /**
+     * Stop the executors.
+     */
+    public void shutdown() {
+        searchScheduler.shutdown();
+    }
+}